@@ -1,11 +1,29 @@
 package ru.practicum;
 
 import org.springframework.boot.SpringApplication;
-import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurationExcludeFilter;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 
-@SpringBootApplication
+/**
+ * The stats server shares the ru.practicum package and is on the classpath for the embedded mode,
+ * so its beans, entities and repositories are kept out of this application's scans.
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration
+@ComponentScan(excludeFilters = {
+        @ComponentScan.Filter(type = FilterType.CUSTOM, classes = TypeExcludeFilter.class),
+        @ComponentScan.Filter(type = FilterType.CUSTOM, classes = AutoConfigurationExcludeFilter.class),
+        @ComponentScan.Filter(type = FilterType.REGEX, pattern = "ru\\.practicum\\.stats\\..*")})
+@EntityScan("ru.practicum.model")
+@EnableJpaRepositories("ru.practicum.repository")
 public class EwmMain {
     public static void main(String[] args) {
         SpringApplication.run(EwmMain.class, args);
     }
-}
\ No newline at end of file
+}
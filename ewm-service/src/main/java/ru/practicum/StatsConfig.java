@@ -1,17 +1,104 @@
 package ru.practicum;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import ru.practicum.stats.embedded.EmbeddedStatsTransport;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Configuration
 public class StatsConfig {
+    @Value("${stats-server.mode:http}")
+    private String mode;
+
     @Value("${stats-server.url}")
-    private String statsServerUrl;
+    private String[] statsServerUrls;
+
+    @Value("${stats-server.connect-timeout-ms:1000}")
+    private long connectTimeoutMillis;
+
+    @Value("${stats-server.response-timeout-ms:5000}")
+    private long responseTimeoutMillis;
+
+    @Value("${stats-server.max-connections:50}")
+    private int maxConnections;
+
+    @Value("${stats-server.buffer-hits:false}")
+    private boolean bufferHits;
+
+    @Value("${stats-server.flush-interval-ms:1000}")
+    private long flushIntervalMillis;
+
+    @Value("${stats-server.binary:false}")
+    private boolean binary;
+
+    @Value("${stats-server.scatter-reads:false}")
+    private boolean scatterReads;
+
+    @Value("${stats-server.spool-dir:}")
+    private String spoolDir;
+
+    @Value("${stats-server.embedded.datasource-url:jdbc:h2:mem:ewm-stats}")
+    private String embeddedDatasourceUrl;
+
+    @Value("${stats-server.embedded.datasource-username:stats}")
+    private String embeddedDatasourceUsername;
+
+    @Value("${stats-server.embedded.datasource-password:stats}")
+    private String embeddedDatasourcePassword;
+
+    @Value("${stats-server.embedded.driver-class-name:org.h2.Driver}")
+    private String embeddedDriverClassName;
 
+    /**
+     * With stats-server.mode=embedded the stats server runs in this process on a datasource of its own
+     * and is called directly; otherwise it is called over HTTP at stats-server.url, which may list
+     * several servers separated by commas to spread hits over them by uri.
+     */
     @Bean
-    StatsClient statsClient() {
-        return new StatsClient(statsServerUrl, new RestTemplateBuilder());
+    StatsClient statsClient(MeterRegistry meterRegistry) {
+        StatsClientSettings settings = StatsClientSettings.builder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .responseTimeout(Duration.ofMillis(responseTimeoutMillis))
+                .maxConnections(maxConnections)
+                .maxConnectionsPerRoute(maxConnections)
+                .bufferHits(bufferHits)
+                .flushInterval(Duration.ofMillis(flushIntervalMillis))
+                .binary(binary)
+                .scatterReads(scatterReads)
+                .spoolDir(spoolDir.isBlank() ? null : Path.of(spoolDir))
+                .build();
+        StatsClient statsClient = "embedded".equals(mode)
+                ? new StatsClient(EmbeddedStatsTransport.start(Map.of(
+                "spring.datasource.url", embeddedDatasourceUrl,
+                "spring.datasource.username", embeddedDatasourceUsername,
+                "spring.datasource.password", embeddedDatasourcePassword,
+                "spring.datasource.driverClassName", embeddedDriverClassName)), settings)
+                : new StatsClient(Arrays.stream(statsServerUrls).map(String::trim).collect(Collectors.toList()),
+                new RestTemplateBuilder(), settings);
+        FunctionCounter.builder("stats.client.hits", statsClient, StatsClient::getFlushedHits)
+                .tag("result", "flushed")
+                .register(meterRegistry);
+        FunctionCounter.builder("stats.client.hits", statsClient, StatsClient::getDroppedHits)
+                .tag("result", "dropped")
+                .register(meterRegistry);
+        FunctionCounter.builder("stats.client.hits", statsClient, StatsClient::getFailedHits)
+                .tag("result", "failed")
+                .register(meterRegistry);
+        FunctionCounter.builder("stats.client.hits", statsClient, StatsClient::getSpooledHits)
+                .tag("result", "spooled")
+                .register(meterRegistry);
+        Gauge.builder("stats.client.spool.size", statsClient, StatsClient::getSpoolSize)
+                .register(meterRegistry);
+        return statsClient;
     }
 }
@@ -9,6 +9,7 @@ import ru.practicum.model.Event;
 import ru.practicum.service.StatsService;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
@@ -21,9 +22,14 @@ public class StatsServiceImpl implements StatsService {
     private static final String APP_NAME = "EWM";
     private final StatsClient statsClient;
 
+    /**
+     * Views are counted from the start of the day the event was created: hits are recorded only for
+     * published events, so none come earlier, and stats-server answers whole days from daily bitmaps
+     * even after their raw hits are compacted.
+     */
     public long getEventViews(Event event) {
         StatsDto[] statsDtos = statsClient.getStats(
-                event.getCreatedOn(),
+                event.getCreatedOn().truncatedTo(ChronoUnit.DAYS),
                 LocalDateTime.now(),
                 true,
                 new String[]{EVENT_PUBLIC_URI + event.getId()});
@@ -39,7 +45,8 @@ public class StatsServiceImpl implements StatsService {
                 .map(event -> EVENT_PUBLIC_URI + event.getId())
                 .toArray(String[]::new);
         StatsDto[] statsDtos = statsClient.getStats(
-                events.stream().min(Comparator.comparing(Event::getCreatedOn)).get().getCreatedOn(),
+                events.stream().min(Comparator.comparing(Event::getCreatedOn)).get().getCreatedOn()
+                        .truncatedTo(ChronoUnit.DAYS),
                 LocalDateTime.now(), uris);
 
         if (statsDtos.length == 0) {
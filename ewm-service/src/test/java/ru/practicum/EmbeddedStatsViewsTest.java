@@ -0,0 +1,85 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs ewm-service with the stats server embedded in the same process, as with stats-server.mode=embedded,
+ * and checks that a view of an event is counted as soon as the event is requested.
+ */
+@SpringBootTest(properties = {
+        "stats-server.mode=embedded",
+        "stats-server.embedded.datasource-url=jdbc:h2:mem:ewm-stats-views",
+        "spring.datasource.url=jdbc:h2:mem:ewm-service-views"
+})
+@AutoConfigureMockMvc
+class EmbeddedStatsViewsTest {
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void countsViewRightAfterTheHit() throws Exception {
+        long eventId = publishedEvent();
+
+        assertEquals(1, views(eventId, "10.0.0.1"));
+        assertEquals(1, views(eventId, "10.0.0.1"));
+        assertEquals(2, views(eventId, "10.0.0.2"));
+    }
+
+    private long publishedEvent() throws Exception {
+        long userId = send(post("/admin/users"), Map.of("name", "Organizer", "email", "organizer@example.com"))
+                .get("id").asLong();
+        long categoryId = send(post("/admin/categories"), Map.of("name", "Concerts")).get("id").asLong();
+        long eventId = send(post("/users/" + userId + "/events"), Map.of(
+                "title", "Open air",
+                "annotation", "An open air concert in the park",
+                "description", "Bands play in the park all evening long",
+                "category", categoryId,
+                "location", Map.of("lat", 55.75, "lon", 37.62),
+                "eventDate", LocalDateTime.now().plusDays(1).format(FORMAT)))
+                .get("id").asLong();
+        send(patch("/admin/events/" + eventId), Map.of("stateAction", "PUBLISH_EVENT"));
+        return eventId;
+    }
+
+    private long views(long eventId, String ip) throws Exception {
+        String body = mockMvc.perform(get("/events/" + eventId).with(request -> {
+                    request.setRemoteAddr(ip);
+                    return request;
+                }))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).get("views").asLong();
+    }
+
+    private JsonNode send(MockHttpServletRequestBuilder request, Map<String, Object> content) throws Exception {
+        String body = mockMvc.perform(request
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(content)))
+                .andExpect(status().is2xxSuccessful())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+}
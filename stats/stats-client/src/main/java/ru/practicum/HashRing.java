@@ -0,0 +1,48 @@
+package ru.practicum;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Consistent hash ring. Each node is placed at many points of the ring, hashed from its name, and a key
+ * belongs to the first point at or after the key's hash. Adding a node to n others moves about 1/(n + 1)
+ * of the keys, all of them to the new node.
+ */
+class HashRing {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private final TreeMap<Long, Integer> points = new TreeMap<>();
+
+    HashRing(List<String> nodes, int virtualNodes) {
+        for (int node = 0; node < nodes.size(); node++) {
+            for (int i = 0; i < virtualNodes; i++) {
+                points.put(hash(nodes.get(node) + "#" + i), node);
+            }
+        }
+    }
+
+    int owner(String key) {
+        Map.Entry<Long, Integer> point = points.ceilingEntry(hash(key));
+        return (point == null ? points.firstEntry() : point).getValue();
+    }
+
+    /**
+     * FNV-1a over the UTF-8 bytes, finished with the MurmurHash3 mixer so that similar keys
+     * spread over the whole ring.
+     */
+    static long hash(String key) {
+        long hash = FNV_OFFSET;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,203 @@
+package ru.practicum;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Collects hits in a {@link HitRing} and sends them in batches from a background thread, once a
+ * full batch is waiting or the flush interval has passed. Closing the buffer sends whatever is left
+ * before the thread stops.
+ * <p>
+ * Without a spool, hits are dropped when the ring is full and lost when the server fails. With a
+ * {@link HitSpool}, both go to the spool instead, and so do new hits while it is not empty, to keep
+ * them in order. The same thread sends spooled hits back a batch at a time, retrying once per flush
+ * interval while the server is unavailable.
+ */
+@Slf4j
+class HitBuffer {
+    private final HitRing ring;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Duration drainTimeout;
+    private final Function<List<HitDto>, BulkHitResultDto> sender;
+    private final HitSpool spool;
+    private final Thread flusher;
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong spooled = new AtomicLong();
+    private volatile boolean running = true;
+    private long replayAt;
+    private boolean unavailable;
+
+    HitBuffer(int capacity, int batchSize, Duration flushInterval, Duration drainTimeout,
+              Function<List<HitDto>, BulkHitResultDto> sender, HitSpool spool) {
+        this.ring = new HitRing(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.drainTimeout = drainTimeout;
+        this.sender = sender;
+        this.spool = spool;
+        this.replayAt = System.nanoTime();
+        this.flusher = new Thread(this::run, "stats-hit-flusher");
+        this.flusher.setDaemon(true);
+    }
+
+    void start() {
+        flusher.start();
+    }
+
+    void add(HitDto hit) {
+        if (!running || !ring.offer(hit)) {
+            spool(List.of(hit));
+            return;
+        }
+        if (ring.size() >= batchSize) {
+            LockSupport.unpark(flusher);
+        }
+    }
+
+    /**
+     * Waits up to the drain timeout for the buffered hits to be sent or spooled.
+     */
+    void close() {
+        running = false;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(drainTimeout.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusher.isAlive()) {
+            log.warn("Hit buffer was not drained in {}, {} hits are left", drainTimeout, ring.size());
+        }
+    }
+
+    long getFlushed() {
+        return flushed.get();
+    }
+
+    long getDropped() {
+        return dropped.get();
+    }
+
+    long getFailed() {
+        return failed.get();
+    }
+
+    long getSpooled() {
+        return spooled.get();
+    }
+
+    long getSpoolSize() {
+        return spool == null ? 0 : spool.size();
+    }
+
+    private void run() {
+        while (running) {
+            int sent = flush();
+            if (spool != null) {
+                spool.force();
+            }
+            if (sent < batchSize) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+        }
+        List<HitDto> batch;
+        while (!(batch = poll()).isEmpty()) {
+            sendOrSpool(batch);
+        }
+        if (spool != null) {
+            spool.force();
+        }
+    }
+
+    /**
+     * Returns the size of the larger of the batches sent from the spool and from the ring.
+     */
+    private int flush() {
+        int replayed = replay();
+        List<HitDto> batch = poll();
+        sendOrSpool(batch);
+        return Math.max(replayed, batch.size());
+    }
+
+    private List<HitDto> poll() {
+        List<HitDto> batch = new ArrayList<>(batchSize);
+        HitDto hit;
+        while (batch.size() < batchSize && (hit = ring.poll()) != null) {
+            batch.add(hit);
+        }
+        return batch;
+    }
+
+    private void sendOrSpool(List<HitDto> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if ((spool != null && spool.size() > 0) || !send(batch)) {
+            spool(batch);
+        }
+    }
+
+    private int replay() {
+        if (spool == null || spool.size() == 0 || System.nanoTime() - replayAt < 0) {
+            return 0;
+        }
+        List<HitDto> batch = spool.read(batchSize);
+        if (batch.isEmpty() || send(batch)) {
+            spool.commit();
+            return batch.size();
+        }
+        return 0;
+    }
+
+    private void spool(List<HitDto> hits) {
+        int refused = spool == null ? hits.size() : spool.append(hits);
+        spooled.addAndGet(hits.size() - refused);
+        dropped.addAndGet(refused);
+    }
+
+    /**
+     * Returns false if the server could not take the hits for now and they should be sent again later.
+     */
+    private boolean send(List<HitDto> batch) {
+        try {
+            BulkHitResultDto result = sender.apply(batch);
+            flushed.addAndGet(result.getAccepted());
+            failed.addAndGet(result.getRejected().size());
+            if (unavailable) {
+                unavailable = false;
+                log.info("Stats server is available again, sending {} spooled hits", getSpoolSize());
+            }
+            return true;
+        } catch (RuntimeException e) {
+            if (spool != null && isTemporary(e)) {
+                replayAt = System.nanoTime() + flushIntervalNanos;
+                if (!unavailable) {
+                    unavailable = true;
+                    log.warn("Stats server is unavailable, spooling hits: {}", e.getMessage());
+                }
+                return false;
+            }
+            failed.addAndGet(batch.size());
+            log.warn("Could not send {} hits to the stats server: {}", batch.size(), e.getMessage());
+            return true;
+        }
+    }
+
+    private static boolean isTemporary(RuntimeException e) {
+        return e instanceof ResourceAccessException
+                || e instanceof HttpServerErrorException
+                || e instanceof HttpClientErrorException.TooManyRequests;
+    }
+}
@@ -0,0 +1,276 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps hits the stats server could not take in memory-mapped segment files, so they survive a restart
+ * and can be sent later. Each segment starts with the offset up to which it has been read, followed by
+ * records of a length and a hit as JSON; a zero length marks the end. A record's length is written after
+ * its body, so a record cut short by a crash is never read. Segments are removed once read, and hits
+ * that do not fit into the last allowed segment are refused.
+ * <p>
+ * Hits are read and then committed once sent, so a hit the server took just before a failure may be
+ * sent twice.
+ */
+@Slf4j
+class HitSpool {
+    private static final String PREFIX = "hits-";
+    private static final String SUFFIX = ".spool";
+    private static final int HEADER = Long.BYTES;
+    private final Path dir;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final ObjectWriter writer;
+    private final ObjectReader reader;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private long size;
+
+    HitSpool(Path dir, int segmentSize, int maxSegments) {
+        ObjectMapper mapper = JsonMapper.builder().findAndAddModules().build();
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.writer = mapper.writerFor(HitDto.class);
+        this.reader = mapper.readerFor(HitDto.class);
+        try {
+            Files.createDirectories(dir);
+            List<Path> files;
+            try (Stream<Path> list = Files.list(dir)) {
+                files = list.filter(file -> file.getFileName().toString().startsWith(PREFIX))
+                        .filter(file -> file.getFileName().toString().endsWith(SUFFIX))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+            for (Path file : files) {
+                Segment segment = new Segment(file, sequence(file));
+                if (segment.isRead()) {
+                    Files.delete(file);
+                } else {
+                    segments.addLast(segment);
+                    size += segment.countBetween(segment.readOffset, segment.writeOffset);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open hit spool in " + dir, e);
+        }
+        if (size > 0) {
+            log.info("Hit spool in {} holds {} hits to send", dir, size);
+        }
+    }
+
+    /**
+     * Returns the number of hits that did not fit. Hits are serialized before the spool is locked.
+     */
+    int append(List<HitDto> hits) {
+        List<byte[]> bodies = new ArrayList<>(hits.size());
+        for (HitDto hit : hits) {
+            try {
+                bodies.add(writer.writeValueAsBytes(hit));
+            } catch (IOException e) {
+                log.warn("Could not spool hit {}: {}", hit, e.getMessage());
+            }
+        }
+        return hits.size() - bodies.size() + write(bodies);
+    }
+
+    /**
+     * Returns up to max of the oldest hits, without removing them; see {@link #commit}.
+     */
+    synchronized List<HitDto> read(int max) {
+        List<HitDto> hits = new ArrayList<>();
+        removeReadHead();
+        Segment segment = segments.peekFirst();
+        if (segment == null) {
+            return hits;
+        }
+        int offset = segment.readOffset;
+        while (hits.size() < max && offset < segment.writeOffset) {
+            byte[] body = segment.body(offset);
+            offset += Integer.BYTES + body.length;
+            try {
+                hits.add(reader.readValue(body));
+            } catch (IOException e) {
+                log.warn("Skipping unreadable hit in {}: {}", segment.file, e.getMessage());
+            }
+        }
+        segment.pending = offset;
+        return hits;
+    }
+
+    /**
+     * Removes the hits returned by the last read.
+     */
+    synchronized void commit() {
+        Segment segment = segments.peekFirst();
+        if (segment == null || segment.pending <= segment.readOffset) {
+            return;
+        }
+        size -= segment.countBetween(segment.readOffset, segment.pending);
+        segment.readOffset = segment.pending;
+        segment.buffer.putLong(0, segment.readOffset);
+        segment.dirty = true;
+        removeReadHead();
+    }
+
+    synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Writes changed segments to disk, without holding up appends meanwhile.
+     */
+    void force() {
+        List<MappedByteBuffer> changed = new ArrayList<>();
+        synchronized (this) {
+            for (Segment segment : segments) {
+                if (segment.dirty) {
+                    changed.add(segment.buffer);
+                    segment.dirty = false;
+                }
+            }
+        }
+        changed.forEach(MappedByteBuffer::force);
+    }
+
+    /**
+     * Deletes read segments other than the one being written to.
+     */
+    private void removeReadHead() {
+        while (segments.size() > 1 && segments.peekFirst().isRead()) {
+            Segment segment = segments.removeFirst();
+            try {
+                Files.delete(segment.file);
+            } catch (IOException e) {
+                log.warn("Could not delete hit spool segment {}: {}", segment.file, e.getMessage());
+            }
+        }
+    }
+
+    private synchronized int write(List<byte[]> bodies) {
+        int refused = 0;
+        for (byte[] body : bodies) {
+            Segment segment = segments.peekLast();
+            if (segment == null || !segment.fits(body.length)) {
+                segment = roll(body.length);
+            }
+            if (segment == null) {
+                refused++;
+                continue;
+            }
+            segment.write(body);
+            size++;
+        }
+        return refused;
+    }
+
+    private Segment roll(int length) {
+        removeReadHead();
+        if (Integer.BYTES + length > segmentSize - HEADER || segments.size() >= maxSegments) {
+            return null;
+        }
+        long sequence = segments.isEmpty() ? 1 : segments.peekLast().sequence + 1;
+        try {
+            Segment segment = new Segment(dir.resolve(String.format("%s%012d%s", PREFIX, sequence, SUFFIX)), sequence);
+            segments.addLast(segment);
+            return segment;
+        } catch (IOException e) {
+            log.warn("Could not create hit spool segment in {}: {}", dir, e.getMessage());
+            return null;
+        }
+    }
+
+    private static long sequence(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private final class Segment {
+        private final Path file;
+        private final long sequence;
+        private final MappedByteBuffer buffer;
+        private int readOffset;
+        private int writeOffset;
+        private int pending;
+        private boolean dirty;
+
+        /**
+         * Maps the file, creating it if needed, and finds the end of the records in it.
+         */
+        Segment(Path file, long sequence) throws IOException {
+            this.file = file;
+            this.sequence = sequence;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            }
+            long read = buffer.getLong(0);
+            readOffset = read < HEADER || read > segmentSize ? HEADER : (int) read;
+            writeOffset = HEADER;
+            while (writeOffset + Integer.BYTES <= segmentSize) {
+                int length = buffer.getInt(writeOffset);
+                if (length <= 0 || length > segmentSize - writeOffset - Integer.BYTES) {
+                    break;
+                }
+                writeOffset += Integer.BYTES + length;
+            }
+            readOffset = Math.min(readOffset, writeOffset);
+            pending = readOffset;
+        }
+
+        boolean fits(int length) {
+            return writeOffset + Integer.BYTES + length <= segmentSize;
+        }
+
+        void write(byte[] body) {
+            ByteBuffer target = buffer.duplicate();
+            target.position(writeOffset + Integer.BYTES);
+            target.put(body);
+            buffer.putInt(writeOffset, body.length);
+            writeOffset += Integer.BYTES + body.length;
+            dirty = true;
+        }
+
+        byte[] body(int offset) {
+            ByteBuffer source = buffer.duplicate();
+            source.position(offset + Integer.BYTES);
+            byte[] body = new byte[buffer.getInt(offset)];
+            source.get(body);
+            return body;
+        }
+
+        boolean isRead() {
+            return readOffset >= writeOffset;
+        }
+
+        long countBetween(int from, int to) {
+            long records = 0;
+            for (int offset = from; offset < to; offset += Integer.BYTES + buffer.getInt(offset)) {
+                records++;
+            }
+            return records;
+        }
+    }
+}
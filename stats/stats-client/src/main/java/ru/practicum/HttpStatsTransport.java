@@ -0,0 +1,307 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.util.EntityUtils;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.client.UnknownHttpStatusCodeException;
+import org.springframework.web.util.DefaultUriBuilderFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Talks to a remote stats server. Blocking and asynchronous calls each have a pool of keep-alive
+ * connections, bounded in total and per route, with the same timeouts.
+ */
+class HttpStatsTransport implements StatsTransport {
+    private static final String DATE_TIME_PATTERN = "yyyy-MM-dd HH:mm:ss";
+    private final RestTemplate restTemplate;
+    private final CloseableHttpClient httpClient;
+    private final CloseableHttpAsyncClient asyncClient;
+    private final DefaultUriBuilderFactory uriFactory;
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private final ObjectReader statsReader = objectMapper.readerFor(StatsDto.class);
+    private final ObjectMapper wireMapper;
+    private final ContentType wireType;
+    private final int maxUrlLength;
+
+    HttpStatsTransport(String statsUrl, RestTemplateBuilder builder, StatsClientSettings settings) {
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout((int) settings.getConnectTimeout().toMillis())
+                .setSocketTimeout((int) settings.getResponseTimeout().toMillis())
+                .setConnectionRequestTimeout((int) settings.getPoolTimeout().toMillis())
+                .build();
+        long keepAliveMillis = settings.getKeepAlive().toMillis();
+        ConnectionKeepAliveStrategy keepAlive = (response, context) -> {
+            long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return serverKeepAlive > 0 ? Math.min(serverKeepAlive, keepAliveMillis) : keepAliveMillis;
+        };
+
+        this.uriFactory = new DefaultUriBuilderFactory(statsUrl);
+        this.httpClient = HttpClients.custom()
+                .setMaxConnTotal(settings.getMaxConnections())
+                .setMaxConnPerRoute(settings.getMaxConnectionsPerRoute())
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(keepAlive)
+                .evictIdleConnections(keepAliveMillis, TimeUnit.MILLISECONDS)
+                .build();
+        this.restTemplate = builder
+                .uriTemplateHandler(uriFactory)
+                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(httpClient))
+                .build();
+        this.asyncClient = HttpAsyncClients.custom()
+                .setMaxConnTotal(settings.getMaxConnections())
+                .setMaxConnPerRoute(settings.getMaxConnectionsPerRoute())
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(keepAlive)
+                .build();
+        this.asyncClient.start();
+        this.wireMapper = settings.isBinary() ? WireFormat.cborMapper() : objectMapper;
+        this.wireType = settings.isBinary() ? ContentType.create(WireFormat.CBOR) : ContentType.APPLICATION_JSON;
+        this.maxUrlLength = settings.getMaxUrlLength();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            asyncClient.close();
+        } finally {
+            httpClient.close();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> hit(HitDto hitDto) {
+        HttpPost request = new HttpPost(uriFactory.expand("/hit"));
+        request.setEntity(new ByteArrayEntity(writeBody(hitDto), wireType));
+        return execute(request).thenApply(body -> null);
+    }
+
+    @Override
+    public CompletableFuture<BulkHitResultDto> hits(List<HitDto> hitDtos) {
+        HttpPost request = new HttpPost(uriFactory.expand("/hits"));
+        request.setEntity(new ByteArrayEntity(writeBody(hitDtos), wireType));
+        return execute(request).thenApply(body -> readBody(body, BulkHitResultDto.class));
+    }
+
+    /**
+     * Sends a GET unless the url would be longer than maxUrlLength, in which case the same
+     * query goes in the body of POST /stats/query.
+     */
+    @Override
+    public CompletableFuture<StatsDto[]> getStats(StatsRequestDto statsRequest) {
+        Map<String, Object> params = new HashMap<>();
+        URI uri = uriFactory.expand(statsUrl(statsRequest, params), params);
+        HttpUriRequest request;
+        if (uri.toString().length() > maxUrlLength) {
+            HttpPost post = new HttpPost(uriFactory.expand("/stats/query"));
+            post.setEntity(new ByteArrayEntity(writeBody(statsRequest), wireType));
+            request = post;
+        } else {
+            request = new HttpGet(uri);
+        }
+        return execute(request).thenApply(body -> readBody(body, StatsDto[].class));
+    }
+
+    /**
+     * Reads the response element by element and passes each one to the consumer,
+     * so the whole result is never held in memory.
+     */
+    @Override
+    public void streamStats(StatsRequestDto statsRequest, Consumer<StatsDto> consumer) {
+        Map<String, Object> params = new HashMap<>();
+        String url = statsUrl(statsRequest, params);
+        restTemplate.execute(url, HttpMethod.GET,
+                request -> request.getHeaders().setAccept(List.of(MediaType.APPLICATION_JSON)),
+                response -> {
+                    try (MappingIterator<StatsDto> stats = statsReader.readValues(response.getBody())) {
+                        while (stats.hasNextValue()) {
+                            consumer.accept(stats.nextValue());
+                        }
+                    }
+                    return null;
+                },
+                params);
+    }
+
+    @Override
+    public StatsDto[] getTop(String app, String window, int limit) {
+        Map<String, Object> params = new HashMap<>();
+        StringBuilder url = new StringBuilder("/stats/top?window={window}&limit={limit}");
+        params.put("window", window);
+        params.put("limit", limit);
+        if (app != null) {
+            params.put("app", app);
+            url.append("&app={app}");
+        }
+        return restTemplate.getForObject(url.toString(), StatsDto[].class, params);
+    }
+
+    @Override
+    public TimeSeriesDto[] getTimeSeries(LocalDateTime start, LocalDateTime end, String step, boolean unique,
+                                         String[] uris) {
+        Map<String, Object> params = new HashMap<>();
+        String url = "/stats/timeseries?start={start}&end={end}&step={step}&unique={unique}";
+        params.put("start", start.format(DateTimeFormatter.ofPattern(DATE_TIME_PATTERN)));
+        params.put("end", end.format(DateTimeFormatter.ofPattern(DATE_TIME_PATTERN)));
+        params.put("step", step);
+        params.put("unique", unique);
+        if (uris != null && uris.length > 0) {
+            params.put("uris", uris);
+            url += "&uris={uris}";
+        }
+        return restTemplate.getForObject(url, TimeSeriesDto[].class, params);
+    }
+
+    @Override
+    public StatsJobDto submitJob(StatsRequestDto request) {
+        return restTemplate.postForObject("/stats/jobs", request, StatsJobDto.class);
+    }
+
+    @Override
+    public StatsJobDto getJob(String id) {
+        return restTemplate.getForObject("/stats/jobs/{id}", StatsJobDto.class, id);
+    }
+
+    @Override
+    public StatsDto[] getJobResults(String id, int from, int size) {
+        return restTemplate.getForObject("/stats/jobs/{id}/results?from={from}&size={size}", StatsDto[].class,
+                id, from, size);
+    }
+
+    @Override
+    public void cancelJob(String id) {
+        restTemplate.delete("/stats/jobs/{id}", id);
+    }
+
+    private CompletableFuture<byte[]> execute(HttpUriRequest request) {
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        request.setHeader(HttpHeaders.ACCEPT, wireType.getMimeType());
+        asyncClient.execute(request, new FutureCallback<>() {
+            @Override
+            public void completed(HttpResponse response) {
+                try {
+                    byte[] body = response.getEntity() == null
+                            ? new byte[0]
+                            : EntityUtils.toByteArray(response.getEntity());
+                    int status = response.getStatusLine().getStatusCode();
+                    if (status >= 400) {
+                        result.completeExceptionally(statusException(status,
+                                response.getStatusLine().getReasonPhrase(), body));
+                    } else {
+                        result.complete(body);
+                    }
+                } catch (IOException e) {
+                    failed(e);
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                result.completeExceptionally(new ResourceAccessException("I/O error on " + request.getMethod() +
+                        " request for \"" + request.getURI() + "\": " + e.getMessage(),
+                        e instanceof IOException ? (IOException) e : new IOException(e)));
+            }
+
+            @Override
+            public void cancelled() {
+                result.cancel(false);
+            }
+        });
+        return result;
+    }
+
+    private static RestClientException statusException(int status, String statusText, byte[] body) {
+        HttpStatus httpStatus = HttpStatus.resolve(status);
+        if (httpStatus != null && httpStatus.is4xxClientError()) {
+            return HttpClientErrorException.create(httpStatus, statusText, HttpHeaders.EMPTY, body,
+                    StandardCharsets.UTF_8);
+        }
+        if (httpStatus != null && httpStatus.is5xxServerError()) {
+            return HttpServerErrorException.create(httpStatus, statusText, HttpHeaders.EMPTY, body,
+                    StandardCharsets.UTF_8);
+        }
+        return new UnknownHttpStatusCodeException(status, statusText, HttpHeaders.EMPTY, body, StandardCharsets.UTF_8);
+    }
+
+    private byte[] writeBody(Object value) {
+        try {
+            return wireMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Could not write " + value, e);
+        }
+    }
+
+    private <T> T readBody(byte[] body, Class<T> type) {
+        try {
+            return wireMapper.readValue(body, type);
+        } catch (IOException e) {
+            throw new RestClientException("Could not read response as " + type.getSimpleName(), e);
+        }
+    }
+
+    private String statsUrl(StatsRequestDto request, Map<String, Object> params) {
+        StringBuilder url = new StringBuilder("/stats?start={start}&end={end}");
+        params.put("start", request.getStart().format(DateTimeFormatter.ofPattern(DATE_TIME_PATTERN)));
+        params.put("end", request.getEnd().format(DateTimeFormatter.ofPattern(DATE_TIME_PATTERN)));
+
+        if (request.isUnique()) {
+            params.put("unique", true);
+            url.append("&unique={unique}");
+        }
+        if (request.getUris() != null && request.getUris().length > 0) {
+            params.put("uris", request.getUris());
+            url.append("&uris={uris}");
+        }
+        if (request.isAggregate()) {
+            params.put("aggregate", true);
+            url.append("&aggregate={aggregate}");
+        }
+        if (request.isApproximate()) {
+            params.put("approximate", true);
+            url.append("&approximate={approximate}");
+        }
+        if (request.getLimit() != null) {
+            params.put("limit", request.getLimit());
+            url.append("&limit={limit}");
+        }
+        return url.toString();
+    }
+}
@@ -0,0 +1,420 @@
+package ru.practicum;
+
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Spreads hits over several stats servers by consistent hashing of the uri, so all hits of a uri are
+ * kept by one node. Reads for exact uris go to the nodes that own them; reads for patterns or all
+ * uris go to every node. Rows from different nodes are then merged, sorted by hits and cut to the limit.
+ * Hits and unique counts per uri are exact. Pattern totals (aggregate) are summed over the nodes, so a
+ * unique total counts an ip once per node it was seen on.
+ * <p>
+ * With scatterReads every read goes to all nodes and rows of the same uri are summed. That keeps counts
+ * complete while uris that moved to a newly added node still have older hits on their previous owner.
+ * Unique counts of such uris are summed as well, so an ip seen on both the old and the new owner is
+ * counted twice until the hits on the old owner age out of the queried range.
+ */
+class ShardedStatsTransport implements StatsTransport {
+    private static final Comparator<StatsDto> BY_HITS = Comparator.comparingLong(StatsDto::getHits).reversed();
+    private static final int RESULT_PAGE = 10_000;
+    private static final int MERGED_JOBS = 16;
+    private final List<StatsTransport> nodes;
+    private final HashRing ring;
+    private final boolean scatterReads;
+    /**
+     * Summed results of the jobs read last, by job id, so paging through them downloads every node's
+     * rows once rather than once per page.
+     */
+    private final Map<String, StatsDto[]> mergedJobs = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, StatsDto[]> eldest) {
+            return size() > MERGED_JOBS;
+        }
+    };
+
+    ShardedStatsTransport(List<String> statsUrls, RestTemplateBuilder builder, StatsClientSettings settings) {
+        this(statsUrls, statsUrls.stream()
+                .map(url -> new HttpStatsTransport(url, builder, settings))
+                .collect(Collectors.toList()), settings);
+    }
+
+    /**
+     * Nodes are placed on the ring by name, so a node keeps its uris as long as its name stays the same,
+     * whatever its position in the list.
+     */
+    ShardedStatsTransport(List<String> names, List<? extends StatsTransport> nodes, StatsClientSettings settings) {
+        this.nodes = List.copyOf(nodes);
+        this.ring = new HashRing(names, settings.getVirtualNodes());
+        this.scatterReads = settings.isScatterReads();
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException error = null;
+        for (StatsTransport node : nodes) {
+            try {
+                node.close();
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                } else {
+                    error.addSuppressed(e);
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> hit(HitDto hitDto) {
+        return nodes.get(owner(hitDto.getUri())).hit(hitDto);
+    }
+
+    /**
+     * Sends every node its share of the hits; rejected hits are reported by their index in the whole list.
+     */
+    @Override
+    public CompletableFuture<BulkHitResultDto> hits(List<HitDto> hitDtos) {
+        Map<Integer, List<Integer>> indexes = new TreeMap<>();
+        for (int i = 0; i < hitDtos.size(); i++) {
+            indexes.computeIfAbsent(owner(hitDtos.get(i).getUri()), node -> new ArrayList<>()).add(i);
+        }
+        if (indexes.size() <= 1) {
+            return nodes.get(indexes.isEmpty() ? 0 : indexes.keySet().iterator().next()).hits(hitDtos);
+        }
+        List<List<Integer>> partIndexes = new ArrayList<>(indexes.values());
+        List<CompletableFuture<BulkHitResultDto>> parts = new ArrayList<>();
+        indexes.forEach((node, part) -> parts.add(nodes.get(node).hits(part.stream()
+                .map(hitDtos::get)
+                .collect(Collectors.toList()))));
+        return CompletableFuture.allOf(parts.toArray(CompletableFuture[]::new)).thenApply(ignored -> {
+            long accepted = 0;
+            List<RejectedHitDto> rejected = new ArrayList<>();
+            for (int i = 0; i < parts.size(); i++) {
+                BulkHitResultDto result = parts.get(i).join();
+                List<Integer> part = partIndexes.get(i);
+                accepted += result.getAccepted();
+                for (RejectedHitDto hit : result.getRejected()) {
+                    long index = hit.getIndex() < part.size() ? part.get((int) hit.getIndex()) : hit.getIndex();
+                    rejected.add(new RejectedHitDto(index, hit.getReason()));
+                }
+            }
+            rejected.sort(Comparator.comparingLong(RejectedHitDto::getIndex));
+            return new BulkHitResultDto(accepted, rejected);
+        });
+    }
+
+    @Override
+    public CompletableFuture<StatsDto[]> getStats(StatsRequestDto request) {
+        List<CompletableFuture<StatsDto[]>> parts = new ArrayList<>();
+        split(request).forEach((node, part) -> parts.add(nodes.get(node).getStats(part)));
+        return CompletableFuture.allOf(parts.toArray(CompletableFuture[]::new)).thenApply(ignored -> {
+            Map<List<String>, StatsDto> rows = new HashMap<>();
+            parts.forEach(part -> Arrays.stream(part.join()).forEach(row -> add(rows, row)));
+            return sorted(rows, request.getLimit());
+        });
+    }
+
+    /**
+     * Streams the nodes one after another, so rows are sorted by hits only within a node. Rows that
+     * have to be summed over nodes are collected first and passed on sorted.
+     */
+    @Override
+    public void streamStats(StatsRequestDto request, Consumer<StatsDto> consumer) {
+        Map<Integer, StatsRequestDto> parts = split(request);
+        if (!isSummed(request)) {
+            parts.forEach((node, part) -> nodes.get(node).streamStats(part, consumer));
+            return;
+        }
+        Map<List<String>, StatsDto> rows = new HashMap<>();
+        parts.forEach((node, part) -> nodes.get(node).streamStats(part, row -> add(rows, row)));
+        Arrays.stream(sorted(rows, request.getLimit())).forEach(consumer);
+    }
+
+    @Override
+    public StatsDto[] getTop(String app, String window, int limit) {
+        Map<List<String>, StatsDto> rows = new HashMap<>();
+        for (StatsTransport node : nodes) {
+            Arrays.stream(node.getTop(app, window, limit)).forEach(row -> add(rows, row));
+        }
+        return sorted(rows, limit);
+    }
+
+    @Override
+    public TimeSeriesDto[] getTimeSeries(LocalDateTime start, LocalDateTime end, String step, boolean unique,
+                                         String[] uris) {
+        Map<List<String>, TimeSeriesDto> series = new LinkedHashMap<>();
+        split(StatsRequestDto.builder().start(start).end(end).uris(uris).unique(unique).build())
+                .forEach((node, part) -> {
+                    for (TimeSeriesDto row : nodes.get(node).getTimeSeries(start, end, step, unique, part.getUris())) {
+                        series.merge(Arrays.asList(row.getApp(), row.getUri()), row, ShardedStatsTransport::sum);
+                    }
+                });
+        return series.values().toArray(TimeSeriesDto[]::new);
+    }
+
+    /**
+     * Submits a job to every node the query goes to. The returned id lists the job of each node,
+     * e.g. "0:id,2:id;limit=10", and is understood by the other job calls of this transport only.
+     */
+    @Override
+    public StatsJobDto submitJob(StatsRequestDto request) {
+        Map<Integer, String> ids = new LinkedHashMap<>();
+        List<StatsJobDto> jobs = new ArrayList<>();
+        try {
+            split(request).forEach((node, part) -> {
+                StatsJobDto job = nodes.get(node).submitJob(part);
+                ids.put(node, job.getId());
+                jobs.add(job);
+            });
+        } catch (RuntimeException e) {
+            ids.forEach((node, id) -> {
+                try {
+                    nodes.get(node).cancelJob(id);
+                } catch (RuntimeException cancelError) {
+                    e.addSuppressed(cancelError);
+                }
+            });
+            throw e;
+        }
+        JobRef ref = new JobRef(ids, request.getLimit(), isSummed(request));
+        return combine(ref, jobs);
+    }
+
+    @Override
+    public StatsJobDto getJob(String id) {
+        JobRef ref = JobRef.parse(id, nodes.size());
+        List<StatsJobDto> jobs = new ArrayList<>();
+        ref.ids.forEach((node, nodeId) -> jobs.add(nodes.get(node).getJob(nodeId)));
+        return combine(ref, jobs);
+    }
+
+    /**
+     * Reads the first from + size rows of every node and returns the requested page of the merged rows.
+     * Rows that have to be summed are all read on the first call and kept for the following pages.
+     */
+    @Override
+    public StatsDto[] getJobResults(String id, int from, int size) {
+        JobRef ref = JobRef.parse(id, nodes.size());
+        StatsDto[] merged;
+        if (ref.summed) {
+            String key = ref.toString();
+            synchronized (mergedJobs) {
+                merged = mergedJobs.get(key);
+            }
+            if (merged == null) {
+                merged = mergeJobResults(ref, Long.MAX_VALUE);
+                synchronized (mergedJobs) {
+                    mergedJobs.put(key, merged);
+                }
+            }
+        } else {
+            merged = mergeJobResults(ref, (long) from + size);
+        }
+        return Arrays.copyOfRange(merged, Math.min(from, merged.length), (int) Math.min((long) from + size,
+                merged.length));
+    }
+
+    @Override
+    public void cancelJob(String id) {
+        JobRef ref = JobRef.parse(id, nodes.size());
+        synchronized (mergedJobs) {
+            mergedJobs.remove(ref.toString());
+        }
+        ref.ids.forEach((node, nodeId) -> nodes.get(node).cancelJob(nodeId));
+    }
+
+    private StatsDto[] mergeJobResults(JobRef ref, long needed) {
+        Map<List<String>, StatsDto> rows = new HashMap<>();
+        ref.ids.forEach((node, nodeId) -> {
+            for (long offset = 0; offset < needed; offset += RESULT_PAGE) {
+                int pageSize = (int) Math.min(RESULT_PAGE, needed - offset);
+                StatsDto[] page = nodes.get(node).getJobResults(nodeId, (int) offset, pageSize);
+                Arrays.stream(page).forEach(row -> add(rows, row));
+                if (page.length < pageSize) {
+                    break;
+                }
+            }
+        });
+        return sorted(rows, ref.limit);
+    }
+
+    private int owner(String uri) {
+        return ring.owner(Objects.requireNonNullElse(uri, ""));
+    }
+
+    /**
+     * Maps every node the request goes to onto the part of the request it answers. Limits are left
+     * to the merge when rows of several nodes have to be summed.
+     */
+    private Map<Integer, StatsRequestDto> split(StatsRequestDto request) {
+        Map<Integer, StatsRequestDto> parts = new TreeMap<>();
+        String[] uris = request.getUris();
+        Integer limit = isSummed(request) ? null : request.getLimit();
+        if (scatterReads || uris == null || uris.length == 0 || Arrays.stream(uris).anyMatch(uri -> uri.endsWith("*"))) {
+            for (int node = 0; node < nodes.size(); node++) {
+                parts.put(node, part(request, uris, limit));
+            }
+            return parts;
+        }
+        Map<Integer, List<String>> owned = new TreeMap<>();
+        for (String uri : uris) {
+            owned.computeIfAbsent(owner(uri), node -> new ArrayList<>()).add(uri);
+        }
+        owned.forEach((node, nodeUris) -> parts.put(node, part(request, nodeUris.toArray(String[]::new), limit)));
+        return parts;
+    }
+
+    private boolean isSummed(StatsRequestDto request) {
+        return scatterReads || request.isAggregate();
+    }
+
+    private static StatsRequestDto part(StatsRequestDto request, String[] uris, Integer limit) {
+        return StatsRequestDto.builder()
+                .start(request.getStart())
+                .end(request.getEnd())
+                .uris(uris)
+                .unique(request.isUnique())
+                .approximate(request.isApproximate())
+                .aggregate(request.isAggregate())
+                .limit(limit)
+                .build();
+    }
+
+    private static void add(Map<List<String>, StatsDto> rows, StatsDto row) {
+        rows.merge(Arrays.asList(row.getApp(), row.getUri()), row,
+                (left, right) -> new StatsDto(left.getApp(), left.getUri(), left.getHits() + right.getHits()));
+    }
+
+    private static StatsDto[] sorted(Map<List<String>, StatsDto> rows, Integer limit) {
+        return rows.values().stream()
+                .sorted(BY_HITS)
+                .limit(limit == null ? Long.MAX_VALUE : limit)
+                .toArray(StatsDto[]::new);
+    }
+
+    private static TimeSeriesDto sum(TimeSeriesDto left, TimeSeriesDto right) {
+        long[] hits = Arrays.copyOf(left.getHits(), Math.max(left.getHits().length, right.getHits().length));
+        for (int i = 0; i < right.getHits().length; i++) {
+            hits[i] += right.getHits()[i];
+        }
+        return new TimeSeriesDto(left.getApp(), left.getUri(), left.getStart(), left.getStep(), hits);
+    }
+
+    /**
+     * The job is failed or cancelled if one of its parts is, and done once all of them are. The result
+     * count is exact unless rows are summed over nodes, in which case it is an upper bound.
+     */
+    private static StatsJobDto combine(JobRef ref, List<StatsJobDto> jobs) {
+        StatsJobDto.Status status = jobs.stream()
+                .map(StatsJobDto::getStatus)
+                .reduce(ShardedStatsTransport::combine)
+                .orElse(StatsJobDto.Status.DONE);
+        LocalDateTime submitted = jobs.stream()
+                .map(StatsJobDto::getSubmitted)
+                .filter(Objects::nonNull)
+                .min(Comparator.naturalOrder())
+                .orElse(null);
+        LocalDateTime finished = status == StatsJobDto.Status.DONE
+                ? jobs.stream()
+                .map(StatsJobDto::getFinished)
+                .filter(Objects::nonNull)
+                .max(Comparator.naturalOrder())
+                .orElse(null)
+                : null;
+        long resultCount = jobs.stream().mapToLong(StatsJobDto::getResultCount).sum();
+        if (ref.limit != null) {
+            resultCount = Math.min(resultCount, ref.limit);
+        }
+        String error = jobs.stream()
+                .map(StatsJobDto::getError)
+                .filter(Objects::nonNull)
+                .collect(Collectors.collectingAndThen(Collectors.joining("; "), text -> text.isEmpty() ? null : text));
+        return new StatsJobDto(ref.toString(), status, submitted, finished, resultCount, error);
+    }
+
+    private static StatsJobDto.Status combine(StatsJobDto.Status left, StatsJobDto.Status right) {
+        for (StatsJobDto.Status status : List.of(StatsJobDto.Status.FAILED, StatsJobDto.Status.CANCELLED)) {
+            if (left == status || right == status) {
+                return status;
+            }
+        }
+        return left == right ? left : StatsJobDto.Status.RUNNING;
+    }
+
+    private static final class JobRef {
+        private static final String LIMIT = "limit=";
+        private static final String SUMMED = "summed";
+        private final Map<Integer, String> ids;
+        private final Integer limit;
+        private final boolean summed;
+
+        private JobRef(Map<Integer, String> ids, Integer limit, boolean summed) {
+            this.ids = ids;
+            this.limit = limit;
+            this.summed = summed;
+        }
+
+        static JobRef parse(String id, int nodeCount) {
+            String[] fields = id.split(";");
+            Map<Integer, String> ids = new LinkedHashMap<>();
+            Integer limit = null;
+            boolean summed = false;
+            try {
+                for (String part : fields[0].split(",")) {
+                    int colon = part.indexOf(':');
+                    int node = Integer.parseInt(part.substring(0, colon));
+                    if (node < 0 || node >= nodeCount) {
+                        throw notFound(id);
+                    }
+                    ids.put(node, part.substring(colon + 1));
+                }
+                for (int i = 1; i < fields.length; i++) {
+                    if (fields[i].startsWith(LIMIT)) {
+                        limit = Integer.parseInt(fields[i].substring(LIMIT.length()));
+                    } else if (fields[i].equals(SUMMED)) {
+                        summed = true;
+                    }
+                }
+            } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+                throw notFound(id);
+            }
+            return new JobRef(ids, limit, summed);
+        }
+
+        private static HttpClientErrorException notFound(String id) {
+            return HttpClientErrorException.create(HttpStatus.NOT_FOUND, HttpStatus.NOT_FOUND.getReasonPhrase(),
+                    HttpHeaders.EMPTY, ("Job " + id + " was not found").getBytes(StandardCharsets.UTF_8),
+                    StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String toString() {
+            StringJoiner id = new StringJoiner(",");
+            ids.forEach((node, nodeId) -> id.add(node + ":" + nodeId));
+            return id + (limit != null ? ";" + LIMIT + limit : "") + (summed ? ";" + SUMMED : "");
+        }
+    }
+}
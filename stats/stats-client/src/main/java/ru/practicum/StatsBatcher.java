@@ -0,0 +1,122 @@
+package ru.practicum;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges stats requests for the same range that arrive within a short window into one request
+ * for all of their uris, and hands every caller the rows of the uris it asked for.
+ */
+class StatsBatcher {
+    private final Duration window;
+    private final int maxUris;
+    private final Sender sender;
+    private final ScheduledExecutorService scheduler;
+    private final Map<List<Object>, Batch> open = new HashMap<>();
+
+    interface Sender {
+        CompletableFuture<StatsDto[]> send(LocalDateTime start, LocalDateTime end, boolean unique, String[] uris);
+    }
+
+    StatsBatcher(Duration window, int maxUris, Sender sender) {
+        this.window = window;
+        this.maxUris = maxUris;
+        this.sender = sender;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = new Thread(task, "stats-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        this.scheduler = executor;
+    }
+
+    CompletableFuture<StatsDto[]> submit(LocalDateTime start, LocalDateTime end, boolean unique, String[] uris) {
+        List<Object> key = List.of(start.truncatedTo(ChronoUnit.SECONDS), end.truncatedTo(ChronoUnit.SECONDS), unique);
+        Batch batch;
+        boolean full;
+        synchronized (open) {
+            batch = open.get(key);
+            if (batch == null) {
+                batch = new Batch(start, end, unique);
+                open.put(key, batch);
+                Batch scheduled = batch;
+                scheduler.schedule(() -> fire(key, scheduled), window.toNanos(), TimeUnit.NANOSECONDS);
+            }
+            batch.uris.addAll(Arrays.asList(uris));
+            full = batch.uris.size() >= maxUris;
+            if (full) {
+                open.remove(key);
+            }
+        }
+        if (full) {
+            batch.fire();
+        }
+        return batch.result.thenApply(stats -> select(stats, uris));
+    }
+
+    void close() {
+        scheduler.shutdownNow();
+        List<Batch> pending;
+        synchronized (open) {
+            pending = List.copyOf(open.values());
+            open.clear();
+        }
+        pending.forEach(Batch::fire);
+    }
+
+    private void fire(List<Object> key, Batch batch) {
+        synchronized (open) {
+            if (!open.remove(key, batch)) {
+                return;
+            }
+        }
+        batch.fire();
+    }
+
+    private static StatsDto[] select(StatsDto[] stats, String[] uris) {
+        return Arrays.stream(stats)
+                .filter(row -> Arrays.stream(uris).anyMatch(uri -> matches(uri, row.getUri())))
+                .map(row -> new StatsDto(row.getApp(), row.getUri(), row.getHits()))
+                .toArray(StatsDto[]::new);
+    }
+
+    private static boolean matches(String pattern, String uri) {
+        return pattern.endsWith("*") ? uri.startsWith(pattern.substring(0, pattern.length() - 1)) : pattern.equals(uri);
+    }
+
+    private class Batch {
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final boolean unique;
+        private final Set<String> uris = new LinkedHashSet<>();
+        private final CompletableFuture<StatsDto[]> result = new CompletableFuture<>();
+
+        Batch(LocalDateTime start, LocalDateTime end, boolean unique) {
+            this.start = start;
+            this.end = end;
+            this.unique = unique;
+        }
+
+        void fire() {
+            sender.send(start, end, unique, uris.toArray(String[]::new)).whenComplete((stats, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(stats);
+                }
+            });
+        }
+    }
+}
@@ -1,29 +1,121 @@
 package ru.practicum;
 
 import org.springframework.boot.web.client.RestTemplateBuilder;
-import org.springframework.http.ResponseEntity;
-import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.web.util.DefaultUriBuilderFactory;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
-public class StatsClient {
-    private static final String DATE_TIME_PATTERN = "yyyy-MM-dd HH:mm:ss";
-    private final RestTemplate restTemplate;
+/**
+ * Client of the stats server. Buffering, coalescing and batching happen here; the calls themselves
+ * go through a {@link StatsTransport}, over HTTP unless the server runs in the same process.
+ * hit and getStats are blocking adapters over hitAsync and getStatsAsync.
+ */
+public class StatsClient implements Closeable {
+    private final StatsTransport transport;
+    private final HitBuffer hitBuffer;
+    private final StatsBatcher statsBatcher;
+    private final Map<List<Object>, CompletableFuture<StatsDto[]>> statsInFlight;
 
     public StatsClient(String statsUrl, RestTemplateBuilder builder) {
-        this.restTemplate = builder
-                .uriTemplateHandler(new DefaultUriBuilderFactory(statsUrl))
-                .requestFactory(HttpComponentsClientHttpRequestFactory::new)
-                .build();
+        this(statsUrl, builder, StatsClientSettings.defaults());
+    }
+
+    public StatsClient(String statsUrl, RestTemplateBuilder builder, StatsClientSettings settings) {
+        this(new HttpStatsTransport(statsUrl, builder, settings), settings);
+    }
+
+    /**
+     * Spreads hits over the servers by uri and merges the rows of every server a read goes to;
+     * see {@link ShardedStatsTransport}.
+     */
+    public StatsClient(List<String> statsUrls, RestTemplateBuilder builder, StatsClientSettings settings) {
+        this(statsUrls.size() == 1
+                ? new HttpStatsTransport(statsUrls.get(0), builder, settings)
+                : new ShardedStatsTransport(statsUrls, builder, settings), settings);
+    }
+
+    public StatsClient(StatsTransport transport, StatsClientSettings settings) {
+        this.transport = transport;
+        HitSpool spool = settings.getSpoolDir() == null
+                ? null
+                : new HitSpool(settings.getSpoolDir(), settings.getSpoolSegmentSize(), settings.getSpoolMaxSegments());
+        this.hitBuffer = settings.isBufferHits() || spool != null
+                ? new HitBuffer(settings.getBufferCapacity(), settings.getFlushBatchSize(), settings.getFlushInterval(),
+                settings.getDrainTimeout(), this::hits, spool)
+                : null;
+        if (hitBuffer != null) {
+            hitBuffer.start();
+        }
+        this.statsInFlight = settings.isCoalesceStats() ? new ConcurrentHashMap<>() : null;
+        this.statsBatcher = settings.getBatchWindow().isZero()
+                ? null
+                : new StatsBatcher(settings.getBatchWindow(), settings.getMaxBatchUris(),
+                (start, end, unique, uris) -> fetchStats(request(start, end, unique, uris, null)));
     }
 
+    /**
+     * Sends the hits still buffered and closes the transport.
+     */
+    @Override
+    public void close() throws IOException {
+        if (hitBuffer != null) {
+            hitBuffer.close();
+        }
+        if (statsBatcher != null) {
+            statsBatcher.close();
+        }
+        transport.close();
+    }
+
+    /**
+     * Sends the hit, or only adds it to the buffer when hits are buffered.
+     */
     public void hit(HitDto hitDto) {
-        restTemplate.postForEntity("/hit", hitDto, HitDto.class);
+        if (hitBuffer != null) {
+            hitBuffer.add(hitDto);
+        } else {
+            join(hitAsync(hitDto));
+        }
+    }
+
+    public long getFlushedHits() {
+        return hitBuffer == null ? 0 : hitBuffer.getFlushed();
+    }
+
+    public long getDroppedHits() {
+        return hitBuffer == null ? 0 : hitBuffer.getDropped();
+    }
+
+    public long getFailedHits() {
+        return hitBuffer == null ? 0 : hitBuffer.getFailed();
+    }
+
+    public long getSpooledHits() {
+        return hitBuffer == null ? 0 : hitBuffer.getSpooled();
+    }
+
+    /**
+     * Returns the number of hits in the spool waiting to be sent.
+     */
+    public long getSpoolSize() {
+        return hitBuffer == null ? 0 : hitBuffer.getSpoolSize();
+    }
+
+    public CompletableFuture<Void> hitAsync(HitDto hitDto) {
+        return transport.hit(hitDto);
+    }
+
+    public BulkHitResultDto hits(List<HitDto> hitDtos) {
+        return join(transport.hits(hitDtos));
     }
 
     public StatsDto[] getStats(LocalDateTime start, LocalDateTime end) {
@@ -39,21 +131,137 @@ public class StatsClient {
     }
 
     public StatsDto[] getStats(LocalDateTime start, LocalDateTime end, boolean unique, String[] uris) {
-        StringBuilder url = new StringBuilder("/stats?start={start}&end={end}");
-        Map<String, Object> params = new HashMap<>();
-        params.put("start", start.format(DateTimeFormatter.ofPattern(DATE_TIME_PATTERN)));
-        params.put("end", end.format(DateTimeFormatter.ofPattern(DATE_TIME_PATTERN)));
+        return getStats(start, end, unique, uris, null);
+    }
+
+    public StatsDto[] getStats(LocalDateTime start, LocalDateTime end, boolean unique, String[] uris, Integer limit) {
+        return join(getStatsAsync(start, end, unique, uris, limit));
+    }
+
+    public CompletableFuture<StatsDto[]> getStatsAsync(LocalDateTime start, LocalDateTime end, boolean unique,
+                                                       String[] uris) {
+        return getStatsAsync(start, end, unique, uris, null);
+    }
+
+    /**
+     * Identical calls in flight at the same time share one request, and calls for a few uris
+     * may be merged with others for the same range when batching is on; every caller gets its
+     * own copy of the rows.
+     */
+    public CompletableFuture<StatsDto[]> getStatsAsync(LocalDateTime start, LocalDateTime end, boolean unique,
+                                                       String[] uris, Integer limit) {
+        if (statsBatcher != null && limit == null && uris != null && uris.length > 0) {
+            return statsBatcher.submit(start, end, unique, uris);
+        }
+        return fetchStats(request(start, end, unique, uris, limit)).thenApply(StatsClient::copy);
+    }
 
-        if (unique) {
-            params.put("unique", true);
-            url.append("&unique={unique}");
+    private CompletableFuture<StatsDto[]> fetchStats(StatsRequestDto request) {
+        if (statsInFlight == null) {
+            return transport.getStats(request);
         }
-        if (uris != null && uris.length > 0) {
-            params.put("uris", uris);
-            url.append("&uris={uris}");
+        List<Object> key = Arrays.asList(request.getStart(), request.getEnd(), request.isUnique(),
+                request.getUris() == null ? null : Arrays.asList(request.getUris()), request.getLimit());
+        CompletableFuture<StatsDto[]> created = new CompletableFuture<>();
+        CompletableFuture<StatsDto[]> shared = statsInFlight.putIfAbsent(key, created);
+        if (shared != null) {
+            return shared;
         }
+        // sent outside of the map, as a transport may answer on the calling thread
+        transport.getStats(request).whenComplete((stats, error) -> {
+            statsInFlight.remove(key, created);
+            if (error != null) {
+                created.completeExceptionally(error);
+            } else {
+                created.complete(stats);
+            }
+        });
+        return created;
+    }
 
-        ResponseEntity<StatsDto[]> responseEntity = restTemplate.getForEntity(url.toString(), StatsDto[].class, params);
-        return responseEntity.getBody();
+    /**
+     * Times are cut to whole seconds, as they are sent over HTTP, so that calls made within
+     * the same second share a request.
+     */
+    private static StatsRequestDto request(LocalDateTime start, LocalDateTime end, boolean unique, String[] uris,
+                                           Integer limit) {
+        return StatsRequestDto.builder()
+                .start(start.truncatedTo(ChronoUnit.SECONDS))
+                .end(end.truncatedTo(ChronoUnit.SECONDS))
+                .uris(uris)
+                .unique(unique)
+                .limit(limit)
+                .build();
+    }
+
+    private static StatsDto[] copy(StatsDto[] stats) {
+        return Arrays.stream(stats)
+                .map(row -> new StatsDto(row.getApp(), row.getUri(), row.getHits()))
+                .toArray(StatsDto[]::new);
+    }
+
+    /**
+     * Reads the response element by element and passes each one to the consumer,
+     * so the whole result is never held in memory.
+     */
+    public void streamStats(LocalDateTime start, LocalDateTime end, boolean unique, String[] uris,
+                            Consumer<StatsDto> consumer) {
+        transport.streamStats(request(start, end, unique, uris, null), consumer);
+    }
+
+    public StatsDto[] getTop(String app, String window, int limit) {
+        return transport.getTop(app, window, limit);
+    }
+
+    /**
+     * Returns one row per app and uri pattern, e.g. "/events/*", with hits of all matching uris summed up.
+     */
+    public StatsDto[] getTotals(LocalDateTime start, LocalDateTime end, boolean unique, String[] patterns) {
+        StatsRequestDto request = request(start, end, unique, patterns, null);
+        request.setAggregate(true);
+        return join(transport.getStats(request));
+    }
+
+    /**
+     * Returns hits per bucket of the step ("minute", "hour" or "day") for every app and uri,
+     * as dense arrays starting at the bucket that holds start.
+     */
+    public TimeSeriesDto[] getTimeSeries(LocalDateTime start, LocalDateTime end, String step, boolean unique,
+                                         String[] uris) {
+        return transport.getTimeSeries(start, end, step, unique, uris);
+    }
+
+    /**
+     * Submits a stats query to run in the background; poll getJob until it is done and then
+     * read the results page by page.
+     */
+    public StatsJobDto submitJob(StatsRequestDto request) {
+        return transport.submitJob(request);
+    }
+
+    public StatsJobDto getJob(String id) {
+        return transport.getJob(id);
+    }
+
+    public StatsDto[] getJobResults(String id, int from, int size) {
+        return transport.getJobResults(id, from, size);
+    }
+
+    public void cancelJob(String id) {
+        transport.cancelJob(id);
+    }
+
+    /**
+     * Waits for an asynchronous call, throwing the same exceptions a RestTemplate call would.
+     */
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
     }
 }
@@ -0,0 +1,106 @@
+package ru.practicum;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Connection pool, timeouts and hit buffering of {@link StatsClient}.
+ */
+@Getter
+@Builder
+public class StatsClientSettings {
+    @Builder.Default
+    private Duration connectTimeout = Duration.ofSeconds(1);
+
+    @Builder.Default
+    private Duration responseTimeout = Duration.ofSeconds(5);
+
+    @Builder.Default
+    private Duration poolTimeout = Duration.ofSeconds(5);
+
+    @Builder.Default
+    private Duration keepAlive = Duration.ofSeconds(30);
+
+    @Builder.Default
+    private int maxConnections = 50;
+
+    @Builder.Default
+    private int maxConnectionsPerRoute = 20;
+
+    /**
+     * Makes hit return at once and send hits in batches from a background thread; see {@link HitBuffer}.
+     */
+    @Builder.Default
+    private boolean bufferHits = false;
+
+    @Builder.Default
+    private int bufferCapacity = 10_000;
+
+    @Builder.Default
+    private int flushBatchSize = 500;
+
+    @Builder.Default
+    private Duration flushInterval = Duration.ofSeconds(1);
+
+    @Builder.Default
+    private Duration drainTimeout = Duration.ofSeconds(30);
+
+    /**
+     * Directory of the {@link HitSpool} that keeps hits the server could not take until it recovers,
+     * also across restarts; null keeps no spool. Setting it turns hit buffering on.
+     */
+    private Path spoolDir;
+
+    @Builder.Default
+    private int spoolSegmentSize = 16 << 20;
+
+    @Builder.Default
+    private int spoolMaxSegments = 64;
+
+    /**
+     * Makes concurrent identical getStats calls share one request to the server.
+     */
+    @Builder.Default
+    private boolean coalesceStats = true;
+
+    /**
+     * Merges getStats calls for the same range and different uris made within this window into
+     * one request; zero turns merging off. See {@link StatsBatcher}.
+     */
+    @Builder.Default
+    private Duration batchWindow = Duration.ZERO;
+
+    @Builder.Default
+    private int maxBatchUris = 100;
+
+    /**
+     * getStats requests with longer urls are sent as POST /stats/query with the uris in the body.
+     */
+    @Builder.Default
+    private int maxUrlLength = 2048;
+
+    /**
+     * Sends hits and reads stats as CBOR with epoch timestamps instead of JSON; see {@link WireFormat}.
+     */
+    @Builder.Default
+    private boolean binary = false;
+
+    /**
+     * Points per node on the hash ring that spreads uris over several servers; see {@link HashRing}.
+     */
+    @Builder.Default
+    private int virtualNodes = 160;
+
+    /**
+     * Sends every read to all servers, for the time after a server is added; see {@link ShardedStatsTransport}.
+     */
+    @Builder.Default
+    private boolean scatterReads = false;
+
+    public static StatsClientSettings defaults() {
+        return builder().build();
+    }
+}
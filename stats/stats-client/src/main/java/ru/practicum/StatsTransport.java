@@ -0,0 +1,35 @@
+package ru.practicum;
+
+import java.io.Closeable;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * How {@link StatsClient} reaches the stats server: over HTTP, or by direct calls when the
+ * server runs in the same process. Failures are reported with the same RestClientException
+ * subtypes either way.
+ */
+public interface StatsTransport extends Closeable {
+    CompletableFuture<Void> hit(HitDto hitDto);
+
+    CompletableFuture<BulkHitResultDto> hits(List<HitDto> hitDtos);
+
+    CompletableFuture<StatsDto[]> getStats(StatsRequestDto request);
+
+    void streamStats(StatsRequestDto request, Consumer<StatsDto> consumer);
+
+    StatsDto[] getTop(String app, String window, int limit);
+
+    TimeSeriesDto[] getTimeSeries(LocalDateTime start, LocalDateTime end, String step, boolean unique,
+                                  String[] uris);
+
+    StatsJobDto submitJob(StatsRequestDto request);
+
+    StatsJobDto getJob(String id);
+
+    StatsDto[] getJobResults(String id, int from, int size);
+
+    void cancelJob(String id);
+}
@@ -0,0 +1,111 @@
+package ru.practicum;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HitSpoolTest {
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void keepsUncommittedHitsAcrossRestart() {
+        HitSpool spool = new HitSpool(dir, SEGMENT_SIZE, 4);
+        spool.append(hits(0, 5));
+        assertEquals(hits(0, 3), spool.read(3));
+        spool.commit();
+        spool.read(2);
+        spool.force();
+
+        HitSpool reopened = new HitSpool(dir, SEGMENT_SIZE, 4);
+
+        assertEquals(2, reopened.size());
+        assertEquals(hits(3, 5), reopened.read(10));
+    }
+
+    @Test
+    void readsHitsOfSeveralSegmentsInOrderAfterRestart() throws IOException {
+        HitSpool spool = new HitSpool(dir, SEGMENT_SIZE, 16);
+        spool.append(hits(0, 100));
+        spool.force();
+        assertTrue(segments().size() > 1);
+
+        HitSpool reopened = new HitSpool(dir, SEGMENT_SIZE, 16);
+        assertEquals(100, reopened.size());
+        List<HitDto> read = new ArrayList<>();
+        List<HitDto> batch;
+        while (!(batch = reopened.read(30)).isEmpty()) {
+            read.addAll(batch);
+            reopened.commit();
+        }
+
+        assertEquals(hits(0, 100), read);
+        assertEquals(0, reopened.size());
+        reopened.force();
+        assertEquals(0, new HitSpool(dir, SEGMENT_SIZE, 16).size());
+    }
+
+    @Test
+    void ignoresRecordCutShortByCrash() throws IOException {
+        HitSpool spool = new HitSpool(dir, SEGMENT_SIZE, 4);
+        spool.append(hits(0, 2));
+        spool.force();
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+            int offset = Long.BYTES;
+            while (buffer.getInt(offset) > 0) {
+                offset += Integer.BYTES + buffer.getInt(offset);
+            }
+            buffer.position(offset + Integer.BYTES);
+            buffer.put("{\"app\":\"ewm\"".getBytes());
+        }
+
+        HitSpool reopened = new HitSpool(dir, SEGMENT_SIZE, 4);
+
+        assertEquals(hits(0, 2), reopened.read(10));
+        reopened.append(hits(2, 3));
+        reopened.commit();
+        assertEquals(hits(2, 3), reopened.read(10));
+    }
+
+    @Test
+    void refusesHitsBeyondLastSegment() {
+        HitSpool spool = new HitSpool(dir, SEGMENT_SIZE, 1);
+
+        int refused = spool.append(hits(0, 100));
+
+        assertTrue(refused > 0);
+        assertEquals(100 - refused, spool.size());
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static List<HitDto> hits(int from, int to) {
+        return IntStream.range(from, to)
+                .mapToObj(i -> new HitDto("ewm-main-service", "/events/" + i, "192.168.0." + i,
+                        LocalDateTime.of(2026, 10, 1, 12, 0, i % 60)))
+                .collect(Collectors.toList());
+    }
+}
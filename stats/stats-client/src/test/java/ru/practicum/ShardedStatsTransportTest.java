@@ -0,0 +1,227 @@
+package ru.practicum;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardedStatsTransportTest {
+    private static final LocalDateTime DAY = LocalDateTime.of(2026, 1, 10, 0, 0);
+    private static final List<String> NAMES = List.of("stats-a", "stats-b", "stats-c");
+
+    @Test
+    void keepsUrisOnTheirOwnerOrMovesThemToTheAddedNode() {
+        List<MemoryTransport> nodes = nodes(4);
+        ShardedStatsTransport before = sharded(NAMES, nodes.subList(0, 3), false);
+        ShardedStatsTransport after = sharded(names(4), nodes, false);
+
+        int moved = 0;
+        for (int i = 0; i < 1000; i++) {
+            String uri = "/events/" + i;
+            int oldOwner = receiver(nodes, before, uri);
+            int newOwner = receiver(nodes, after, uri);
+            assertTrue(newOwner == oldOwner || newOwner == 3, uri + " moved from " + oldOwner + " to " + newOwner);
+            moved += newOwner == oldOwner ? 0 : 1;
+        }
+        assertTrue(moved > 150 && moved < 350, moved + " of 1000 uris moved");
+    }
+
+    @Test
+    void sumsRowsOfMovedUrisOverAllNodesWithScatterReads() {
+        List<MemoryTransport> nodes = nodes(4);
+        String uri = movedUri(nodes);
+        ShardedStatsTransport before = sharded(NAMES, nodes.subList(0, 3), false);
+        before.hit(hit(uri, "10.0.0.1"));
+        before.hit(hit(uri, "10.0.0.2"));
+        ShardedStatsTransport after = sharded(names(4), nodes, false);
+        ShardedStatsTransport scattered = sharded(names(4), nodes, true);
+        after.hit(hit(uri, "10.0.0.1"));
+
+        assertArrayEquals(new StatsDto[]{new StatsDto("ewm", uri, 1)}, after.getStats(request(uri, false)).join());
+        assertArrayEquals(new StatsDto[]{new StatsDto("ewm", uri, 3)}, scattered.getStats(request(uri, false)).join());
+        // 10.0.0.1 was seen by the old and the new owner, so it is counted on both
+        assertArrayEquals(new StatsDto[]{new StatsDto("ewm", uri, 3)}, scattered.getStats(request(uri, true)).join());
+    }
+
+    @Test
+    void reportsRejectedHitsByTheirIndexInTheWholeBatch() {
+        List<MemoryTransport> nodes = nodes(3);
+        ShardedStatsTransport sharded = sharded(NAMES, nodes, false);
+        List<HitDto> hits = IntStream.range(0, 40)
+                .mapToObj(i -> hit("/events/" + i, i % 7 == 3 ? "" : "10.0.0.1"))
+                .collect(Collectors.toList());
+
+        BulkHitResultDto result = sharded.hits(hits).join();
+
+        List<Long> expected = IntStream.range(0, 40).filter(i -> i % 7 == 3).mapToObj(i -> (long) i)
+                .collect(Collectors.toList());
+        assertEquals(expected, result.getRejected().stream().map(RejectedHitDto::getIndex)
+                .collect(Collectors.toList()));
+        assertEquals(40 - expected.size(), result.getAccepted());
+        assertTrue(nodes.stream().filter(node -> !node.hits.isEmpty()).count() > 1);
+    }
+
+    @Test
+    void downloadsSummedJobResultsOnceForAllPages() {
+        List<MemoryTransport> nodes = nodes(3);
+        ShardedStatsTransport sharded = sharded(NAMES, nodes, true);
+        String[] uris = IntStream.range(0, 30).mapToObj(i -> "/events/" + i).toArray(String[]::new);
+        Arrays.stream(uris).forEach(uri -> sharded.hit(hit(uri, "10.0.0.1")));
+        StatsJobDto job = sharded.submitJob(StatsRequestDto.builder().start(DAY).end(DAY.plusDays(1)).uris(uris)
+                .build());
+
+        List<String> read = new ArrayList<>();
+        for (int from = 0; from < uris.length; from += 10) {
+            Arrays.stream(sharded.getJobResults(job.getId(), from, 10)).forEach(row -> read.add(row.getUri()));
+        }
+
+        assertEquals(Arrays.stream(uris).sorted().collect(Collectors.toList()),
+                read.stream().sorted().collect(Collectors.toList()));
+        assertEquals(nodes.size(), nodes.stream().mapToInt(node -> node.resultReads).sum());
+    }
+
+    private static ShardedStatsTransport sharded(List<String> names, List<MemoryTransport> nodes,
+                                                 boolean scatterReads) {
+        return new ShardedStatsTransport(names, nodes, StatsClientSettings.builder()
+                .scatterReads(scatterReads)
+                .build());
+    }
+
+    private static List<MemoryTransport> nodes(int count) {
+        return IntStream.range(0, count).mapToObj(i -> new MemoryTransport()).collect(Collectors.toList());
+    }
+
+    private static List<String> names(int count) {
+        List<String> names = new ArrayList<>(NAMES);
+        names.add("stats-d");
+        return names.subList(0, count);
+    }
+
+    /**
+     * Sends a hit of the uri and returns the index of the node that got it.
+     */
+    private static int receiver(List<MemoryTransport> nodes, ShardedStatsTransport sharded, String uri) {
+        sharded.hit(hit(uri, "10.0.0.1"));
+        for (int node = 0; node < nodes.size(); node++) {
+            if (nodes.get(node).hits.removeIf(hit -> hit.getUri().equals(uri))) {
+                return node;
+            }
+        }
+        throw new AssertionError(uri + " was not sent anywhere");
+    }
+
+    private static String movedUri(List<MemoryTransport> nodes) {
+        ShardedStatsTransport after = sharded(names(4), nodes, false);
+        return IntStream.range(0, 1000)
+                .mapToObj(i -> "/events/" + i)
+                .filter(uri -> receiver(nodes, after, uri) == 3)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static HitDto hit(String uri, String ip) {
+        return HitDto.builder().app("ewm").uri(uri).ip(ip).timestamp(DAY.plusHours(1)).build();
+    }
+
+    private static StatsRequestDto request(String uri, boolean unique) {
+        return StatsRequestDto.builder().start(DAY).end(DAY.plusDays(1)).uris(new String[]{uri}).unique(unique)
+                .build();
+    }
+
+    /**
+     * Keeps hits in a list and counts them per uri; hits without an ip are rejected. Jobs are done
+     * as soon as they are submitted.
+     */
+    private static class MemoryTransport implements StatsTransport {
+        private final List<HitDto> hits = new ArrayList<>();
+        private final List<StatsRequestDto> jobs = new ArrayList<>();
+        private int resultReads;
+
+        @Override
+        public CompletableFuture<Void> hit(HitDto hitDto) {
+            hits.add(hitDto);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public CompletableFuture<BulkHitResultDto> hits(List<HitDto> hitDtos) {
+            List<RejectedHitDto> rejected = new ArrayList<>();
+            for (int i = 0; i < hitDtos.size(); i++) {
+                if (hitDtos.get(i).getIp().isBlank()) {
+                    rejected.add(new RejectedHitDto(i, "ip must not be blank"));
+                } else {
+                    hits.add(hitDtos.get(i));
+                }
+            }
+            return CompletableFuture.completedFuture(new BulkHitResultDto(hitDtos.size() - rejected.size(), rejected));
+        }
+
+        @Override
+        public CompletableFuture<StatsDto[]> getStats(StatsRequestDto request) {
+            List<String> uris = Arrays.asList(request.getUris());
+            Map<String, List<HitDto>> byUri = hits.stream()
+                    .filter(hit -> uris.contains(hit.getUri()))
+                    .collect(Collectors.groupingBy(HitDto::getUri, TreeMap::new, Collectors.toList()));
+            return CompletableFuture.completedFuture(byUri.entrySet().stream()
+                    .map(entry -> new StatsDto("ewm", entry.getKey(), request.isUnique()
+                            ? entry.getValue().stream().map(HitDto::getIp).distinct().count()
+                            : entry.getValue().size()))
+                    .toArray(StatsDto[]::new));
+        }
+
+        @Override
+        public void streamStats(StatsRequestDto request, Consumer<StatsDto> consumer) {
+            Arrays.stream(getStats(request).join()).forEach(consumer);
+        }
+
+        @Override
+        public StatsDto[] getTop(String app, String window, int limit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public TimeSeriesDto[] getTimeSeries(LocalDateTime start, LocalDateTime end, String step, boolean unique,
+                                             String[] uris) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public StatsJobDto submitJob(StatsRequestDto request) {
+            jobs.add(request);
+            return getJob(String.valueOf(jobs.size() - 1));
+        }
+
+        @Override
+        public StatsJobDto getJob(String id) {
+            return new StatsJobDto(id, StatsJobDto.Status.DONE, DAY, DAY, 0, null);
+        }
+
+        @Override
+        public StatsDto[] getJobResults(String id, int from, int size) {
+            resultReads++;
+            StatsDto[] rows = getStats(jobs.get(Integer.parseInt(id))).join();
+            return Arrays.copyOfRange(rows, Math.min(from, rows.length), Math.min(from + size, rows.length));
+        }
+
+        @Override
+        public void cancelJob(String id) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package ru.practicum;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkHitResultDto {
+    private long accepted;
+    private List<RejectedHitDto> rejected;
+}
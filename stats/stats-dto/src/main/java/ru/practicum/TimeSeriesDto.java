@@ -0,0 +1,26 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Hits of one app and uri per time bucket. The first bucket begins at start, every following one
+ * a step later; buckets without hits are zero.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TimeSeriesDto {
+    private String app;
+    private String uri;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime start;
+
+    private String step;
+    private long[] hits;
+}
@@ -0,0 +1,54 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Binary encoding of the stats DTOs, used instead of JSON when a request or response has the
+ * application/cbor content type. Timestamps are written as epoch seconds of the local date-time
+ * read as UTC, the way stats-server stores them, instead of formatted text.
+ */
+public final class WireFormat {
+    public static final String CBOR = "application/cbor";
+
+    private WireFormat() {
+    }
+
+    public static ObjectMapper cborMapper() {
+        SimpleModule epochSeconds = new SimpleModule("EpochSeconds")
+                .addSerializer(LocalDateTime.class, new EpochSecondSerializer())
+                .addDeserializer(LocalDateTime.class, new EpochSecondDeserializer());
+        return CBORMapper.builder().addModule(epochSeconds).build();
+    }
+
+    private static class EpochSecondSerializer extends JsonSerializer<LocalDateTime> {
+        @Override
+        public void serialize(LocalDateTime value, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+            generator.writeNumber(value.toEpochSecond(ZoneOffset.UTC));
+        }
+    }
+
+    private static class EpochSecondDeserializer extends JsonDeserializer<LocalDateTime> {
+        @Override
+        public LocalDateTime deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            if (parser.currentToken() == JsonToken.VALUE_STRING) {
+                return LocalDateTime.parse(parser.getText(), DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+            }
+            return LocalDateTime.ofEpochSecond(parser.getLongValue(), 0, ZoneOffset.UTC);
+        }
+    }
+}
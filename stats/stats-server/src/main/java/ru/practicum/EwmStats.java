@@ -1,11 +0,0 @@
-package ru.practicum;
-
-import org.springframework.boot.SpringApplication;
-import org.springframework.boot.autoconfigure.SpringBootApplication;
-
-@SpringBootApplication
-public class EwmStats {
-    public static void main(String[] args) {
-        SpringApplication.run(EwmStats.class, args);
-    }
-}
\ No newline at end of file
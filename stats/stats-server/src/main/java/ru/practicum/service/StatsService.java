@@ -1,13 +0,0 @@
-package ru.practicum.service;
-
-import ru.practicum.HitDto;
-import ru.practicum.StatsDto;
-
-import java.time.LocalDateTime;
-import java.util.List;
-
-public interface StatsService {
-    void addHit(HitDto hitDto);
-
-    List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, boolean unique, String[] uris);
-}
@@ -0,0 +1,21 @@
+package ru.practicum.stats;
+
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@SpringBootApplication
+@EnableScheduling
+public class EwmStats {
+    /**
+     * Settings are read from stats-server.properties rather than application.properties, so the
+     * server can also run embedded in an application that has its own.
+     */
+    public static final String CONFIG_NAME = "spring.config.name=stats-server";
+
+    public static void main(String[] args) {
+        new SpringApplicationBuilder(EwmStats.class)
+                .properties(CONFIG_NAME)
+                .run(args);
+    }
+}
\ No newline at end of file
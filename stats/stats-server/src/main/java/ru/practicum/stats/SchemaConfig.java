@@ -0,0 +1,40 @@
+package ru.practicum.stats;
+
+import org.springframework.boot.autoconfigure.sql.init.SqlDataSourceScriptDatabaseInitializer;
+import org.springframework.boot.autoconfigure.sql.init.SqlInitializationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.sql.init.DatabaseInitializationMode;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.practicum.stats.repository.LegacyStatsMigration;
+
+import javax.sql.DataSource;
+
+/**
+ * Runs the schema scripts like Spring Boot does, migrating a stats table of the old layout around them.
+ */
+@Configuration
+@EnableConfigurationProperties(SqlInitializationProperties.class)
+public class SchemaConfig {
+    @Bean
+    SqlDataSourceScriptDatabaseInitializer dataSourceScriptDatabaseInitializer(DataSource dataSource,
+                                                                               SqlInitializationProperties properties) {
+        LegacyStatsMigration migration = new LegacyStatsMigration(dataSource);
+        return new SqlDataSourceScriptDatabaseInitializer(dataSource, properties) {
+            @Override
+            public boolean initializeDatabase() {
+                if (!migration.isPending()) {
+                    return super.initializeDatabase();
+                }
+                if (properties.getMode() != DatabaseInitializationMode.ALWAYS) {
+                    throw new IllegalStateException("Table stats has the old layout and is migrated only " +
+                            "by the schema scripts, set spring.sql.init.mode=always");
+                }
+                migration.detach();
+                boolean initialized = super.initializeDatabase();
+                migration.complete();
+                return initialized;
+            }
+        };
+    }
+}
@@ -0,0 +1,14 @@
+package ru.practicum.stats;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import ru.practicum.WireFormat;
+
+@Configuration
+public class WireFormatConfig {
+    @Bean
+    MappingJackson2CborHttpMessageConverter cborHttpMessageConverter() {
+        return new MappingJackson2CborHttpMessageConverter(WireFormat.cborMapper());
+    }
+}
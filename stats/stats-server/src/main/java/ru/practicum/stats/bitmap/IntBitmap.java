@@ -0,0 +1,189 @@
+package ru.practicum.stats.bitmap;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compressed bitmap of non-negative ints in the spirit of Roaring bitmaps: values are split
+ * by their high 16 bits into chunks, and each chunk keeps its low 16 bits either as a sorted
+ * array (while it holds at most {@value #ARRAY_LIMIT} values) or as a plain 65536-bit set.
+ */
+public class IntBitmap {
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int BITSET_WORDS = 1024;
+    private static final byte ARRAY = 0;
+    private static final byte BITSET = 1;
+    private final TreeMap<Integer, Container> containers = new TreeMap<>();
+
+    public void add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Bitmap values must not be negative");
+        }
+        int high = value >>> 16;
+        Container container = containers.computeIfAbsent(high, key -> new Container());
+        container.add((char) value);
+    }
+
+    public boolean contains(int value) {
+        Container container = containers.get(value >>> 16);
+        return container != null && container.contains((char) value);
+    }
+
+    public void or(IntBitmap other) {
+        for (Map.Entry<Integer, Container> entry : other.containers.entrySet()) {
+            Container container = containers.get(entry.getKey());
+            if (container == null) {
+                containers.put(entry.getKey(), entry.getValue().copy());
+            } else {
+                container.or(entry.getValue());
+            }
+        }
+    }
+
+    public long cardinality() {
+        long cardinality = 0;
+        for (Container container : containers.values()) {
+            cardinality += container.cardinality;
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return containers.isEmpty();
+    }
+
+    public byte[] toBytes() {
+        int size = Integer.BYTES;
+        for (Container container : containers.values()) {
+            size += Character.BYTES + 1 + Character.BYTES + container.serializedSize();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(containers.size());
+        for (Map.Entry<Integer, Container> entry : containers.entrySet()) {
+            Container container = entry.getValue();
+            buffer.putChar((char) entry.getKey().intValue());
+            buffer.putChar((char) (container.cardinality - 1));
+            if (container.bits == null) {
+                buffer.put(ARRAY);
+                for (int i = 0; i < container.cardinality; i++) {
+                    buffer.putChar(container.values[i]);
+                }
+            } else {
+                buffer.put(BITSET);
+                for (long word : container.bits) {
+                    buffer.putLong(word);
+                }
+            }
+        }
+        return buffer.array();
+    }
+
+    public static IntBitmap fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        IntBitmap bitmap = new IntBitmap();
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            int high = buffer.getChar();
+            Container container = new Container();
+            container.cardinality = buffer.getChar() + 1;
+            if (buffer.get() == ARRAY) {
+                container.values = new char[Math.max(container.cardinality, 4)];
+                for (int j = 0; j < container.cardinality; j++) {
+                    container.values[j] = buffer.getChar();
+                }
+            } else {
+                container.values = null;
+                container.bits = new long[BITSET_WORDS];
+                for (int j = 0; j < BITSET_WORDS; j++) {
+                    container.bits[j] = buffer.getLong();
+                }
+            }
+            bitmap.containers.put(high, container);
+        }
+        return bitmap;
+    }
+
+    private static final class Container {
+        private char[] values = new char[4];
+        private long[] bits;
+        private int cardinality;
+
+        private void add(char value) {
+            if (bits != null) {
+                setBit(value);
+                return;
+            }
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                return;
+            }
+            if (cardinality == ARRAY_LIMIT) {
+                toBitset();
+                setBit(value);
+                return;
+            }
+            int insertAt = -index - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(values.length * 2, ARRAY_LIMIT));
+            }
+            System.arraycopy(values, insertAt, values, insertAt + 1, cardinality - insertAt);
+            values[insertAt] = value;
+            cardinality++;
+        }
+
+        private boolean contains(char value) {
+            if (bits != null) {
+                return (bits[value >>> 6] & (1L << value)) != 0;
+            }
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        private void or(Container other) {
+            if (other.bits == null) {
+                for (int i = 0; i < other.cardinality; i++) {
+                    add(other.values[i]);
+                }
+                return;
+            }
+            if (bits == null) {
+                toBitset();
+            }
+            int total = 0;
+            for (int i = 0; i < BITSET_WORDS; i++) {
+                bits[i] |= other.bits[i];
+                total += Long.bitCount(bits[i]);
+            }
+            cardinality = total;
+        }
+
+        private Container copy() {
+            Container copy = new Container();
+            copy.values = values == null ? null : values.clone();
+            copy.bits = bits == null ? null : bits.clone();
+            copy.cardinality = cardinality;
+            return copy;
+        }
+
+        private int serializedSize() {
+            return bits == null ? cardinality * Character.BYTES : BITSET_WORDS * Long.BYTES;
+        }
+
+        private void setBit(char value) {
+            long mask = 1L << value;
+            if ((bits[value >>> 6] & mask) == 0) {
+                bits[value >>> 6] |= mask;
+                cardinality++;
+            }
+        }
+
+        private void toBitset() {
+            bits = new long[BITSET_WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                bits[values[i] >>> 6] |= 1L << values[i];
+            }
+            values = null;
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package ru.practicum.stats.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import ru.practicum.BulkHitResultDto;
+import ru.practicum.HitDto;
+import ru.practicum.StatsDto;
+import ru.practicum.StatsJobDto;
+import ru.practicum.StatsRequestDto;
+import ru.practicum.WireFormat;
+import ru.practicum.stats.controller.params.StatsParams;
+import ru.practicum.stats.controller.params.TimeSeriesParams;
+import ru.practicum.stats.exception.IngestOverflowException;
+import ru.practicum.stats.exception.NotFoundException;
+import ru.practicum.stats.exception.TooManyJobsException;
+import ru.practicum.stats.exception.ValidationException;
+import ru.practicum.stats.model.Granularity;
+import ru.practicum.stats.model.TrendWindow;
+import ru.practicum.stats.service.StatsService;
+import ru.practicum.stats.service.ingest.BulkHitSink;
+import ru.practicum.stats.service.job.StatsJobManager;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.Valid;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@Slf4j
+@RequiredArgsConstructor
+public class StatsController {
+    private static final String DATE_TIME_PATTERN = "yyyy-MM-dd HH:mm:ss";
+    private static final MediaType CBOR = MediaType.valueOf(WireFormat.CBOR);
+    private final StatsService statsService;
+    private final StatsJobManager statsJobManager;
+    private final ObjectMapper objectMapper;
+    private final MappingJackson2CborHttpMessageConverter cborConverter;
+
+    @Value("${stats.timeseries.max-buckets:10000}")
+    private int maxBuckets;
+
+    @PostMapping("/hit")
+    @ResponseStatus(HttpStatus.CREATED)
+    public void addHit(@RequestBody @Valid HitDto hitDto) {
+        log.debug("POST /hit, body: {}", hitDto);
+        statsService.addHit(hitDto);
+    }
+
+    @PostMapping(value = "/hits",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE, WireFormat.CBOR})
+    @ResponseStatus(HttpStatus.CREATED)
+    public BulkHitResultDto addHits(HttpServletRequest request) throws IOException {
+        log.debug("POST /hits, content type: {}", request.getContentType());
+        ObjectMapper mapper = CBOR.includes(MediaType.parseMediaType(request.getContentType()))
+                ? cborConverter.getObjectMapper()
+                : objectMapper;
+        BulkHitSink sink = statsService.openBulk();
+        try (MappingIterator<HitDto> hits = mapper.readerFor(HitDto.class).readValues(request.getInputStream())) {
+            readHits(hits, sink);
+        } catch (JsonProcessingException e) {
+            sink.reject("Malformed request body: " + e.getOriginalMessage());
+        }
+        BulkHitResultDto result = sink.finish();
+        log.debug("POST /hits, accepted: {}, rejected: {}", result.getAccepted(), result.getRejected().size());
+        return result;
+    }
+
+    @GetMapping("/stats")
+    public void getStats(@RequestParam String start,
+                         @RequestParam String end,
+                         @RequestParam(required = false) String[] uris,
+                         @RequestParam(defaultValue = "false") boolean unique,
+                         @RequestParam(defaultValue = "false") boolean approximate,
+                         @RequestParam(defaultValue = "false") boolean aggregate,
+                         @RequestParam(required = false) Integer limit,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        log.debug("GET /stats, params: start={} end={} uris={} unique={} approximate={} aggregate={} limit={}",
+                start, end, uris, unique, approximate, aggregate, limit);
+        writeStats(StatsParams.builder()
+                .start(parseDateTimeParam(start))
+                .end(parseDateTimeParam(end))
+                .uris(uris)
+                .unique(unique)
+                .approximate(approximate)
+                .aggregate(aggregate)
+                .limit(limit)
+                .build(), request, response);
+    }
+
+    /**
+     * Same as GET /stats, for uri lists too long for a query string.
+     */
+    @PostMapping("/stats/query")
+    public void queryStats(@RequestBody @Valid StatsRequestDto body,
+                           HttpServletRequest request,
+                           HttpServletResponse response) throws IOException {
+        log.debug("POST /stats/query, start={} end={} uris={} unique={}", body.getStart(), body.getEnd(),
+                body.getUris() == null ? 0 : body.getUris().length, body.isUnique());
+        writeStats(toParams(body), request, response);
+    }
+
+    @PostMapping("/stats/jobs")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public StatsJobDto submitJob(@RequestBody @Valid StatsRequestDto request) {
+        log.debug("POST /stats/jobs, body: {}", request);
+        return statsJobManager.submit(toParams(request));
+    }
+
+    @GetMapping("/stats/jobs/{id}")
+    public StatsJobDto getJob(@PathVariable String id) {
+        log.debug("GET /stats/jobs/{}", id);
+        return statsJobManager.get(id);
+    }
+
+    @GetMapping("/stats/jobs/{id}/results")
+    public List<StatsDto> getJobResults(@PathVariable String id,
+                                        @RequestParam(defaultValue = "0") int from,
+                                        @RequestParam(defaultValue = "1000") int size) {
+        log.debug("GET /stats/jobs/{}/results, params: from={} size={}", id, from, size);
+        if (from < 0 || size <= 0) {
+            throw new ValidationException("From must not be negative and size must be positive");
+        }
+        return statsJobManager.getResults(id, from, size);
+    }
+
+    @DeleteMapping("/stats/jobs/{id}")
+    public StatsJobDto cancelJob(@PathVariable String id) {
+        log.debug("DELETE /stats/jobs/{}", id);
+        return statsJobManager.cancel(id);
+    }
+
+    @GetMapping("/stats/timeseries")
+    public void getTimeSeries(@RequestParam String start,
+                              @RequestParam String end,
+                              @RequestParam(required = false) String[] uris,
+                              @RequestParam(defaultValue = "false") boolean unique,
+                              @RequestParam(defaultValue = "hour") String step,
+                              HttpServletRequest request,
+                              HttpServletResponse response) throws IOException {
+        log.debug("GET /stats/timeseries, params: start={} end={} uris={} unique={} step={}",
+                start, end, uris, unique, step);
+        LocalDateTime startParsed = parseDateTimeParam(start);
+        LocalDateTime endParsed = parseDateTimeParam(end);
+        if (startParsed.isAfter(endParsed)) {
+            throw new ValidationException("Start must be before end");
+        }
+        Granularity granularity = Granularity.fromLabel(step)
+                .orElseThrow(() -> new ValidationException("Unknown step: " + step));
+        TimeSeriesParams params = TimeSeriesParams.builder()
+                .start(startParsed)
+                .end(endParsed)
+                .uris(uris)
+                .unique(unique)
+                .step(granularity)
+                .build();
+        if (params.getBucketCount() > maxBuckets) {
+            throw new ValidationException("Range holds more than " + maxBuckets + " buckets of the step");
+        }
+        statsService.checkTimeSeries(params);
+
+        try (JsonGenerator generator = createGenerator(request, response)) {
+            generator.writeStartArray();
+            statsService.getTimeSeries(params, series -> writeStats(generator, series));
+            generator.writeEndArray();
+        }
+    }
+
+    @GetMapping("/stats/top")
+    public List<StatsDto> getTop(@RequestParam(required = false) String app,
+                                 @RequestParam(defaultValue = "1h") String window,
+                                 @RequestParam(defaultValue = "10") int limit) {
+        log.debug("GET /stats/top, params: app={} window={} limit={}", app, window, limit);
+        TrendWindow trendWindow = TrendWindow.fromLabel(window)
+                .orElseThrow(() -> new ValidationException("Unknown window: " + window));
+        if (limit <= 0) {
+            throw new ValidationException("Limit must be positive");
+        }
+        return statsService.getTop(app, trendWindow, limit);
+    }
+
+    @GetMapping("/stats/suppressed")
+    public List<StatsDto> getSuppressed(@RequestParam String start,
+                                        @RequestParam String end,
+                                        @RequestParam(required = false) String[] uris) {
+        log.debug("GET /stats/suppressed, params: start={} end={} uris={}", start, end, uris);
+        LocalDateTime startParsed = parseDateTimeParam(start);
+        LocalDateTime endParsed = parseDateTimeParam(end);
+        if (startParsed.isAfter(endParsed)) {
+            throw new ValidationException("Start must be before end");
+        }
+        return statsService.getSuppressed(startParsed, endParsed, uris);
+    }
+
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler
+    public Map<String, String> handleBadRequest(final ValidationException e) {
+        return Map.of(
+                "status", "BAD_REQUEST",
+                "reason", "Incorrectly made request.",
+                "message", e.getMessage(),
+                "timestamp", LocalDateTime.now().toString()
+        );
+    }
+
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    @ExceptionHandler
+    public Map<String, String> handleNotFound(final NotFoundException e) {
+        return Map.of(
+                "status", "NOT_FOUND",
+                "reason", "The required object was not found.",
+                "message", e.getMessage(),
+                "timestamp", LocalDateTime.now().toString()
+        );
+    }
+
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    @ExceptionHandler
+    public Map<String, String> handleTooManyJobs(final TooManyJobsException e) {
+        return Map.of(
+                "status", "TOO_MANY_REQUESTS",
+                "reason", "Stats server is overloaded.",
+                "message", e.getMessage(),
+                "timestamp", LocalDateTime.now().toString()
+        );
+    }
+
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    @ExceptionHandler
+    public Map<String, String> handleOverflow(final IngestOverflowException e) {
+        return Map.of(
+                "status", "TOO_MANY_REQUESTS",
+                "reason", "Stats server is overloaded.",
+                "message", e.getMessage(),
+                "timestamp", LocalDateTime.now().toString()
+        );
+    }
+
+    private void readHits(MappingIterator<HitDto> hits, BulkHitSink sink) throws IOException {
+        while (hits.hasNextValue()) {
+            try {
+                sink.accept(hits.nextValue());
+            } catch (JsonMappingException e) {
+                sink.reject(e.getOriginalMessage());
+            }
+        }
+    }
+
+    private StatsParams toParams(StatsRequestDto request) {
+        return StatsParams.builder()
+                .start(request.getStart())
+                .end(request.getEnd())
+                .uris(request.getUris())
+                .unique(request.isUnique())
+                .approximate(request.isApproximate())
+                .aggregate(request.isAggregate())
+                .limit(request.getLimit())
+                .build();
+    }
+
+    private void writeStats(StatsParams params, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        statsService.checkStats(params);
+        try (JsonGenerator generator = createGenerator(request, response)) {
+            generator.writeStartArray();
+            statsService.getStats(params, stats -> writeStats(generator, stats));
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Writes CBOR when the client prefers it to JSON, JSON otherwise.
+     */
+    private JsonGenerator createGenerator(HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        ObjectMapper mapper = objectMapper;
+        MediaType contentType = MediaType.APPLICATION_JSON;
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept != null) {
+            List<MediaType> accepted = MediaType.parseMediaTypes(accept);
+            MediaType.sortBySpecificityAndQuality(accepted);
+            for (MediaType mediaType : accepted) {
+                if (mediaType.equalsTypeAndSubtype(CBOR)) {
+                    mapper = cborConverter.getObjectMapper();
+                    contentType = CBOR;
+                    break;
+                }
+                if (mediaType.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                    break;
+                }
+            }
+        }
+        response.setContentType(contentType.toString());
+        return mapper.getFactory().createGenerator(response.getOutputStream());
+    }
+
+    private void writeStats(JsonGenerator generator, Object stats) {
+        try {
+            generator.writeObject(stats);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private LocalDateTime parseDateTimeParam(String param) {
+        return LocalDateTime.parse(
+                URLDecoder.decode(param, StandardCharsets.UTF_8),
+                DateTimeFormatter.ofPattern(DATE_TIME_PATTERN));
+    }
+}
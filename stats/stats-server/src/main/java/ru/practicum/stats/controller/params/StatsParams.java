@@ -0,0 +1,26 @@
+package ru.practicum.stats.controller.params;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder(toBuilder = true)
+public class StatsParams {
+    private LocalDateTime start;
+    private LocalDateTime end;
+    private String[] uris;
+    private boolean unique;
+    private boolean approximate;
+    private boolean aggregate;
+    private Integer limit;
+    /**
+     * Leaves hits at end itself out; set on parts of a range split for parallel reading.
+     */
+    private boolean endExclusive;
+    /**
+     * Reads on the calling thread only; set for background jobs.
+     */
+    private boolean serial;
+}
@@ -0,0 +1,38 @@
+package ru.practicum.stats.controller.params;
+
+import lombok.Builder;
+import lombok.Data;
+import ru.practicum.stats.model.Granularity;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder(toBuilder = true)
+public class TimeSeriesParams {
+    private LocalDateTime start;
+    private LocalDateTime end;
+    private String[] uris;
+    private boolean unique;
+    private Granularity step;
+    /**
+     * Leaves hits at end itself out; set when a closed end inside compacted days is moved to the next second.
+     */
+    private boolean endExclusive;
+
+    public LocalDateTime getFirstBucket() {
+        return step.floor(start);
+    }
+
+    public int getBucketCount() {
+        return (int) Math.min(Integer.MAX_VALUE, step.getUnit().between(getFirstBucket(),
+                step.floor(endExclusive ? end.minusNanos(1) : end)) + 1);
+    }
+
+    public int bucketIndex(LocalDateTime time) {
+        return (int) step.getUnit().between(getFirstBucket(), step.floor(time));
+    }
+
+    public long getStepSeconds() {
+        return step.getUnit().getDuration().getSeconds();
+    }
+}
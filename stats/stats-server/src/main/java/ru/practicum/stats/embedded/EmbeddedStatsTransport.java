@@ -0,0 +1,293 @@
+package ru.practicum.stats.embedded;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.Banner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.logging.LoggingApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestClientException;
+import ru.practicum.BulkHitResultDto;
+import ru.practicum.HitDto;
+import ru.practicum.StatsDto;
+import ru.practicum.StatsJobDto;
+import ru.practicum.StatsRequestDto;
+import ru.practicum.StatsTransport;
+import ru.practicum.TimeSeriesDto;
+import ru.practicum.stats.EwmStats;
+import ru.practicum.stats.controller.params.StatsParams;
+import ru.practicum.stats.controller.params.TimeSeriesParams;
+import ru.practicum.stats.exception.IngestOverflowException;
+import ru.practicum.stats.exception.NotFoundException;
+import ru.practicum.stats.exception.TooManyJobsException;
+import ru.practicum.stats.exception.ValidationException;
+import ru.practicum.stats.model.Granularity;
+import ru.practicum.stats.model.TrendWindow;
+import ru.practicum.stats.service.StatsService;
+import ru.practicum.stats.service.ingest.BulkHitSink;
+import ru.practicum.stats.service.job.StatsJobManager;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the stats server inside the calling application and serves {@link ru.practicum.StatsClient}
+ * calls with direct method calls, without HTTP or serialization. The server gets an application
+ * context of its own, with no web server, so its beans and datasource stay apart from the host's.
+ * Calls run on the caller's thread; errors are thrown as the status exceptions the HTTP server
+ * would have answered with.
+ */
+@Slf4j
+public class EmbeddedStatsTransport implements StatsTransport {
+    private final ConfigurableApplicationContext context;
+    private final StatsService statsService;
+    private final StatsJobManager statsJobManager;
+    private final Validator validator;
+    private final int maxBuckets;
+
+    private EmbeddedStatsTransport(ConfigurableApplicationContext context) {
+        this.context = context;
+        this.statsService = context.getBean(StatsService.class);
+        this.statsJobManager = context.getBean(StatsJobManager.class);
+        this.validator = context.getBean(Validator.class);
+        this.maxBuckets = context.getEnvironment().getProperty("stats.timeseries.max-buckets", Integer.class, 10000);
+    }
+
+    /**
+     * Starts the server. The given properties take precedence over environment variables and
+     * system properties, so the host's SPRING_DATASOURCE_URL and the like do not leak into it.
+     */
+    public static EmbeddedStatsTransport start(Map<String, Object> properties) {
+        SpringApplication application = new SpringApplicationBuilder(EwmStats.class)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .logStartupInfo(false)
+                .registerShutdownHook(false)
+                .properties(EwmStats.CONFIG_NAME)
+                .initializers(context -> context.getEnvironment().getPropertySources()
+                        .addFirst(new MapPropertySource("embeddedStats", properties)))
+                .application();
+        // logging is already set up by the host, and reinitializing it would drop the host's levels
+        application.setListeners(application.getListeners().stream()
+                .filter(listener -> !(listener instanceof LoggingApplicationListener))
+                .collect(Collectors.toList()));
+        log.info("Starting embedded stats server");
+        return new EmbeddedStatsTransport(application.run());
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+
+    @Override
+    public CompletableFuture<Void> hit(HitDto hitDto) {
+        return call(() -> {
+            Set<ConstraintViolation<HitDto>> violations = validator.validate(hitDto);
+            if (!violations.isEmpty()) {
+                throw new ValidationException(violations.stream()
+                        .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                        .collect(Collectors.joining(", ")));
+            }
+            statsService.addHit(hitDto);
+            return null;
+        });
+    }
+
+    /**
+     * Invalid hits are not thrown as a whole: the sink validates each one and lists it as rejected
+     * in the result, like POST /hits does.
+     */
+    @Override
+    public CompletableFuture<BulkHitResultDto> hits(List<HitDto> hitDtos) {
+        return call(() -> {
+            BulkHitSink sink = statsService.openBulk();
+            hitDtos.forEach(sink::accept);
+            return sink.finish();
+        });
+    }
+
+    @Override
+    public CompletableFuture<StatsDto[]> getStats(StatsRequestDto request) {
+        return call(() -> {
+            StatsParams params = toParams(request);
+            statsService.checkStats(params);
+            List<StatsDto> stats = new ArrayList<>();
+            statsService.getStats(params, stats::add);
+            return stats.toArray(StatsDto[]::new);
+        });
+    }
+
+    /**
+     * Errors of the consumer are the caller's own and reach it unchanged, not as a server error.
+     */
+    @Override
+    public void streamStats(StatsRequestDto request, Consumer<StatsDto> consumer) {
+        run(() -> {
+            StatsParams params = toParams(request);
+            statsService.checkStats(params);
+            statsService.getStats(params, stats -> {
+                try {
+                    consumer.accept(stats);
+                } catch (RuntimeException e) {
+                    throw new ConsumerException(e);
+                }
+            });
+            return null;
+        });
+    }
+
+    @Override
+    public StatsDto[] getTop(String app, String window, int limit) {
+        return run(() -> {
+            TrendWindow trendWindow = TrendWindow.fromLabel(window)
+                    .orElseThrow(() -> new ValidationException("Unknown window: " + window));
+            if (limit <= 0) {
+                throw new ValidationException("Limit must be positive");
+            }
+            return statsService.getTop(app, trendWindow, limit).toArray(StatsDto[]::new);
+        });
+    }
+
+    @Override
+    public TimeSeriesDto[] getTimeSeries(LocalDateTime start, LocalDateTime end, String step, boolean unique,
+                                         String[] uris) {
+        return run(() -> {
+            checkRange(start, end);
+            TimeSeriesParams params = TimeSeriesParams.builder()
+                    .start(start)
+                    .end(end)
+                    .uris(uris)
+                    .unique(unique)
+                    .step(Granularity.fromLabel(step)
+                            .orElseThrow(() -> new ValidationException("Unknown step: " + step)))
+                    .build();
+            if (params.getBucketCount() > maxBuckets) {
+                throw new ValidationException("Range holds more than " + maxBuckets + " buckets of the step");
+            }
+            statsService.checkTimeSeries(params);
+            List<TimeSeriesDto> series = new ArrayList<>();
+            statsService.getTimeSeries(params, series::add);
+            return series.toArray(TimeSeriesDto[]::new);
+        });
+    }
+
+    @Override
+    public StatsJobDto submitJob(StatsRequestDto request) {
+        return run(() -> statsJobManager.submit(toParams(request)));
+    }
+
+    @Override
+    public StatsJobDto getJob(String id) {
+        return run(() -> statsJobManager.get(id));
+    }
+
+    @Override
+    public StatsDto[] getJobResults(String id, int from, int size) {
+        return run(() -> {
+            if (from < 0 || size <= 0) {
+                throw new ValidationException("From must not be negative and size must be positive");
+            }
+            return statsJobManager.getResults(id, from, size).toArray(StatsDto[]::new);
+        });
+    }
+
+    @Override
+    public void cancelJob(String id) {
+        run(() -> statsJobManager.cancel(id));
+    }
+
+    private StatsParams toParams(StatsRequestDto request) {
+        return StatsParams.builder()
+                .start(request.getStart())
+                .end(request.getEnd())
+                .uris(request.getUris())
+                .unique(request.isUnique())
+                .approximate(request.isApproximate())
+                .aggregate(request.isAggregate())
+                .limit(request.getLimit())
+                .build();
+    }
+
+    private void checkRange(LocalDateTime start, LocalDateTime end) {
+        if (start == null || end == null) {
+            throw new ValidationException("Start and end must be set");
+        }
+        if (start.isAfter(end)) {
+            throw new ValidationException("Start must be before end");
+        }
+    }
+
+    private static <T> CompletableFuture<T> call(Supplier<T> action) {
+        try {
+            return CompletableFuture.completedFuture(run(action));
+        } catch (RestClientException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static <T> T run(Supplier<T> action) {
+        try {
+            return action.get();
+        } catch (ConsumerException e) {
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            throw toClientException(e);
+        }
+    }
+
+    /**
+     * Maps an error to the status the server's exception handlers answer it with.
+     */
+    private static RestClientException toClientException(RuntimeException e) {
+        HttpStatus status;
+        if (e instanceof ValidationException) {
+            status = HttpStatus.BAD_REQUEST;
+        } else if (e instanceof NotFoundException) {
+            status = HttpStatus.NOT_FOUND;
+        } else if (e instanceof TooManyJobsException || e instanceof IngestOverflowException) {
+            status = HttpStatus.TOO_MANY_REQUESTS;
+        } else {
+            log.error("Embedded stats call failed", e);
+            status = HttpStatus.INTERNAL_SERVER_ERROR;
+        }
+        byte[] body = String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8);
+        RestClientException exception = status.is4xxClientError()
+                ? HttpClientErrorException.create(status, status.getReasonPhrase(), HttpHeaders.EMPTY, body,
+                StandardCharsets.UTF_8)
+                : HttpServerErrorException.create(status, status.getReasonPhrase(), HttpHeaders.EMPTY, body,
+                StandardCharsets.UTF_8);
+        exception.initCause(e);
+        return exception;
+    }
+
+    /**
+     * Carries an error of a caller's consumer through the server code, past the status mapping.
+     */
+    private static final class ConsumerException extends RuntimeException {
+        private ConsumerException(RuntimeException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized RuntimeException getCause() {
+            return (RuntimeException) super.getCause();
+        }
+    }
+}
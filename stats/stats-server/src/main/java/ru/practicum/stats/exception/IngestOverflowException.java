@@ -0,0 +1,10 @@
+package ru.practicum.stats.exception;
+
+public class IngestOverflowException extends RuntimeException {
+    public IngestOverflowException() {
+    }
+
+    public IngestOverflowException(String message) {
+        super(message);
+    }
+}
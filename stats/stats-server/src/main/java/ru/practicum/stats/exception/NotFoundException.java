@@ -0,0 +1,10 @@
+package ru.practicum.stats.exception;
+
+public class NotFoundException extends RuntimeException {
+    public NotFoundException() {
+    }
+
+    public NotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,10 @@
+package ru.practicum.stats.exception;
+
+public class TooManyJobsException extends RuntimeException {
+    public TooManyJobsException() {
+    }
+
+    public TooManyJobsException(String message) {
+        super(message);
+    }
+}
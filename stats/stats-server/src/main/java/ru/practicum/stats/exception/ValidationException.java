@@ -1,4 +1,4 @@
-package ru.practicum.exception;
+package ru.practicum.stats.exception;
 
 public class ValidationException extends RuntimeException {
     public ValidationException() {
@@ -0,0 +1,123 @@
+package ru.practicum.stats.index;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Radix tree from uris to their dictionary ids. Chains of single-child nodes are collapsed into
+ * one edge, so memory grows with the number of uris rather than with their total length, and a
+ * prefix lookup walks at most one node per edge before collecting the subtree under it.
+ */
+public class UriTrie {
+    private final Node root = new Node("");
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int size;
+
+    public void add(String uri, int id) {
+        lock.writeLock().lock();
+        try {
+            Node node = root;
+            int position = 0;
+            while (position < uri.length()) {
+                Node child = node.children.get(uri.charAt(position));
+                if (child == null) {
+                    child = new Node(uri.substring(position));
+                    node.children.put(uri.charAt(position), child);
+                    node = child;
+                    break;
+                }
+                int common = commonPrefix(child.label, uri, position);
+                if (common < child.label.length()) {
+                    Node split = new Node(child.label.substring(0, common));
+                    child.label = child.label.substring(common);
+                    split.children.put(child.label.charAt(0), child);
+                    node.children.put(split.label.charAt(0), split);
+                    child = split;
+                }
+                node = child;
+                position += common;
+            }
+            if (node.id < 0) {
+                size++;
+            }
+            node.id = id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Integer> findByPrefix(String prefix) {
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            int position = 0;
+            while (position < prefix.length()) {
+                Node child = node.children.get(prefix.charAt(position));
+                if (child == null) {
+                    return List.of();
+                }
+                int common = commonPrefix(child.label, prefix, position);
+                if (position + common == prefix.length()) {
+                    node = child;
+                    break;
+                }
+                if (common < child.label.length()) {
+                    return List.of();
+                }
+                node = child;
+                position += common;
+            }
+            return collect(node);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static List<Integer> collect(Node from) {
+        List<Integer> ids = new ArrayList<>();
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(from);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            if (node.id >= 0) {
+                ids.add(node.id);
+            }
+            node.children.values().forEach(stack::push);
+        }
+        return ids;
+    }
+
+    private static int commonPrefix(String label, String key, int offset) {
+        int length = Math.min(label.length(), key.length() - offset);
+        int i = 0;
+        while (i < length && label.charAt(i) == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static class Node {
+        private String label;
+        private int id = -1;
+        private final Map<Character, Node> children = new HashMap<>(2);
+
+        Node(String label) {
+            this.label = label;
+        }
+    }
+}
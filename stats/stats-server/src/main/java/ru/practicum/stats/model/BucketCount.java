@@ -0,0 +1,15 @@
+package ru.practicum.stats.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class BucketCount {
+    private LocalDateTime bucket;
+    private int appId;
+    private int uriId;
+    private long hits;
+}
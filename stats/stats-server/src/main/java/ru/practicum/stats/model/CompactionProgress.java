@@ -0,0 +1,19 @@
+package ru.practicum.stats.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * State of raw hit compaction: raw hits before compactedBefore are deleted, or about to be if a run
+ * was cut short, and currentDay, if set, is the day being compacted when the last chunk was deleted.
+ */
+@Data
+@AllArgsConstructor
+public class CompactionProgress {
+    private LocalDateTime compactedBefore;
+    private LocalDateTime currentDay;
+    private long rowsDeleted;
+    private LocalDateTime updatedAt;
+}
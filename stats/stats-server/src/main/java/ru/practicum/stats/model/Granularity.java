@@ -0,0 +1,44 @@
+package ru.practicum.stats.model;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Optional;
+
+public enum Granularity {
+    MINUTE(ChronoUnit.MINUTES, "stats_rollup_minute"),
+    HOUR(ChronoUnit.HOURS, "stats_rollup_hour"),
+    DAY(ChronoUnit.DAYS, "stats_rollup_day");
+
+    private final ChronoUnit unit;
+    private final String rollupTable;
+
+    Granularity(ChronoUnit unit, String rollupTable) {
+        this.unit = unit;
+        this.rollupTable = rollupTable;
+    }
+
+    public static Optional<Granularity> fromLabel(String label) {
+        return Arrays.stream(values())
+                .filter(value -> value.name().equals(label.toUpperCase(Locale.ROOT)))
+                .findFirst();
+    }
+
+    public ChronoUnit getUnit() {
+        return unit;
+    }
+
+    public String getRollupTable() {
+        return rollupTable;
+    }
+
+    public LocalDateTime floor(LocalDateTime dateTime) {
+        return dateTime.truncatedTo(unit);
+    }
+
+    public LocalDateTime ceil(LocalDateTime dateTime) {
+        LocalDateTime floor = floor(dateTime);
+        return floor.equals(dateTime) ? floor : floor.plus(1, unit);
+    }
+}
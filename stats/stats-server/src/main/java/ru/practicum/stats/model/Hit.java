@@ -1,4 +1,4 @@
-package ru.practicum.model;
+package ru.practicum.stats.model;
 
 import lombok.Builder;
 import lombok.Data;
@@ -9,6 +9,7 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.Table;
+import javax.persistence.Transient;
 import java.time.LocalDateTime;
 
 @Data
@@ -20,15 +21,24 @@ public class Hit {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private long id;
 
-    @Column(nullable = false)
-    private String app;
+    @Column(name = "app_id", nullable = false)
+    private int appId;
 
-    @Column(nullable = false)
-    private String uri;
+    @Column(name = "uri_id", nullable = false)
+    private int uriId;
 
-    @Column(nullable = false)
-    private String ip;
+    @Column(name = "ip_id", nullable = false)
+    private int ipId;
 
     @Column(name = "hit_time", nullable = false)
     private LocalDateTime timestamp;
+
+    @Transient
+    private String app;
+
+    @Transient
+    private String uri;
+
+    @Transient
+    private String ip;
 }
@@ -0,0 +1,12 @@
+package ru.practicum.stats.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class HitCount {
+    private int appId;
+    private int uriId;
+    private long hits;
+}
@@ -1,16 +1,21 @@
-package ru.practicum.model;
+package ru.practicum.stats.model;
 
 import org.springframework.stereotype.Component;
 import ru.practicum.HitDto;
 
+import java.time.temporal.ChronoUnit;
+
 @Component
 public class HitMapper {
+    /**
+     * Hit times are kept to whole seconds, as the wire formats carry them, also for hits taken in process.
+     */
     public Hit toHit(HitDto hitDto) {
         return Hit.builder()
                 .app(hitDto.getApp())
                 .uri(hitDto.getUri())
                 .ip(hitDto.getIp())
-                .timestamp(hitDto.getTimestamp())
+                .timestamp(hitDto.getTimestamp().truncatedTo(ChronoUnit.SECONDS))
                 .build();
     }
 }
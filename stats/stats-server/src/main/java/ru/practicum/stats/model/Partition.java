@@ -0,0 +1,21 @@
+package ru.practicum.stats.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Range partition of the raw hits table holding hits in [from, to).
+ */
+@Data
+@AllArgsConstructor
+public class Partition {
+    private String name;
+    private LocalDateTime from;
+    private LocalDateTime to;
+
+    public boolean overlaps(LocalDateTime otherFrom, LocalDateTime otherTo) {
+        return from.isBefore(otherTo) && otherFrom.isBefore(to);
+    }
+}
@@ -0,0 +1,24 @@
+package ru.practicum.stats.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Part of a requested time range. A segment with a granularity is covered by whole rollup
+ * buckets in [from, to); a segment without one has to be read from raw hits, and includes
+ * its upper bound when it is closed.
+ */
+@Data
+@AllArgsConstructor
+public class RangeSegment {
+    private Granularity granularity;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private boolean closed;
+
+    public boolean isRaw() {
+        return granularity == null;
+    }
+}
@@ -0,0 +1,14 @@
+package ru.practicum.stats.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class RollupKey {
+    private LocalDateTime bucket;
+    private int appId;
+    private int uriId;
+}
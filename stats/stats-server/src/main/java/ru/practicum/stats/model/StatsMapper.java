@@ -0,0 +1,28 @@
+package ru.practicum.stats.model;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.practicum.StatsDto;
+import ru.practicum.stats.service.dictionary.Dictionaries;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Component
+@RequiredArgsConstructor
+public class StatsMapper {
+    private final Dictionaries dictionaries;
+
+    public List<StatsDto> toStatsDto(List<HitCount> counts) {
+        Map<Integer, String> apps = dictionaries.apps().namesOf(counts.stream()
+                .map(HitCount::getAppId)
+                .collect(Collectors.toSet()));
+        Map<Integer, String> uris = dictionaries.uris().namesOf(counts.stream()
+                .map(HitCount::getUriId)
+                .collect(Collectors.toSet()));
+        return counts.stream()
+                .map(count -> new StatsDto(apps.get(count.getAppId()), uris.get(count.getUriId()), count.getHits()))
+                .collect(Collectors.toList());
+    }
+}
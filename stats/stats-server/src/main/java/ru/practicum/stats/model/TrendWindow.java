@@ -0,0 +1,26 @@
+package ru.practicum.stats.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+
+@Getter
+@RequiredArgsConstructor
+public enum TrendWindow {
+    FIVE_MINUTES("5m", Duration.ofMinutes(5), 10),
+    HOUR("1h", Duration.ofHours(1), 12),
+    DAY("24h", Duration.ofHours(24), 24);
+
+    private final String label;
+    private final Duration length;
+    private final int slices;
+
+    public static Optional<TrendWindow> fromLabel(String label) {
+        return Arrays.stream(values())
+                .filter(window -> window.label.equals(label))
+                .findFirst();
+    }
+}
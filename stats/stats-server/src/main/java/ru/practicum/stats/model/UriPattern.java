@@ -0,0 +1,23 @@
+package ru.practicum.stats.model;
+
+/**
+ * Uri filter of /stats: either an exact uri or a prefix followed by a trailing '*'.
+ */
+public final class UriPattern {
+    public static final String ANY = "*";
+
+    private UriPattern() {
+    }
+
+    public static boolean isPrefix(String pattern) {
+        return pattern.endsWith(ANY);
+    }
+
+    public static String prefix(String pattern) {
+        return pattern.substring(0, pattern.length() - 1);
+    }
+
+    public static boolean matches(String pattern, String uri) {
+        return isPrefix(pattern) ? uri.startsWith(prefix(pattern)) : pattern.equals(uri);
+    }
+}
@@ -0,0 +1,91 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.bitmap.IntBitmap;
+import ru.practicum.stats.model.RangeSegment;
+import ru.practicum.stats.model.RollupKey;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+@Repository
+@RequiredArgsConstructor
+public class BitmapRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public Map<Integer, IntBitmap> findForUpdate(LocalDateTime bucket, int appId, Collection<Integer> uriIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("bucket", Timestamp.valueOf(bucket))
+                .addValue("appId", appId)
+                .addValue("uriIds", uriIds);
+        Map<Integer, IntBitmap> bitmaps = new HashMap<>();
+        jdbcTemplate.query("select uri_id, bitmap from stats_bitmap_day " +
+                        "where bucket = :bucket and app_id = :appId and uri_id in (:uriIds) for update", params,
+                rs -> {
+                    bitmaps.put(rs.getInt("uri_id"), IntBitmap.fromBytes(rs.getBytes("bitmap")));
+                });
+        return bitmaps;
+    }
+
+    public void update(Map<RollupKey, IntBitmap> bitmaps) {
+        List<Map.Entry<RollupKey, IntBitmap>> entries = new ArrayList<>(bitmaps.entrySet());
+        jdbcTemplate.getJdbcTemplate().batchUpdate(
+                "update stats_bitmap_day set bitmap = ? where bucket = ? and app_id = ? and uri_id = ?",
+                entries, entries.size(), (ps, entry) -> {
+                    ps.setBytes(1, entry.getValue().toBytes());
+                    ps.setTimestamp(2, Timestamp.valueOf(entry.getKey().getBucket()));
+                    ps.setInt(3, entry.getKey().getAppId());
+                    ps.setInt(4, entry.getKey().getUriId());
+                });
+    }
+
+    public void insert(Map<RollupKey, IntBitmap> bitmaps) {
+        List<Map.Entry<RollupKey, IntBitmap>> entries = new ArrayList<>(bitmaps.entrySet());
+        jdbcTemplate.getJdbcTemplate().batchUpdate(
+                "insert into stats_bitmap_day (bucket, app_id, uri_id, bitmap) values (?, ?, ?, ?)",
+                entries, entries.size(), (ps, entry) -> {
+                    ps.setTimestamp(1, Timestamp.valueOf(entry.getKey().getBucket()));
+                    ps.setInt(2, entry.getKey().getAppId());
+                    ps.setInt(3, entry.getKey().getUriId());
+                    ps.setBytes(4, entry.getValue().toBytes());
+                });
+    }
+
+    public boolean isEmpty() {
+        return jdbcTemplate.getJdbcTemplate()
+                .queryForList("select bucket from stats_bitmap_day limit 1")
+                .isEmpty();
+    }
+
+    public int deleteBefore(LocalDateTime before) {
+        return jdbcTemplate.getJdbcTemplate()
+                .update("delete from stats_bitmap_day where bucket < ?", Timestamp.valueOf(before));
+    }
+
+    public void forEachBitmap(RangeSegment segment, Collection<Integer> uriIds, BiConsumer<RollupKey, IntBitmap> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(segment.getFrom()))
+                .addValue("to", Timestamp.valueOf(segment.getTo()));
+        String uriFilter = "";
+        if (uriIds != null) {
+            params.addValue("uriIds", uriIds);
+            uriFilter = " and uri_id in (:uriIds)";
+        }
+        jdbcTemplate.query("select bucket, app_id, uri_id, bitmap from stats_bitmap_day " +
+                        "where bucket >= :from and bucket < :to" + uriFilter, params,
+                rs -> {
+                    RollupKey key = new RollupKey(rs.getTimestamp("bucket").toLocalDateTime(),
+                            rs.getInt("app_id"), rs.getInt("uri_id"));
+                    consumer.accept(key, IntBitmap.fromBytes(rs.getBytes("bitmap")));
+                });
+    }
+}
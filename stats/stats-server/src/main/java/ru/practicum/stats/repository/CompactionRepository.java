@@ -0,0 +1,79 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.model.CompactionProgress;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Deletes raw hits in chunks and keeps the progress of compaction in a single row.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CompactionRepository {
+    private static final int PROGRESS_ID = 1;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public CompactionProgress findProgress() {
+        MapSqlParameterSource params = new MapSqlParameterSource("id", PROGRESS_ID);
+        List<CompactionProgress> rows = jdbcTemplate.query(
+                "select compacted_before, current_day, rows_deleted, updated_at from stats_compaction where id = :id",
+                params, (rs, rowNum) -> new CompactionProgress(
+                        toLocalDateTime(rs.getTimestamp("compacted_before")),
+                        toLocalDateTime(rs.getTimestamp("current_day")),
+                        rs.getLong("rows_deleted"),
+                        toLocalDateTime(rs.getTimestamp("updated_at"))));
+        if (!rows.isEmpty()) {
+            return rows.get(0);
+        }
+        jdbcTemplate.update("insert into stats_compaction (id, rows_deleted) values (:id, 0)", params);
+        return new CompactionProgress(null, null, 0, null);
+    }
+
+    public Optional<LocalDateTime> findOldestHitBefore(LocalDateTime cutoff) {
+        Timestamp oldest = jdbcTemplate.queryForObject("select min(hit_time) from stats where hit_time < :cutoff",
+                new MapSqlParameterSource("cutoff", Timestamp.valueOf(cutoff)), Timestamp.class);
+        return Optional.ofNullable(toLocalDateTime(oldest));
+    }
+
+    /**
+     * Deletes up to limit raw hits in [from, to) and adds them to the progress of the day.
+     */
+    public int deleteHits(LocalDateTime from, LocalDateTime to, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("id", PROGRESS_ID)
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to))
+                .addValue("limit", limit)
+                .addValue("now", Timestamp.valueOf(LocalDateTime.now()));
+        int deleted = jdbcTemplate.update("delete from stats where id in " +
+                "(select id from stats where hit_time >= :from and hit_time < :to limit :limit)", params);
+        params.addValue("deleted", deleted);
+        jdbcTemplate.update("update stats_compaction set current_day = :from, " +
+                "rows_deleted = rows_deleted + :deleted, updated_at = :now where id = :id", params);
+        return deleted;
+    }
+
+    /**
+     * Records that raw hits before the given time are no longer read, never moving the mark back.
+     */
+    public void markCompactedBefore(LocalDateTime compactedBefore) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("id", PROGRESS_ID)
+                .addValue("before", Timestamp.valueOf(compactedBefore))
+                .addValue("now", Timestamp.valueOf(LocalDateTime.now()));
+        jdbcTemplate.update("update stats_compaction " +
+                "set compacted_before = greatest(coalesce(compacted_before, :before), :before), " +
+                "current_day = null, updated_at = :now where id = :id", params);
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toLocalDateTime();
+    }
+}
@@ -0,0 +1,47 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+@Repository
+@RequiredArgsConstructor
+public class DictionaryRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public Map<String, Integer> findIds(String table, Collection<String> names) {
+        Map<String, Integer> ids = new HashMap<>();
+        jdbcTemplate.query("select id, name from " + table + " where name in (:names)",
+                new MapSqlParameterSource("names", names),
+                rs -> {
+                    ids.put(rs.getString("name"), rs.getInt("id"));
+                });
+        return ids;
+    }
+
+    public Map<Integer, String> findNames(String table, Collection<Integer> ids) {
+        Map<Integer, String> names = new HashMap<>();
+        jdbcTemplate.query("select id, name from " + table + " where id in (:ids)",
+                new MapSqlParameterSource("ids", ids),
+                rs -> {
+                    names.put(rs.getInt("id"), rs.getString("name"));
+                });
+        return names;
+    }
+
+    public void forEach(String table, BiConsumer<Integer, String> consumer) {
+        jdbcTemplate.getJdbcTemplate().query("select id, name from " + table, rs -> {
+            consumer.accept(rs.getInt("id"), rs.getString("name"));
+        });
+    }
+
+    public void insert(String table, String name) {
+        jdbcTemplate.update("insert into " + table + " (name) values (:name)", new MapSqlParameterSource("name", name));
+    }
+}
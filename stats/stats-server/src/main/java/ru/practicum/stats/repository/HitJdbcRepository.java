@@ -0,0 +1,76 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.model.Hit;
+import ru.practicum.stats.model.RangeSegment;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Repository
+@RequiredArgsConstructor
+public class HitJdbcRepository {
+    private static final String INSERT_HIT = "insert into stats (app_id, uri_id, ip_id, hit_time) values (?, ?, ?, ?)";
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public void saveAll(List<Hit> hits) {
+        jdbcTemplate.batchUpdate(INSERT_HIT, hits, hits.size(), (ps, hit) -> {
+            ps.setInt(1, hit.getAppId());
+            ps.setInt(2, hit.getUriId());
+            ps.setInt(3, hit.getIpId());
+            ps.setTimestamp(4, Timestamp.valueOf(hit.getTimestamp()));
+        });
+    }
+
+    /**
+     * Streams distinct (app, uri, ip) id triples of a raw segment; the timestamp of the
+     * produced hits is not filled.
+     */
+    public void forEachVisitor(RangeSegment segment, Collection<Integer> uriIds, Consumer<Hit> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(segment.getFrom()))
+                .addValue("to", Timestamp.valueOf(segment.getTo()));
+        String uriFilter = "";
+        if (uriIds != null) {
+            params.addValue("uriIds", uriIds);
+            uriFilter = " and uri_id in (:uriIds)";
+        }
+        namedJdbcTemplate.query("select distinct app_id, uri_id, ip_id from stats " +
+                        "where hit_time >= :from and hit_time " + (segment.isClosed() ? "<=" : "<") + " :to" + uriFilter,
+                params,
+                rs -> {
+                    consumer.accept(Hit.builder()
+                            .appId(rs.getInt("app_id"))
+                            .uriId(rs.getInt("uri_id"))
+                            .ipId(rs.getInt("ip_id"))
+                            .build());
+                });
+    }
+
+    public void forEachHit(int chunkSize, Consumer<List<Hit>> consumer) {
+        List<Hit> chunk = new ArrayList<>(chunkSize);
+        jdbcTemplate.query("select app_id, uri_id, ip_id, hit_time from stats", rs -> {
+            chunk.add(Hit.builder()
+                    .appId(rs.getInt("app_id"))
+                    .uriId(rs.getInt("uri_id"))
+                    .ipId(rs.getInt("ip_id"))
+                    .timestamp(rs.getTimestamp("hit_time").toLocalDateTime())
+                    .build());
+            if (chunk.size() == chunkSize) {
+                consumer.accept(chunk);
+                chunk.clear();
+            }
+        });
+        if (!chunk.isEmpty()) {
+            consumer.accept(chunk);
+        }
+    }
+}
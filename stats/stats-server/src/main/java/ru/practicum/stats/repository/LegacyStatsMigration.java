@@ -0,0 +1,90 @@
+package ru.practicum.stats.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Moves hits of a stats table that still keeps app, uri and ip as strings into the dictionary layout.
+ * {@link #detach()} copies them aside and drops the old table, so the schema scripts can create the new
+ * one, and {@link #complete()} then fills the dictionaries and writes the hits back as ids. A copy left
+ * by an interrupted migration is picked up again on the next start. The rollup, bitmap and sketch tables
+ * are created empty along with the new one and are built from the migrated hits like on a new database.
+ */
+@Slf4j
+public class LegacyStatsMigration {
+    private static final String LEGACY_TABLE = "stats_legacy";
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public LegacyStatsMigration(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    /**
+     * Whether the stats table has the old layout or a copy of it is waiting to be written back.
+     */
+    public boolean isPending() {
+        return hasColumn(PartitionRepository.TABLE, "app") || hasColumn(LEGACY_TABLE, "app");
+    }
+
+    public void detach() {
+        if (!hasColumn(PartitionRepository.TABLE, "app")) {
+            return;
+        }
+        log.info("Table stats keeps app, uri and ip as strings, moving its hits to the dictionary layout");
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!hasColumn(LEGACY_TABLE, "app")) {
+                jdbcTemplate.execute("create table stats_legacy as select app, uri, ip, hit_time from stats");
+            }
+            jdbcTemplate.execute("drop table stats");
+        });
+    }
+
+    public void complete() {
+        if (!hasColumn(LEGACY_TABLE, "app")) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("insert into dict_app (name) select distinct app from stats_legacy " +
+                    "where app not in (select name from dict_app)");
+            jdbcTemplate.update("insert into dict_uri (name) select distinct uri from stats_legacy " +
+                    "where uri not in (select name from dict_uri)");
+            jdbcTemplate.update("insert into dict_ip (name) select distinct ip from stats_legacy " +
+                    "where ip not in (select name from dict_ip)");
+            int migrated = jdbcTemplate.update("insert into stats (app_id, uri_id, ip_id, hit_time) " +
+                    "select a.id, u.id, i.id, l.hit_time from stats_legacy l " +
+                    "join dict_app a on a.name = l.app " +
+                    "join dict_uri u on u.name = l.uri " +
+                    "join dict_ip i on i.name = l.ip " +
+                    "order by l.hit_time");
+            jdbcTemplate.execute("drop table stats_legacy");
+            log.info("Moved {} hits to the dictionary layout", migrated);
+        });
+    }
+
+    private boolean hasColumn(String table, String column) {
+        Boolean found = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            boolean upperCase = metaData.storesUpperCaseIdentifiers();
+            return hasColumn(metaData, connection.getSchema(),
+                    upperCase ? table.toUpperCase() : table, upperCase ? column.toUpperCase() : column);
+        });
+        return Boolean.TRUE.equals(found);
+    }
+
+    private static boolean hasColumn(DatabaseMetaData metaData, String schema, String table, String column)
+            throws SQLException {
+        try (ResultSet columns = metaData.getColumns(null, schema, table, column)) {
+            return columns.next();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.model.Partition;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Manages range partitions of the raw hits table through the PostgreSQL catalog.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PartitionRepository {
+    public static final String TABLE = "stats";
+    private static final Pattern BOUNDS = Pattern.compile("FROM \\('([^']+)'\\) TO \\('([^']+)'\\)");
+    private static final DateTimeFormatter BOUND_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private final JdbcTemplate jdbcTemplate;
+
+    public List<Partition> findPartitions() {
+        List<Partition> partitions = new ArrayList<>();
+        jdbcTemplate.query("select c.relname, pg_get_expr(c.relpartbound, c.oid) as bound " +
+                        "from pg_inherits i join pg_class c on c.oid = i.inhrelid " +
+                        "where i.inhparent = ?::regclass",
+                rs -> {
+                    Matcher matcher = BOUNDS.matcher(rs.getString("bound"));
+                    if (matcher.find()) {
+                        partitions.add(new Partition(rs.getString("relname"),
+                                LocalDateTime.parse(matcher.group(1), BOUND_FORMAT),
+                                LocalDateTime.parse(matcher.group(2), BOUND_FORMAT)));
+                    }
+                }, TABLE);
+        return partitions;
+    }
+
+    public void create(Partition partition) {
+        jdbcTemplate.execute("create table if not exists " + partition.getName() +
+                " partition of " + TABLE +
+                " for values from ('" + partition.getFrom().format(BOUND_FORMAT) + "')" +
+                " to ('" + partition.getTo().format(BOUND_FORMAT) + "')");
+    }
+
+    public void drop(Partition partition) {
+        jdbcTemplate.execute("drop table if exists " + partition.getName());
+    }
+}
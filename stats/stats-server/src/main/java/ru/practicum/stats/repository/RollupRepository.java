@@ -0,0 +1,168 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.model.BucketCount;
+import ru.practicum.stats.model.Granularity;
+import ru.practicum.stats.model.HitCount;
+import ru.practicum.stats.model.RangeSegment;
+import ru.practicum.stats.model.RollupKey;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.function.Consumer;
+
+@Repository
+@RequiredArgsConstructor
+public class RollupRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void increment(Granularity granularity, Map<RollupKey, Long> counts) {
+        List<Map.Entry<RollupKey, Long>> entries = new ArrayList<>(counts.entrySet());
+        int[][] updated = jdbcTemplate.getJdbcTemplate().batchUpdate(
+                "update " + granularity.getRollupTable() + " set hits = hits + ? " +
+                        "where bucket = ? and app_id = ? and uri_id = ?",
+                entries, entries.size(), (ps, entry) -> {
+                    ps.setLong(1, entry.getValue());
+                    ps.setTimestamp(2, Timestamp.valueOf(entry.getKey().getBucket()));
+                    ps.setInt(3, entry.getKey().getAppId());
+                    ps.setInt(4, entry.getKey().getUriId());
+                });
+
+        List<Map.Entry<RollupKey, Long>> missing = new ArrayList<>();
+        int index = 0;
+        for (int[] batch : updated) {
+            for (int rows : batch) {
+                if (rows == 0) {
+                    missing.add(entries.get(index));
+                }
+                index++;
+            }
+        }
+        jdbcTemplate.getJdbcTemplate().batchUpdate(
+                "insert into " + granularity.getRollupTable() + " (bucket, app_id, uri_id, hits) values (?, ?, ?, ?)",
+                missing, missing.size(), (ps, entry) -> {
+                    ps.setTimestamp(1, Timestamp.valueOf(entry.getKey().getBucket()));
+                    ps.setInt(2, entry.getKey().getAppId());
+                    ps.setInt(3, entry.getKey().getUriId());
+                    ps.setLong(4, entry.getValue());
+                });
+    }
+
+    public boolean isEmpty() {
+        return jdbcTemplate.getJdbcTemplate()
+                .queryForList("select bucket from " + Granularity.DAY.getRollupTable() + " limit 1")
+                .isEmpty();
+    }
+
+    /**
+     * Deletes the counts of all buckets starting before the given time, returning the number of rows deleted.
+     */
+    public int deleteBefore(LocalDateTime before) {
+        int deleted = 0;
+        for (Granularity granularity : Granularity.values()) {
+            deleted += jdbcTemplate.getJdbcTemplate().update(
+                    "delete from " + granularity.getRollupTable() + " where bucket < ?", Timestamp.valueOf(before));
+        }
+        return deleted;
+    }
+
+    public void rebuildFromRaw(Granularity granularity) {
+        String bucket = "date_trunc('" + granularity.name().toLowerCase() + "', hit_time)";
+        jdbcTemplate.getJdbcTemplate().update(
+                "insert into " + granularity.getRollupTable() + " (bucket, app_id, uri_id, hits) " +
+                "select " + bucket + ", app_id, uri_id, count(*) from stats group by " + bucket + ", app_id, uri_id");
+    }
+
+    /**
+     * Sums hits over the planned segments in a single statement: rollup segments read
+     * pre-aggregated buckets, raw segments count rows of the stats table. Rows are passed
+     * to the consumer as they are fetched, busiest first.
+     */
+    public void findStats(List<RangeSegment> plan, Collection<Integer> uriIds, Integer limit,
+                          Consumer<HitCount> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String uriFilter = "";
+        if (uriIds != null) {
+            params.addValue("uriIds", uriIds);
+            uriFilter = " and uri_id in (:uriIds)";
+        }
+
+        StringJoiner union = new StringJoiner(" union all ");
+        for (int i = 0; i < plan.size(); i++) {
+            RangeSegment segment = plan.get(i);
+            params.addValue("from" + i, Timestamp.valueOf(segment.getFrom()));
+            params.addValue("to" + i, Timestamp.valueOf(segment.getTo()));
+            if (segment.isRaw()) {
+                union.add("select app_id, uri_id, count(*) as hits from stats " +
+                        "where hit_time >= :from" + i + " and hit_time " + (segment.isClosed() ? "<=" : "<") + " :to" + i +
+                        uriFilter + " group by app_id, uri_id");
+            } else {
+                union.add("select app_id, uri_id, hits from " + segment.getGranularity().getRollupTable() + " " +
+                        "where bucket >= :from" + i + " and bucket < :to" + i + uriFilter);
+            }
+        }
+
+        String limitClause = "";
+        if (limit != null) {
+            params.addValue("limit", limit);
+            limitClause = " limit :limit";
+        }
+
+        jdbcTemplate.query(
+                "select app_id, uri_id, sum(hits) as hits from (" + union + ") as t " +
+                        "group by app_id, uri_id order by hits desc" + limitClause,
+                params,
+                rs -> {
+                    consumer.accept(new HitCount(rs.getInt("app_id"), rs.getInt("uri_id"), rs.getLong("hits")));
+                });
+    }
+
+    /**
+     * Counts hits per bucket of the given step over the planned segments in a single statement.
+     * The plan must only hold rollup segments of that step, so every bucket is either read from
+     * its rollup or counted from raw hits. Unique counts need a plan of raw segments only.
+     */
+    public void findTimeSeries(List<RangeSegment> plan, Granularity step, Collection<Integer> uriIds, boolean unique,
+                               Consumer<BucketCount> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String uriFilter = "";
+        if (uriIds != null) {
+            params.addValue("uriIds", uriIds);
+            uriFilter = " and uri_id in (:uriIds)";
+        }
+
+        String bucket = "date_trunc('" + step.name().toLowerCase() + "', hit_time)";
+        String count = unique ? "count(distinct ip_id)" : "count(*)";
+        StringJoiner union = new StringJoiner(" union all ");
+        for (int i = 0; i < plan.size(); i++) {
+            RangeSegment segment = plan.get(i);
+            params.addValue("from" + i, Timestamp.valueOf(segment.getFrom()));
+            params.addValue("to" + i, Timestamp.valueOf(segment.getTo()));
+            if (segment.isRaw()) {
+                union.add("select " + bucket + " as bucket, app_id, uri_id, " + count + " as hits from stats " +
+                        "where hit_time >= :from" + i + " and hit_time " + (segment.isClosed() ? "<=" : "<") + " :to" + i +
+                        uriFilter + " group by " + bucket + ", app_id, uri_id");
+            } else {
+                union.add("select bucket, app_id, uri_id, hits from " + segment.getGranularity().getRollupTable() + " " +
+                        "where bucket >= :from" + i + " and bucket < :to" + i + uriFilter);
+            }
+        }
+
+        jdbcTemplate.query(
+                "select bucket, app_id, uri_id, sum(hits) as hits from (" + union + ") as t " +
+                        "group by bucket, app_id, uri_id",
+                params,
+                rs -> {
+                    consumer.accept(new BucketCount(rs.getTimestamp("bucket").toLocalDateTime(), rs.getInt("app_id"),
+                            rs.getInt("uri_id"), rs.getLong("hits")));
+                });
+    }
+}
@@ -0,0 +1,104 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.model.Granularity;
+import ru.practicum.stats.model.RangeSegment;
+import ru.practicum.stats.model.RollupKey;
+import ru.practicum.stats.sketch.HyperLogLog;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+@Repository
+@RequiredArgsConstructor
+public class SketchRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public Map<Integer, HyperLogLog> findForUpdate(Granularity granularity, LocalDateTime bucket,
+                                                  int appId, Collection<Integer> uriIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("bucket", Timestamp.valueOf(bucket))
+                .addValue("appId", appId)
+                .addValue("uriIds", uriIds);
+        Map<Integer, HyperLogLog> sketches = new HashMap<>();
+        jdbcTemplate.query("select uri_id, sketch from " + table(granularity) + " " +
+                        "where bucket = :bucket and app_id = :appId and uri_id in (:uriIds) for update", params,
+                rs -> {
+                    sketches.put(rs.getInt("uri_id"), HyperLogLog.fromBytes(rs.getBytes("sketch")));
+                });
+        return sketches;
+    }
+
+    public void update(Granularity granularity, Map<RollupKey, HyperLogLog> sketches) {
+        List<Map.Entry<RollupKey, HyperLogLog>> entries = new ArrayList<>(sketches.entrySet());
+        jdbcTemplate.getJdbcTemplate().batchUpdate(
+                "update " + table(granularity) + " set sketch = ? where bucket = ? and app_id = ? and uri_id = ?",
+                entries, entries.size(), (ps, entry) -> {
+                    ps.setBytes(1, entry.getValue().toBytes());
+                    ps.setTimestamp(2, Timestamp.valueOf(entry.getKey().getBucket()));
+                    ps.setInt(3, entry.getKey().getAppId());
+                    ps.setInt(4, entry.getKey().getUriId());
+                });
+    }
+
+    public void insert(Granularity granularity, Map<RollupKey, HyperLogLog> sketches) {
+        List<Map.Entry<RollupKey, HyperLogLog>> entries = new ArrayList<>(sketches.entrySet());
+        jdbcTemplate.getJdbcTemplate().batchUpdate(
+                "insert into " + table(granularity) + " (bucket, app_id, uri_id, sketch) values (?, ?, ?, ?)",
+                entries, entries.size(), (ps, entry) -> {
+                    ps.setTimestamp(1, Timestamp.valueOf(entry.getKey().getBucket()));
+                    ps.setInt(2, entry.getKey().getAppId());
+                    ps.setInt(3, entry.getKey().getUriId());
+                    ps.setBytes(4, entry.getValue().toBytes());
+                });
+    }
+
+    public boolean isEmpty() {
+        return jdbcTemplate.getJdbcTemplate()
+                .queryForList("select bucket from " + table(Granularity.DAY) + " limit 1")
+                .isEmpty();
+    }
+
+    public int deleteBefore(LocalDateTime before) {
+        int deleted = 0;
+        for (Granularity granularity : List.of(Granularity.HOUR, Granularity.DAY)) {
+            deleted += jdbcTemplate.getJdbcTemplate().update(
+                    "delete from " + table(granularity) + " where bucket < ?", Timestamp.valueOf(before));
+        }
+        return deleted;
+    }
+
+    /**
+     * Reads the sketches of all buckets inside a (non-raw) segment.
+     */
+    public void forEachSketch(RangeSegment segment, Collection<Integer> uriIds, BiConsumer<RollupKey, HyperLogLog> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(segment.getFrom()))
+                .addValue("to", Timestamp.valueOf(segment.getTo()));
+        String uriFilter = "";
+        if (uriIds != null) {
+            params.addValue("uriIds", uriIds);
+            uriFilter = " and uri_id in (:uriIds)";
+        }
+        jdbcTemplate.query("select bucket, app_id, uri_id, sketch from " + table(segment.getGranularity()) + " " +
+                        "where bucket >= :from and bucket < :to" + uriFilter, params,
+                rs -> {
+                    RollupKey key = new RollupKey(rs.getTimestamp("bucket").toLocalDateTime(),
+                            rs.getInt("app_id"), rs.getInt("uri_id"));
+                    consumer.accept(key, HyperLogLog.fromBytes(rs.getBytes("sketch")));
+                });
+    }
+
+    private String table(Granularity granularity) {
+        return "stats_hll_" + granularity.name().toLowerCase();
+    }
+}
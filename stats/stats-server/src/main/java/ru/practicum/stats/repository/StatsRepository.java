@@ -0,0 +1,47 @@
+package ru.practicum.stats.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import ru.practicum.stats.model.Hit;
+import ru.practicum.stats.model.HitCount;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.stream.Stream;
+
+public interface StatsRepository extends JpaRepository<Hit, Long> {
+    @Query("select new ru.practicum.stats.model.HitCount(h.appId, h.uriId, " +
+            "case :unique " +
+            "when ('true') then count(distinct h.ipId) " +
+            "else count(*) " +
+            "end " +
+            "as hits) " +
+            "from Hit as h " +
+            "where h.timestamp between :start and :end " +
+            "group by h.appId, h.uriId " +
+            "order by hits desc")
+    Stream<HitCount> findStats(LocalDateTime start, LocalDateTime end, boolean unique, Pageable pageable);
+
+    @Query("select new ru.practicum.stats.model.HitCount(h.appId, h.uriId, " +
+            "case :unique " +
+            "when ('true') then count(distinct h.ipId) " +
+            "else count(*) " +
+            "end " +
+            "as hits) " +
+            "from Hit as h " +
+            "where h.timestamp between :start and :end " +
+            "and h.uriId in :uriIds " +
+            "group by h.appId, h.uriId " +
+            "order by hits desc")
+    Stream<HitCount> findStatsForUris(LocalDateTime start, LocalDateTime end, boolean unique,
+                                      Collection<Integer> uriIds, Pageable pageable);
+
+    @Query("select new ru.practicum.stats.model.HitCount(h.appId, 0, count(distinct h.ipId) as hits) " +
+            "from Hit as h " +
+            "where h.timestamp between :start and :end " +
+            "and h.uriId in :uriIds " +
+            "group by h.appId " +
+            "order by hits desc")
+    Stream<HitCount> findUniqueTotalsForUris(LocalDateTime start, LocalDateTime end, Collection<Integer> uriIds);
+}
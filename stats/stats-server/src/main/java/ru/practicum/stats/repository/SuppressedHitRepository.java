@@ -0,0 +1,83 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.model.HitCount;
+import ru.practicum.stats.model.RollupKey;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Hourly counts of hits dropped as duplicates at ingest, kept apart from the stats table.
+ */
+@Repository
+@RequiredArgsConstructor
+public class SuppressedHitRepository {
+    private static final String TABLE = "stats_suppressed_hour";
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void increment(Map<RollupKey, Long> counts) {
+        List<Map.Entry<RollupKey, Long>> entries = new ArrayList<>(counts.entrySet());
+        int[][] updated = jdbcTemplate.getJdbcTemplate().batchUpdate(
+                "update " + TABLE + " set hits = hits + ? where bucket = ? and app_id = ? and uri_id = ?",
+                entries, entries.size(), (ps, entry) -> {
+                    ps.setLong(1, entry.getValue());
+                    ps.setTimestamp(2, Timestamp.valueOf(entry.getKey().getBucket()));
+                    ps.setInt(3, entry.getKey().getAppId());
+                    ps.setInt(4, entry.getKey().getUriId());
+                });
+
+        List<Map.Entry<RollupKey, Long>> missing = new ArrayList<>();
+        int index = 0;
+        for (int[] batch : updated) {
+            for (int rows : batch) {
+                if (rows == 0) {
+                    missing.add(entries.get(index));
+                }
+                index++;
+            }
+        }
+        jdbcTemplate.getJdbcTemplate().batchUpdate(
+                "insert into " + TABLE + " (bucket, app_id, uri_id, hits) values (?, ?, ?, ?)",
+                missing, missing.size(), (ps, entry) -> {
+                    ps.setTimestamp(1, Timestamp.valueOf(entry.getKey().getBucket()));
+                    ps.setInt(2, entry.getKey().getAppId());
+                    ps.setInt(3, entry.getKey().getUriId());
+                    ps.setLong(4, entry.getValue());
+                });
+    }
+
+    public int deleteBefore(LocalDateTime before) {
+        return jdbcTemplate.getJdbcTemplate()
+                .update("delete from " + TABLE + " where bucket < ?", Timestamp.valueOf(before));
+    }
+
+    /**
+     * Sums suppressed hits of the hours from the one holding start up to the one holding end, busiest first.
+     */
+    public void findSuppressed(LocalDateTime from, LocalDateTime to, Collection<Integer> uriIds,
+                               Consumer<HitCount> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+        String uriFilter = "";
+        if (uriIds != null) {
+            params.addValue("uriIds", uriIds);
+            uriFilter = " and uri_id in (:uriIds)";
+        }
+        jdbcTemplate.query("select app_id, uri_id, sum(hits) as hits from " + TABLE + " " +
+                        "where bucket >= :from and bucket <= :to" + uriFilter + " " +
+                        "group by app_id, uri_id order by hits desc", params,
+                rs -> {
+                    consumer.accept(new HitCount(rs.getInt("app_id"), rs.getInt("uri_id"), rs.getLong("hits")));
+                });
+    }
+}
@@ -0,0 +1,111 @@
+package ru.practicum.stats.segment;
+
+import ru.practicum.stats.model.Hit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log of hits not yet written into a segment. Every append is one record of a length,
+ * a CRC32 and the hits as varints and UTF-8 strings, and is forced to disk before it returns. A
+ * record cut short by a crash fails its length or checksum and ends the log when it is read back;
+ * it was never acknowledged, so nothing is lost.
+ */
+public final class HitLog implements Closeable {
+    private static final int RECORD_HEADER = Integer.BYTES * 2;
+    private final FileChannel channel;
+
+    private HitLog(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Creates an empty log at the path, replacing any file there.
+     */
+    public static HitLog create(Path path) throws IOException {
+        return new HitLog(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    public void append(List<Hit> hits) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        VarInt.write(body, hits.size());
+        for (Hit hit : hits) {
+            writeString(body, hit.getApp());
+            writeString(body, hit.getUri());
+            writeString(body, hit.getIp());
+            VarInt.write(body, hit.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+        }
+        byte[] bytes = body.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + bytes.length);
+        record.putInt(bytes.length).putInt((int) crc.getValue()).put(bytes).flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads the hits of all complete records of the log.
+     */
+    public static List<Hit> read(Path path) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(path));
+        List<Hit> hits = new ArrayList<>();
+        while (in.remaining() >= RECORD_HEADER) {
+            int length = in.getInt();
+            int checksum = in.getInt();
+            if (length < 0 || length > in.remaining()) {
+                break;
+            }
+            ByteBuffer body = in.slice();
+            body.limit(length);
+            CRC32 crc = new CRC32();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            long count = VarInt.read(body);
+            for (long i = 0; i < count; i++) {
+                hits.add(Hit.builder()
+                        .app(readString(body))
+                        .uri(readString(body))
+                        .ip(readString(body))
+                        .timestamp(LocalDateTime.ofEpochSecond(VarInt.read(body), 0, ZoneOffset.UTC))
+                        .build());
+            }
+            in.position(in.position() + length);
+        }
+        return hits;
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        VarInt.write(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[(int) VarInt.read(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,250 @@
+package ru.practicum.stats.segment;
+
+import lombok.Getter;
+import ru.practicum.stats.model.UriPattern;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Read-only view of a segment file written by {@link SegmentWriter}. The file is memory-mapped
+ * and columns are decoded straight from the mapping, so a scan only touches the sections it
+ * needs; the ip dictionary is loaded on first use.
+ */
+public class Segment {
+    static final int MAGIC = 0x45575347;
+    static final int VERSION = 1;
+    static final int APP_DICTIONARY = 0;
+    static final int URI_DICTIONARY = 1;
+    static final int IP_DICTIONARY = 2;
+    static final int TIME = 3;
+    static final int APP = 4;
+    static final int URI = 5;
+    static final int IP = 6;
+    static final int SOURCES = 7;
+    static final int SECTIONS = 8;
+    static final int HEADER_SIZE = 28 + SECTIONS * 8;
+
+    @Getter
+    private final Path path;
+    @Getter
+    private final int rowCount;
+    @Getter
+    private final long minTime;
+    @Getter
+    private final long maxTime;
+    private final MappedByteBuffer buffer;
+    private final int[] offsets = new int[SECTIONS];
+    private final int[] lengths = new int[SECTIONS];
+    private final String[] apps;
+    private final String[] uris;
+    @Getter
+    private final long[] sources;
+    private volatile String[] ips;
+
+    private Segment(Path path, MappedByteBuffer buffer) {
+        this.path = path;
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IllegalStateException("Not a segment file: " + path);
+        }
+        this.rowCount = buffer.getInt(8);
+        this.minTime = buffer.getLong(12);
+        this.maxTime = buffer.getLong(20);
+        for (int i = 0; i < SECTIONS; i++) {
+            offsets[i] = buffer.getInt(28 + i * 8);
+            lengths[i] = buffer.getInt(32 + i * 8);
+        }
+        this.apps = readDictionary(APP_DICTIONARY);
+        this.uris = readDictionary(URI_DICTIONARY);
+        this.sources = readSources();
+    }
+
+    public static Segment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new Segment(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public boolean overlaps(long from, long to) {
+        return minTime <= to && from <= maxTime;
+    }
+
+    public String app(int code) {
+        return apps[code];
+    }
+
+    public String uri(int code) {
+        return uris[code];
+    }
+
+    public String ip(int code) {
+        String[] values = ips;
+        if (values == null) {
+            values = readDictionary(IP_DICTIONARY);
+            ips = values;
+        }
+        return values[code];
+    }
+
+    public int appCount() {
+        return apps.length;
+    }
+
+    public int uriCount() {
+        return uris.length;
+    }
+
+    public int ipCount() {
+        String[] values = ips;
+        return values != null ? values.length : (int) VarInt.read(section(IP_DICTIONARY));
+    }
+
+    /**
+     * Returns the code of the uri in this segment, or -1 when the segment has no hits on it.
+     */
+    public int uriCode(String uri) {
+        int code = Arrays.binarySearch(uris, uri);
+        return code >= 0 ? code : -1;
+    }
+
+    /**
+     * Returns the range [from, to) of uri codes matching the pattern; see {@link UriPattern}.
+     */
+    public int[] uriCodes(String pattern) {
+        if (!UriPattern.isPrefix(pattern)) {
+            int code = uriCode(pattern);
+            return code >= 0 ? new int[]{code, code + 1} : new int[]{0, 0};
+        }
+        String prefix = UriPattern.prefix(pattern);
+        int from = Arrays.binarySearch(uris, prefix);
+        from = from >= 0 ? from : -from - 1;
+        int low = from;
+        int high = uris.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (uris[middle].startsWith(prefix)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return new int[]{from, low};
+    }
+
+    /**
+     * Passes every row with time in [from, to] and, if a filter is given, an allowed uri code
+     * to the consumer. The ip column is decoded only when withIps is set; otherwise -1 is passed.
+     */
+    public void scan(long from, long to, boolean[] uriFilter, boolean withIps, RowConsumer consumer) {
+        ByteBuffer time = section(TIME);
+        ByteBuffer app = section(APP);
+        ByteBuffer uri = section(URI);
+        ByteBuffer ip = withIps ? section(IP) : null;
+        long currentTime = minTime;
+        int currentApp = 0;
+        long runLeft = 0;
+        for (int row = 0; row < rowCount; row++) {
+            currentTime += VarInt.read(time);
+            if (runLeft == 0) {
+                currentApp = (int) VarInt.read(app);
+                runLeft = VarInt.read(app);
+            }
+            runLeft--;
+            int uriCode = (int) VarInt.read(uri);
+            int ipCode = ip != null ? (int) VarInt.read(ip) : -1;
+            if (currentTime > to) {
+                return;
+            }
+            if (currentTime >= from && (uriFilter == null || uriFilter[uriCode])) {
+                consumer.accept(currentTime, currentApp, uriCode, ipCode);
+            }
+        }
+    }
+
+    /**
+     * Returns a cursor over all rows in time order, for reading several segments side by side.
+     */
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    private ByteBuffer section(int section) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(offsets[section]).limit(offsets[section] + lengths[section]);
+        return slice.slice();
+    }
+
+    /**
+     * Reads the ids of the segments this one was merged from.
+     */
+    private long[] readSources() {
+        if (lengths[SOURCES] == 0) {
+            return new long[0];
+        }
+        ByteBuffer in = section(SOURCES);
+        long[] ids = new long[(int) VarInt.read(in)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = VarInt.read(in);
+        }
+        return ids;
+    }
+
+    private String[] readDictionary(int section) {
+        ByteBuffer in = section(section);
+        String[] values = new String[(int) VarInt.read(in)];
+        for (int i = 0; i < values.length; i++) {
+            byte[] bytes = new byte[(int) VarInt.read(in)];
+            in.get(bytes);
+            values[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return values;
+    }
+
+    /**
+     * Decodes one row at a time; the fields hold the codes of the current row after {@link #next()}.
+     */
+    final class Cursor {
+        private final ByteBuffer timeColumn = section(TIME);
+        private final ByteBuffer appColumn = section(APP);
+        private final ByteBuffer uriColumn = section(URI);
+        private final ByteBuffer ipColumn = section(IP);
+        private int rowsLeft = rowCount;
+        private long runLeft;
+        long time = minTime;
+        int app;
+        int uri;
+        int ip;
+
+        Segment segment() {
+            return Segment.this;
+        }
+
+        boolean next() {
+            if (rowsLeft == 0) {
+                return false;
+            }
+            rowsLeft--;
+            time += VarInt.read(timeColumn);
+            if (runLeft == 0) {
+                app = (int) VarInt.read(appColumn);
+                runLeft = VarInt.read(appColumn);
+            }
+            runLeft--;
+            uri = (int) VarInt.read(uriColumn);
+            ip = (int) VarInt.read(ipColumn);
+            return true;
+        }
+    }
+
+    @FunctionalInterface
+    public interface RowConsumer {
+        void accept(long time, int app, int uri, int ip);
+    }
+}
@@ -0,0 +1,207 @@
+package ru.practicum.stats.segment;
+
+import ru.practicum.stats.model.Hit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Writes hits into an immutable segment file, sorted by time. Every column goes into its own
+ * section: app, uri and ip are replaced by codes into sorted per-segment dictionaries, times
+ * are delta-encoded and all numbers are stored as varints; the app column is additionally
+ * run-length encoded, since a segment rarely holds more than a few apps. A merged segment also
+ * lists the ids of the segments it replaces, so that they can be told apart from live ones if
+ * the process dies before they are deleted.
+ */
+public final class SegmentWriter {
+    private SegmentWriter() {
+    }
+
+    public static void write(Path path, List<Hit> hits) throws IOException {
+        List<Hit> sorted = new ArrayList<>(hits);
+        sorted.sort(Comparator.comparing(Hit::getTimestamp));
+        Map<String, Integer> apps = dictionary(sorted, Hit::getApp);
+        Map<String, Integer> uris = dictionary(sorted, Hit::getUri);
+        Map<String, Integer> ips = dictionary(sorted, Hit::getIp);
+
+        Columns columns = new Columns(epochSecond(sorted.get(0)));
+        for (Hit hit : sorted) {
+            columns.add(epochSecond(hit), apps.get(hit.getApp()), uris.get(hit.getUri()), ips.get(hit.getIp()));
+        }
+        columns.write(path, values(apps), values(uris), values(ips), new long[0]);
+    }
+
+    /**
+     * Writes the rows of all the segments into one, listing the given ids as its sources. Rows are
+     * merged in time order straight from the segment files, and codes are translated into the merged
+     * dictionaries, so only the encoded columns are held in memory.
+     */
+    public static void merge(Path path, List<Segment> segments, long[] sources) throws IOException {
+        String[] apps = union(segments, Segment::appCount, Segment::app);
+        String[] uris = union(segments, Segment::uriCount, Segment::uri);
+        String[] ips = union(segments, Segment::ipCount, Segment::ip);
+        Map<Segment, int[][]> codes = new HashMap<>();
+        for (Segment segment : segments) {
+            codes.put(segment, new int[][]{
+                    translation(apps, segment.appCount(), segment::app),
+                    translation(uris, segment.uriCount(), segment::uri),
+                    translation(ips, segment.ipCount(), segment::ip)});
+        }
+
+        PriorityQueue<Segment.Cursor> cursors = new PriorityQueue<>(Comparator.comparingLong(cursor -> cursor.time));
+        for (Segment segment : segments) {
+            Segment.Cursor cursor = segment.cursor();
+            if (cursor.next()) {
+                cursors.add(cursor);
+            }
+        }
+        Columns columns = new Columns(cursors.isEmpty() ? 0 : cursors.peek().time);
+        while (!cursors.isEmpty()) {
+            Segment.Cursor cursor = cursors.poll();
+            int[][] translation = codes.get(cursor.segment());
+            columns.add(cursor.time, translation[0][cursor.app], translation[1][cursor.uri],
+                    translation[2][cursor.ip]);
+            if (cursor.next()) {
+                cursors.add(cursor);
+            }
+        }
+        columns.write(path, apps, uris, ips, sources);
+    }
+
+    private static Map<String, Integer> dictionary(List<Hit> hits, Function<Hit, String> column) {
+        Map<String, Integer> codes = new HashMap<>();
+        for (String value : new TreeSet<>(hits.stream().map(column).collect(Collectors.toSet()))) {
+            codes.put(value, codes.size());
+        }
+        return codes;
+    }
+
+    private static String[] values(Map<String, Integer> codes) {
+        String[] values = new String[codes.size()];
+        codes.forEach((value, code) -> values[code] = value);
+        return values;
+    }
+
+    private static String[] union(List<Segment> segments, ToIntFunction<Segment> count,
+                                  BiFunction<Segment, Integer, String> value) {
+        TreeSet<String> values = new TreeSet<>();
+        for (Segment segment : segments) {
+            for (int code = 0; code < count.applyAsInt(segment); code++) {
+                values.add(value.apply(segment, code));
+            }
+        }
+        return values.toArray(String[]::new);
+    }
+
+    private static int[] translation(String[] merged, int count, IntFunction<String> value) {
+        int[] codes = new int[count];
+        for (int code = 0; code < count; code++) {
+            codes[code] = Arrays.binarySearch(merged, value.apply(code));
+        }
+        return codes;
+    }
+
+    private static long epochSecond(Hit hit) {
+        return hit.getTimestamp().toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * Encodes rows added in time order into the column sections.
+     */
+    private static final class Columns {
+        private final ByteArrayOutputStream[] sections = new ByteArrayOutputStream[Segment.SECTIONS];
+        private final long minTime;
+        private long previousTime;
+        private int rowCount;
+        private int runApp = -1;
+        private int runLength;
+
+        Columns(long minTime) {
+            for (int i = 0; i < sections.length; i++) {
+                sections[i] = new ByteArrayOutputStream();
+            }
+            this.minTime = minTime;
+            this.previousTime = minTime;
+        }
+
+        void add(long time, int app, int uri, int ip) {
+            VarInt.write(sections[Segment.TIME], time - previousTime);
+            previousTime = time;
+            if (app != runApp && runLength > 0) {
+                VarInt.write(sections[Segment.APP], runApp);
+                VarInt.write(sections[Segment.APP], runLength);
+                runLength = 0;
+            }
+            runApp = app;
+            runLength++;
+            VarInt.write(sections[Segment.URI], uri);
+            VarInt.write(sections[Segment.IP], ip);
+            rowCount++;
+        }
+
+        void write(Path path, String[] apps, String[] uris, String[] ips, long[] sources) throws IOException {
+            writeDictionary(sections[Segment.APP_DICTIONARY], apps);
+            writeDictionary(sections[Segment.URI_DICTIONARY], uris);
+            writeDictionary(sections[Segment.IP_DICTIONARY], ips);
+            VarInt.write(sections[Segment.APP], runApp);
+            VarInt.write(sections[Segment.APP], runLength);
+            if (sources.length > 0) {
+                VarInt.write(sections[Segment.SOURCES], sources.length);
+                for (long source : sources) {
+                    VarInt.write(sections[Segment.SOURCES], source);
+                }
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(Segment.HEADER_SIZE);
+            header.putInt(Segment.MAGIC).putInt(Segment.VERSION).putInt(rowCount).putLong(minTime)
+                    .putLong(previousTime);
+            int offset = Segment.HEADER_SIZE;
+            for (ByteArrayOutputStream section : sections) {
+                header.putInt(offset).putInt(section.size());
+                offset += section.size();
+            }
+            header.flip();
+
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.write(header);
+                for (ByteArrayOutputStream section : sections) {
+                    channel.write(ByteBuffer.wrap(section.toByteArray()));
+                }
+                channel.force(true);
+            }
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private static void writeDictionary(ByteArrayOutputStream out, String[] values) {
+            VarInt.write(out, values.length);
+            for (String value : values) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                VarInt.write(out, bytes.length);
+                out.write(bytes, 0, bytes.length);
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package ru.practicum.stats.service;
+
+import ru.practicum.HitDto;
+import ru.practicum.StatsDto;
+import ru.practicum.TimeSeriesDto;
+import ru.practicum.stats.controller.params.StatsParams;
+import ru.practicum.stats.controller.params.TimeSeriesParams;
+import ru.practicum.stats.model.TrendWindow;
+import ru.practicum.stats.service.ingest.BulkHitSink;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface StatsService {
+    void addHit(HitDto hitDto);
+
+    BulkHitSink openBulk();
+
+    /**
+     * Rejects stats that cannot be answered, before any of them is written out.
+     */
+    void checkStats(StatsParams params);
+
+    void getStats(StatsParams params, Consumer<StatsDto> consumer);
+
+    /**
+     * Reads stats straight from the store on the calling thread, past the cache and the parallel
+     * splitter, so background jobs do not take query threads away from requests.
+     */
+    void getReport(StatsParams params, Consumer<StatsDto> consumer);
+
+    /**
+     * Rejects time series that cannot be answered, before any of it is written out.
+     */
+    void checkTimeSeries(TimeSeriesParams params);
+
+    void getTimeSeries(TimeSeriesParams params, Consumer<TimeSeriesDto> consumer);
+
+    List<StatsDto> getTop(String app, TrendWindow window, int limit);
+
+    /**
+     * Returns hits dropped as duplicates at ingest, per app and uri, over whole hours of the range.
+     */
+    List<StatsDto> getSuppressed(LocalDateTime start, LocalDateTime end, String[] uris);
+}
@@ -0,0 +1,205 @@
+package ru.practicum.stats.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.practicum.HitDto;
+import ru.practicum.StatsDto;
+import ru.practicum.TimeSeriesDto;
+import ru.practicum.stats.controller.params.StatsParams;
+import ru.practicum.stats.controller.params.TimeSeriesParams;
+import ru.practicum.stats.exception.ValidationException;
+import ru.practicum.stats.model.Granularity;
+import ru.practicum.stats.model.Hit;
+import ru.practicum.stats.model.HitCount;
+import ru.practicum.stats.model.HitMapper;
+import ru.practicum.stats.model.StatsMapper;
+import ru.practicum.stats.model.TrendWindow;
+import ru.practicum.stats.service.cache.StatsCache;
+import ru.practicum.stats.service.compaction.HitCompactor;
+import ru.practicum.stats.repository.SuppressedHitRepository;
+import ru.practicum.stats.service.dictionary.Dictionaries;
+import ru.practicum.stats.service.ingest.BulkHitSink;
+import ru.practicum.stats.service.ingest.HitDeduplicator;
+import ru.practicum.stats.service.ingest.HitIngestor;
+import ru.practicum.stats.service.parallel.ParallelStatsQuery;
+import ru.practicum.stats.service.storage.HitStore;
+import ru.practicum.stats.service.trending.TrendTracker;
+
+import javax.validation.Validator;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+@Service
+@RequiredArgsConstructor
+public class StatsServiceImpl implements StatsService {
+    private final HitMapper hitMapper;
+    private final HitIngestor hitIngestor;
+    private final Validator validator;
+    private final HitStore hitStore;
+    private final ObjectProvider<TrendTracker> trendTracker;
+    private final ObjectProvider<StatsCache> statsCache;
+    private final ObjectProvider<ParallelStatsQuery> parallelStatsQuery;
+    private final ObjectProvider<HitDeduplicator> hitDeduplicator;
+    private final ObjectProvider<HitCompactor> hitCompactor;
+    private final SuppressedHitRepository suppressedHitRepository;
+    private final Dictionaries dictionaries;
+    private final StatsMapper statsMapper;
+
+    @Value("${stats.ingest.batch-size:500}")
+    private int bulkChunkSize;
+
+    @Value("${stats.sketch.enabled:true}")
+    private boolean sketchEnabled;
+
+    @Override
+    public void addHit(HitDto hitDto) {
+        Hit hit = hitMapper.toHit(hitDto);
+        HitDeduplicator deduplicator = hitDeduplicator.getIfAvailable();
+        if (deduplicator == null) {
+            hitIngestor.ingest(hit);
+        } else if (!deduplicator.isDuplicate(hit)) {
+            hitIngestor.ingest(hit);
+            deduplicator.markSeen(hit);
+        }
+    }
+
+    @Override
+    public BulkHitSink openBulk() {
+        return new BulkHitSink(hitIngestor, hitMapper, validator, hitDeduplicator.getIfAvailable(), bulkChunkSize);
+    }
+
+    /**
+     * Checks the range and limit for every caller: the HTTP endpoints, the embedded transport and jobs.
+     * Only whole rollup buckets are left of compacted days: minutes for hits, hours for approximate
+     * unique hits and days for exact ones. A closed end inside them is read as the next second left
+     * out, which is the same range since hit times are whole seconds.
+     */
+    @Override
+    public void checkStats(StatsParams params) {
+        if (params.getStart() == null || params.getEnd() == null) {
+            throw new ValidationException("Start and end must be set");
+        }
+        if (params.getStart().isAfter(params.getEnd())) {
+            throw new ValidationException("Start must be before end");
+        }
+        if (params.getLimit() != null && params.getLimit() <= 0) {
+            throw new ValidationException("Limit must be positive");
+        }
+        LocalDateTime compactedBefore = compactedBefore();
+        if (compactedBefore == null) {
+            return;
+        }
+        Granularity granularity = !params.isUnique() ? Granularity.MINUTE
+                : params.isApproximate() && sketchEnabled ? Granularity.HOUR : Granularity.DAY;
+        StatsParams compacted = toCompacted(params, compactedBefore);
+        if (isInsideBucket(compacted.getStart(), granularity, compactedBefore)
+                || isInsideBucket(compacted.getEnd(), granularity, compactedBefore)) {
+            throw new ValidationException("Raw hits before " + compactedBefore + " are compacted, " +
+                    (params.isUnique() ? "unique " : "") + "hits can only be counted by whole " +
+                    granularity.name().toLowerCase() + "s there");
+        }
+    }
+
+    @Override
+    public void getStats(StatsParams params, Consumer<StatsDto> consumer) {
+        StatsParams compacted = toCompacted(params, compactedBefore());
+        ParallelStatsQuery parallel = parallelStatsQuery.getIfAvailable();
+        BiConsumer<StatsParams, Consumer<StatsDto>> source = parallel == null
+                ? hitStore::getStats
+                : (query, results) -> parallel.getStats(query, results, hitStore::getStats);
+        StatsCache cache = statsCache.getIfAvailable();
+        if (cache == null) {
+            source.accept(compacted, consumer);
+        } else {
+            cache.getStats(compacted, consumer, source);
+        }
+    }
+
+    @Override
+    public void getReport(StatsParams params, Consumer<StatsDto> consumer) {
+        hitStore.getStats(toCompacted(params, compactedBefore()).toBuilder().serial(true).build(), consumer);
+    }
+
+    /**
+     * Same rules as {@link #checkStats(StatsParams)}: series of hits need edges on whole minutes inside
+     * compacted days, and unique series can only be read by day there, between whole days.
+     */
+    @Override
+    public void checkTimeSeries(TimeSeriesParams params) {
+        LocalDateTime compactedBefore = compactedBefore();
+        if (compactedBefore == null) {
+            return;
+        }
+        if (params.isUnique() && params.getStep() != Granularity.DAY && params.getStart().isBefore(compactedBefore)) {
+            throw new ValidationException("Raw hits before " + compactedBefore + " are compacted, " +
+                    "unique hits can only be counted by day there");
+        }
+        Granularity granularity = params.isUnique() ? Granularity.DAY : Granularity.MINUTE;
+        TimeSeriesParams compacted = toCompacted(params, compactedBefore);
+        if (isInsideBucket(compacted.getStart(), granularity, compactedBefore)
+                || isInsideBucket(compacted.getEnd(), granularity, compactedBefore)) {
+            throw new ValidationException("Raw hits before " + compactedBefore + " are compacted, " +
+                    (params.isUnique() ? "unique " : "") + "hits can only be counted by whole " +
+                    granularity.name().toLowerCase() + "s there");
+        }
+    }
+
+    private LocalDateTime compactedBefore() {
+        HitCompactor compactor = hitCompactor.getIfAvailable();
+        return compactor == null ? null : compactor.getCompactedBefore();
+    }
+
+    private static StatsParams toCompacted(StatsParams params, LocalDateTime compactedBefore) {
+        if (compactedBefore == null || params.isEndExclusive() || !params.getEnd().isBefore(compactedBefore)) {
+            return params;
+        }
+        return params.toBuilder().end(params.getEnd().plusSeconds(1)).endExclusive(true).build();
+    }
+
+    private static TimeSeriesParams toCompacted(TimeSeriesParams params, LocalDateTime compactedBefore) {
+        if (compactedBefore == null || params.isEndExclusive() || !params.getEnd().isBefore(compactedBefore)) {
+            return params;
+        }
+        return params.toBuilder().end(params.getEnd().plusSeconds(1)).endExclusive(true).build();
+    }
+
+    private static boolean isInsideBucket(LocalDateTime time, Granularity granularity, LocalDateTime compactedBefore) {
+        return time.isBefore(compactedBefore) && !granularity.floor(time).equals(time);
+    }
+
+    @Override
+    public void getTimeSeries(TimeSeriesParams params, Consumer<TimeSeriesDto> consumer) {
+        hitStore.getTimeSeries(toCompacted(params, compactedBefore()), consumer);
+    }
+
+    @Override
+    public List<StatsDto> getTop(String app, TrendWindow window, int limit) {
+        TrendTracker tracker = trendTracker.getIfAvailable();
+        if (tracker == null) {
+            throw new ValidationException("Trending uris are disabled");
+        }
+        return tracker.top(app, window, limit);
+    }
+
+    @Override
+    public List<StatsDto> getSuppressed(LocalDateTime start, LocalDateTime end, String[] uris) {
+        HitDeduplicator deduplicator = hitDeduplicator.getIfAvailable();
+        if (deduplicator != null) {
+            deduplicator.flush();
+        }
+        Set<Integer> uriIds = uris == null || uris.length == 0 ? null : dictionaries.findUriIds(Arrays.asList(uris));
+        if (uriIds != null && uriIds.isEmpty()) {
+            return List.of();
+        }
+        List<HitCount> counts = new ArrayList<>();
+        suppressedHitRepository.findSuppressed(Granularity.HOUR.floor(start), end, uriIds, counts::add);
+        return statsMapper.toStatsDto(counts);
+    }
+}
@@ -0,0 +1,294 @@
+package ru.practicum.stats.service.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.practicum.StatsDto;
+import ru.practicum.stats.controller.params.StatsParams;
+import ru.practicum.stats.model.Granularity;
+import ru.practicum.stats.model.Hit;
+import ru.practicum.stats.model.UriPattern;
+import ru.practicum.stats.service.ingest.HitIngestListener;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * LRU cache of /stats results. Range ends that fall into the current granularity bucket or
+ * later are rounded up to the end of their bucket, so repeated "until now" queries share an
+ * entry. Plain hit counts are patched with every ingested hit; unique and limited results
+ * cannot be patched and are dropped once a matching hit arrives. A result is only cached if
+ * no batch of matching hits was being written while it was computed, since it could not tell
+ * whether the result already holds them; every cached entry thus holds exactly the matching
+ * hits stored before it, and is patched with the ones after. Entries also expire after a ttl.
+ */
+@Component
+@ConditionalOnProperty(name = "stats.cache.enabled", havingValue = "true")
+public class StatsCache implements HitIngestListener {
+    private final Granularity granularity;
+    private final int maxEntrySize;
+    private final long ttlNanos;
+    private final Map<Key, Entry> entries;
+    private final List<List<Hit>> writing = new ArrayList<>();
+    private final Set<Computation> computations = new HashSet<>();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Counter invalidations;
+
+    public StatsCache(MeterRegistry meterRegistry,
+                      @Value("${stats.cache.granularity:MINUTE}") Granularity granularity,
+                      @Value("${stats.cache.max-entries:1000}") int maxEntries,
+                      @Value("${stats.cache.max-entry-size:10000}") int maxEntrySize,
+                      @Value("${stats.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.granularity = granularity;
+        this.maxEntrySize = maxEntrySize;
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+        this.hits = meterRegistry.counter("stats.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("stats.cache.requests", "result", "miss");
+        this.evictions = meterRegistry.counter("stats.cache.evictions");
+        this.invalidations = meterRegistry.counter("stats.cache.invalidations");
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        Gauge.builder("stats.cache.size", this, StatsCache::entryCount).register(meterRegistry);
+    }
+
+    /**
+     * Serves the query from the cache, or runs it through the source and caches the result
+     * unless it is larger than the entry size limit or matching hits were written meanwhile.
+     */
+    public void getStats(StatsParams params, Consumer<StatsDto> consumer,
+                         BiConsumer<StatsParams, Consumer<StatsDto>> source) {
+        StatsParams normalized = normalize(params);
+        Key key = new Key(normalized.getStart(), normalized.getEnd(), normalized.isEndExclusive(),
+                normalized.getUris() == null ? null : Arrays.asList(normalized.getUris()),
+                normalized.isUnique(), normalized.isApproximate(), normalized.isAggregate(), normalized.getLimit());
+        List<StatsDto> cached = find(key);
+        if (cached != null) {
+            hits.increment();
+            cached.forEach(consumer);
+            return;
+        }
+        misses.increment();
+
+        Computation computation = start(key);
+        List<StatsDto> collected = new ArrayList<>();
+        boolean[] overflow = {false};
+        try {
+            source.accept(normalized, stats -> {
+                if (overflow[0]) {
+                    consumer.accept(stats);
+                    return;
+                }
+                collected.add(stats);
+                if (collected.size() > maxEntrySize) {
+                    overflow[0] = true;
+                    collected.forEach(consumer);
+                }
+            });
+        } finally {
+            synchronized (entries) {
+                computations.remove(computation);
+            }
+        }
+        if (overflow[0]) {
+            return;
+        }
+        collected.forEach(consumer);
+        synchronized (entries) {
+            if (!computation.dirty) {
+                entries.put(key, new Entry(key, collected, System.nanoTime()));
+            }
+        }
+    }
+
+    @Override
+    public void beforeWrite(List<Hit> hits) {
+        synchronized (entries) {
+            writing.add(hits);
+            for (Computation computation : computations) {
+                if (computation.key.matchesAny(hits)) {
+                    computation.dirty = true;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onDiscard(List<Hit> hits) {
+        synchronized (entries) {
+            writing.removeIf(batch -> batch == hits);
+        }
+    }
+
+    @Override
+    public void onIngest(List<Hit> ingested) {
+        synchronized (entries) {
+            writing.removeIf(batch -> batch == ingested);
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (!entry.apply(ingested)) {
+                    iterator.remove();
+                    invalidations.increment();
+                }
+            }
+        }
+    }
+
+    private Computation start(Key key) {
+        synchronized (entries) {
+            Computation computation = new Computation(key);
+            computation.dirty = writing.stream().anyMatch(key::matchesAny);
+            computations.add(computation);
+            return computation;
+        }
+    }
+
+    private List<StatsDto> find(Key key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (System.nanoTime() - entry.createdAt > ttlNanos) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.snapshot();
+        }
+    }
+
+    private StatsParams normalize(StatsParams params) {
+        LocalDateTime end = params.getEnd();
+        if (!end.isBefore(granularity.floor(LocalDateTime.now()))) {
+            end = granularity.ceil(end.plusSeconds(1)).minusSeconds(1);
+        }
+        String[] uris = params.getUris() == null ? null : new TreeSet<>(Arrays.asList(params.getUris()))
+                .toArray(String[]::new);
+        return params.toBuilder()
+                .end(end)
+                .uris(uris)
+                .build();
+    }
+
+    private int entryCount() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static class Key {
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final boolean endExclusive;
+        private final List<String> uris;
+        private final boolean unique;
+        private final boolean approximate;
+        private final boolean aggregate;
+        private final Integer limit;
+
+        boolean covers(LocalDateTime time) {
+            return !time.isBefore(start) && (endExclusive ? time.isBefore(end) : !time.isAfter(end));
+        }
+
+        boolean matchesAny(List<Hit> hits) {
+            return hits.stream().anyMatch(hit -> covers(hit.getTimestamp()) && (uris == null
+                    || uris.stream().anyMatch(pattern -> UriPattern.matches(pattern, hit.getUri()))));
+        }
+    }
+
+    private static class Computation {
+        private final Key key;
+        private boolean dirty;
+
+        Computation(Key key) {
+            this.key = key;
+        }
+    }
+
+    private static class Entry {
+        private final Key key;
+        private final List<String> patterns;
+        private final Map<String, Map<String, StatsDto>> rows = new LinkedHashMap<>();
+        private final long createdAt;
+
+        Entry(Key key, List<StatsDto> stats, long createdAt) {
+            this.key = key;
+            this.patterns = key.uris == null && key.aggregate ? List.of(UriPattern.ANY) : key.uris;
+            this.createdAt = createdAt;
+            for (StatsDto dto : stats) {
+                rows.computeIfAbsent(dto.getApp(), app -> new HashMap<>())
+                        .put(dto.getUri(), new StatsDto(dto.getApp(), dto.getUri(), dto.getHits()));
+            }
+        }
+
+        /**
+         * Adds matching hits to the counts; returns false when the entry cannot be patched.
+         */
+        boolean apply(List<Hit> hits) {
+            for (Hit hit : hits) {
+                if (!key.covers(hit.getTimestamp())) {
+                    continue;
+                }
+                List<String> labels = List.of(hit.getUri());
+                if (patterns != null) {
+                    List<String> matched = patterns.stream()
+                            .filter(pattern -> UriPattern.matches(pattern, hit.getUri()))
+                            .collect(Collectors.toList());
+                    if (matched.isEmpty()) {
+                        continue;
+                    }
+                    if (key.aggregate) {
+                        labels = matched;
+                    }
+                }
+                if (key.unique || key.limit != null) {
+                    return false;
+                }
+                for (String label : labels) {
+                    StatsDto row = rows.computeIfAbsent(hit.getApp(), app -> new HashMap<>())
+                            .computeIfAbsent(label, uri -> new StatsDto(hit.getApp(), uri, 0));
+                    row.setHits(row.getHits() + 1);
+                }
+            }
+            return true;
+        }
+
+        List<StatsDto> snapshot() {
+            return rows.values().stream()
+                    .flatMap(byUri -> byUri.values().stream())
+                    .map(dto -> new StatsDto(dto.getApp(), dto.getUri(), dto.getHits()))
+                    .sorted(Comparator.comparingLong(StatsDto::getHits).reversed())
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package ru.practicum.stats.service.compaction;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.model.CompactionProgress;
+import ru.practicum.stats.model.Granularity;
+import ru.practicum.stats.repository.CompactionRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Deletes raw hits older than the given number of days, oldest day first and in chunks of one
+ * transaction each. Hits are already rolled up into per-minute, hour and day counts and daily
+ * IP bitmaps as they are written, so stats over compacted days keep coming from those; queries
+ * with range edges finer than the aggregates there, e.g. unique hits of part of a compacted day,
+ * are rejected. A day is marked compacted before its first chunk is deleted, so it is never read
+ * from partly deleted raw hits. Progress is kept in the database after every chunk, so a run cut
+ * short by a crash or a restart just carries on from the oldest raw hit left on the next run.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "stats.compaction.enabled", havingValue = "true")
+public class HitCompactor {
+    private final CompactionRepository compactionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter deletedCounter;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean stopping;
+    private volatile LocalDateTime compactedBefore;
+
+    @Value("${stats.compaction.age-days:30}")
+    private int ageDays;
+
+    @Value("${stats.compaction.batch-size:10000}")
+    private int batchSize;
+
+    @Value("${stats.storage:jdbc}")
+    private String storage;
+
+    @Value("${stats.rollup.enabled:true}")
+    private boolean rollupEnabled;
+
+    @Value("${stats.bitmap.enabled:true}")
+    private boolean bitmapEnabled;
+
+    public HitCompactor(CompactionRepository compactionRepository,
+                        TransactionTemplate transactionTemplate,
+                        MeterRegistry meterRegistry) {
+        this.compactionRepository = compactionRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.deletedCounter = meterRegistry.counter("stats.compaction.hits");
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!"jdbc".equals(storage) || !rollupEnabled || !bitmapEnabled) {
+            throw new IllegalStateException("Compaction of raw hits needs jdbc storage with rollups and bitmaps enabled");
+        }
+        CompactionProgress progress = compactionRepository.findProgress();
+        compactedBefore = progress.getCompactedBefore();
+        if (progress.getCurrentDay() != null) {
+            log.info("Compaction of {} was interrupted, it will be resumed on the next run", progress.getCurrentDay());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopping = true;
+    }
+
+    /**
+     * Returns the time before which raw hits are deleted or being deleted and no longer read, or null
+     * if nothing was compacted yet.
+     */
+    public LocalDateTime getCompactedBefore() {
+        return compactedBefore;
+    }
+
+    @Scheduled(cron = "${stats.compaction.cron:0 30 * * * *}")
+    public void compact() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            LocalDateTime cutoff = LocalDate.now().minusDays(ageDays).atStartOfDay();
+            long total = 0;
+            Optional<LocalDateTime> oldest;
+            while (!stopping && (oldest = compactionRepository.findOldestHitBefore(cutoff)).isPresent()) {
+                LocalDateTime day = Granularity.DAY.floor(oldest.get());
+                LocalDateTime next = day.plusDays(1);
+                markCompactedBefore(next);
+                int deleted;
+                do {
+                    deleted = transactionTemplate.execute(status ->
+                            compactionRepository.deleteHits(day, next, batchSize));
+                    deletedCounter.increment(deleted);
+                    total += deleted;
+                } while (deleted == batchSize && !stopping);
+                if (!stopping) {
+                    log.debug("Compacted raw hits of {}", day.toLocalDate());
+                }
+            }
+            if (!stopping) {
+                markCompactedBefore(cutoff);
+            }
+            if (total > 0) {
+                log.info("Deleted {} raw hits before {}", total, cutoff);
+            }
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void markCompactedBefore(LocalDateTime before) {
+        compactionRepository.markCompactedBefore(before);
+        compactedBefore = compactionRepository.findProgress().getCompactedBefore();
+    }
+}
@@ -0,0 +1,97 @@
+package ru.practicum.stats.service.dictionary;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.index.UriTrie;
+import ru.practicum.stats.model.Hit;
+import ru.practicum.stats.model.UriPattern;
+import ru.practicum.stats.repository.DictionaryRepository;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Component
+public class Dictionaries {
+    private static final String URI_TABLE = "dict_uri";
+    private final Dictionary apps;
+    private final Dictionary uris;
+    private final Dictionary ips;
+    private final UriTrie uriTrie = new UriTrie();
+    private final DictionaryRepository dictionaryRepository;
+
+    public Dictionaries(DictionaryRepository dictionaryRepository,
+                        PlatformTransactionManager transactionManager,
+                        @Value("${stats.dictionary.cache-size:100000}") int cacheSize) {
+        this.dictionaryRepository = dictionaryRepository;
+        TransactionTemplate nonTransactional = new TransactionTemplate(transactionManager);
+        nonTransactional.setPropagationBehavior(TransactionDefinition.PROPAGATION_NOT_SUPPORTED);
+        this.apps = new Dictionary("dict_app", dictionaryRepository, nonTransactional, cacheSize);
+        this.uris = new Dictionary(URI_TABLE, dictionaryRepository, nonTransactional, cacheSize);
+        this.ips = new Dictionary("dict_ip", dictionaryRepository, nonTransactional, cacheSize);
+    }
+
+    @PostConstruct
+    public void loadUriTrie() {
+        dictionaryRepository.forEach(URI_TABLE, (id, uri) -> uriTrie.add(uri, id));
+    }
+
+    public Dictionary apps() {
+        return apps;
+    }
+
+    public Dictionary uris() {
+        return uris;
+    }
+
+    public Dictionary ips() {
+        return ips;
+    }
+
+    /**
+     * Fills dictionary ids of the given hits from their app, uri and ip.
+     */
+    public void encode(List<Hit> hits) {
+        Map<String, Integer> appIds = apps.idsOf(distinct(hits, Hit::getApp));
+        Map<String, Integer> uriIds = uris.idsOf(distinct(hits, Hit::getUri));
+        uriIds.forEach(uriTrie::add);
+        Map<String, Integer> ipIds = ips.idsOf(distinct(hits, Hit::getIp));
+        for (Hit hit : hits) {
+            hit.setAppId(appIds.get(hit.getApp()));
+            hit.setUriId(uriIds.get(hit.getUri()));
+            hit.setIpId(ipIds.get(hit.getIp()));
+        }
+    }
+
+    /**
+     * Returns ids of known uris matching any of the patterns; see {@link UriPattern}.
+     */
+    public Set<Integer> findUriIds(Collection<String> patterns) {
+        Set<Integer> ids = new HashSet<>();
+        List<String> exact = new ArrayList<>();
+        for (String pattern : patterns) {
+            if (UriPattern.isPrefix(pattern)) {
+                ids.addAll(uriTrie.findByPrefix(UriPattern.prefix(pattern)));
+            } else {
+                exact.add(pattern);
+            }
+        }
+        if (!exact.isEmpty()) {
+            ids.addAll(uris.findIdsOf(exact).values());
+        }
+        return ids;
+    }
+
+    private static Collection<String> distinct(List<Hit> hits, Function<Hit, String> field) {
+        return hits.stream().map(field).collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,133 @@
+package ru.practicum.stats.service.dictionary;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.repository.DictionaryRepository;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps strings to dense int ids stored in a dictionary table. New values are inserted
+ * outside of the caller's transaction, so a cached id is always committed and is never
+ * rolled back together with the hits that use it.
+ */
+public class Dictionary {
+    private final String table;
+    private final DictionaryRepository dictionaryRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<String, Integer> ids;
+    private final Map<Integer, String> names;
+
+    public Dictionary(String table, DictionaryRepository dictionaryRepository,
+                      TransactionTemplate transactionTemplate, int cacheSize) {
+        this.table = table;
+        this.dictionaryRepository = dictionaryRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.ids = lruCache(cacheSize);
+        this.names = lruCache(cacheSize);
+    }
+
+    /**
+     * Returns ids of the given names, adding the missing ones to the dictionary.
+     */
+    public Map<String, Integer> idsOf(Collection<String> values) {
+        return lookup(values, true);
+    }
+
+    /**
+     * Returns ids of the given names that are already in the dictionary.
+     */
+    public Map<String, Integer> findIdsOf(Collection<String> values) {
+        return lookup(values, false);
+    }
+
+    public Map<Integer, String> namesOf(Collection<Integer> keys) {
+        Map<Integer, String> result = new HashMap<>();
+        Set<Integer> missing = new HashSet<>();
+        synchronized (names) {
+            for (Integer key : keys) {
+                String name = names.get(key);
+                if (name == null) {
+                    missing.add(key);
+                } else {
+                    result.put(key, name);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        Map<Integer, String> resolved = dictionaryRepository.findNames(table, missing);
+        cache(resolved);
+        result.putAll(resolved);
+        return result;
+    }
+
+    private Map<String, Integer> lookup(Collection<String> values, boolean create) {
+        Map<String, Integer> result = new HashMap<>();
+        Set<String> missing = new HashSet<>();
+        synchronized (ids) {
+            for (String value : values) {
+                Integer id = ids.get(value);
+                if (id == null) {
+                    missing.add(value);
+                } else {
+                    result.put(value, id);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        Map<String, Integer> resolved = create
+                ? transactionTemplate.execute(status -> resolve(missing))
+                : dictionaryRepository.findIds(table, missing);
+        Map<Integer, String> inverse = new HashMap<>();
+        resolved.forEach((name, id) -> inverse.put(id, name));
+        cache(inverse);
+        result.putAll(resolved);
+        return result;
+    }
+
+    private Map<String, Integer> resolve(Set<String> values) {
+        Map<String, Integer> found = dictionaryRepository.findIds(table, values);
+        if (found.size() == values.size()) {
+            return found;
+        }
+        for (String value : values) {
+            if (!found.containsKey(value)) {
+                try {
+                    dictionaryRepository.insert(table, value);
+                } catch (DuplicateKeyException e) {
+                    // inserted concurrently, the id is read below
+                }
+            }
+        }
+        return dictionaryRepository.findIds(table, values);
+    }
+
+    private void cache(Map<Integer, String> entries) {
+        synchronized (ids) {
+            entries.forEach((id, name) -> ids.put(name, id));
+        }
+        synchronized (names) {
+            names.putAll(entries);
+        }
+    }
+
+    private static <K, V> Map<K, V> lruCache(int maxSize) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+}
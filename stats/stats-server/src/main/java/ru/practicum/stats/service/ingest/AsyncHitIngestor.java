@@ -0,0 +1,205 @@
+package ru.practicum.stats.service.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.exception.IngestOverflowException;
+import ru.practicum.stats.model.Hit;
+import ru.practicum.stats.service.storage.HitStore;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "stats.ingest.async", havingValue = "true")
+public class AsyncHitIngestor implements HitIngestor {
+    private final HitStore hitStore;
+    private final List<HitIngestListener> listeners;
+    private final BlockingQueue<Hit> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final OverflowPolicy overflowPolicy;
+    private final int retryAttempts;
+    private final long retryBackoffMillis;
+    private final Timer flushTimer;
+    private final Counter flushedCounter;
+    private final Counter droppedCounter;
+    private final Counter rejectedCounter;
+    private final Counter failedCounter;
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    public AsyncHitIngestor(HitStore hitStore,
+                            ObjectProvider<HitIngestListener> listeners,
+                            MeterRegistry meterRegistry,
+                            @Value("${stats.ingest.queue-capacity:10000}") int queueCapacity,
+                            @Value("${stats.ingest.batch-size:500}") int batchSize,
+                            @Value("${stats.ingest.flush-interval-ms:1000}") long flushIntervalMillis,
+                            @Value("${stats.ingest.overflow-policy:REJECT}") OverflowPolicy overflowPolicy,
+                            @Value("${stats.ingest.retry-attempts:5}") int retryAttempts,
+                            @Value("${stats.ingest.retry-backoff-ms:200}") long retryBackoffMillis) {
+        this.hitStore = hitStore;
+        this.listeners = listeners.orderedStream().collect(Collectors.toList());
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.overflowPolicy = overflowPolicy;
+        this.retryAttempts = Math.max(1, retryAttempts);
+        this.retryBackoffMillis = retryBackoffMillis;
+        this.flushTimer = meterRegistry.timer("stats.ingest.flush");
+        this.flushedCounter = meterRegistry.counter("stats.ingest.hits", "result", "flushed");
+        this.droppedCounter = meterRegistry.counter("stats.ingest.hits", "result", "dropped");
+        this.rejectedCounter = meterRegistry.counter("stats.ingest.hits", "result", "rejected");
+        this.failedCounter = meterRegistry.counter("stats.ingest.hits", "result", "failed");
+        Gauge.builder("stats.ingest.queue.depth", queue, BlockingQueue::size).register(meterRegistry);
+        this.writerThread = new Thread(this::run, "hit-writer");
+    }
+
+    @PostConstruct
+    public void start() {
+        writerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writerThread.join();
+    }
+
+    @Override
+    public void ingest(Hit hit) {
+        if (queue.offer(hit)) {
+            return;
+        }
+        switch (overflowPolicy) {
+            case DROP_NEWEST:
+                droppedCounter.increment();
+                break;
+            case DROP_OLDEST:
+                while (!queue.offer(hit)) {
+                    if (queue.poll() != null) {
+                        droppedCounter.increment();
+                    }
+                }
+                break;
+            default:
+                rejectedCounter.increment();
+                throw new IngestOverflowException("Hit queue is full, try again later");
+        }
+    }
+
+    @Override
+    public int ingestAll(List<Hit> hits) {
+        for (int i = 0; i < hits.size(); i++) {
+            try {
+                ingest(hits.get(i));
+            } catch (IngestOverflowException e) {
+                rejectedCounter.increment(hits.size() - i - 1);
+                return i;
+            }
+        }
+        return hits.size();
+    }
+
+    private void run() {
+        List<Hit> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                fillBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+            }
+        }
+    }
+
+    private void fillBatch(List<Hit> batch) throws InterruptedException {
+        Hit first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) {
+                return;
+            }
+            Hit next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    /**
+     * Writes the batch, retrying with a doubling backoff, as the hits were already acknowledged
+     * to the client. New hits meanwhile wait in the queue under the overflow policy. A batch that
+     * still fails after the last attempt is counted as failed and dropped.
+     */
+    private void flush(List<Hit> batch) {
+        try {
+            listeners.forEach(listener -> listener.beforeWrite(batch));
+            long backoff = retryBackoffMillis;
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    flushTimer.record(() -> hitStore.write(batch));
+                    break;
+                } catch (RuntimeException e) {
+                    if (attempt >= retryAttempts) {
+                        log.error("Failed to write {} hits after {} attempts", batch.size(), attempt, e);
+                        discard(batch);
+                        return;
+                    }
+                    log.warn("Failed to write {} hits, retrying in {} ms: {}", batch.size(), backoff, e.getMessage());
+                    if (!sleep(backoff)) {
+                        discard(batch);
+                        return;
+                    }
+                    backoff *= 2;
+                }
+            }
+            flushedCounter.increment(batch.size());
+            try {
+                listeners.forEach(listener -> listener.onIngest(batch));
+            } catch (RuntimeException e) {
+                log.error("Failed to pass {} stored hits to listeners", batch.size(), e);
+            }
+        } finally {
+            batch.clear();
+        }
+    }
+
+    private void discard(List<Hit> batch) {
+        failedCounter.increment(batch.size());
+        listeners.forEach(listener -> listener.onDiscard(batch));
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
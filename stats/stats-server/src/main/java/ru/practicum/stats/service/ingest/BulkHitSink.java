@@ -0,0 +1,108 @@
+package ru.practicum.stats.service.ingest;
+
+import ru.practicum.BulkHitResultDto;
+import ru.practicum.HitDto;
+import ru.practicum.RejectedHitDto;
+import ru.practicum.stats.model.Hit;
+import ru.practicum.stats.model.HitMapper;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Collects hits of a single bulk request, validates them one by one and hands them
+ * to the ingestor in chunks, so that the request body never has to be held in memory.
+ */
+public class BulkHitSink {
+    private final HitIngestor hitIngestor;
+    private final HitMapper hitMapper;
+    private final Validator validator;
+    private final HitDeduplicator hitDeduplicator;
+    private final int chunkSize;
+    private final List<Hit> chunk;
+    private final List<Long> chunkIndexes;
+    private final Set<Long> chunkKeys = new HashSet<>();
+    private final List<RejectedHitDto> rejected = new ArrayList<>();
+    private long accepted;
+    private long index;
+
+    /**
+     * The deduplicator may be null; hits it drops are counted as accepted. Hits are recorded with it
+     * once ingested, and a chunk is handed on early when a hit repeats one still in it, so that the
+     * repeat is checked against the recorded hit.
+     */
+    public BulkHitSink(HitIngestor hitIngestor, HitMapper hitMapper, Validator validator,
+                       HitDeduplicator hitDeduplicator, int chunkSize) {
+        this.hitIngestor = hitIngestor;
+        this.hitMapper = hitMapper;
+        this.validator = validator;
+        this.hitDeduplicator = hitDeduplicator;
+        this.chunkSize = chunkSize;
+        this.chunk = new ArrayList<>(chunkSize);
+        this.chunkIndexes = new ArrayList<>(chunkSize);
+    }
+
+    public void accept(HitDto hitDto) {
+        Set<ConstraintViolation<HitDto>> violations = validator.validate(hitDto);
+        if (!violations.isEmpty()) {
+            reject(violations.stream()
+                    .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+            return;
+        }
+        Hit hit = hitMapper.toHit(hitDto);
+        if (hitDeduplicator != null) {
+            long key = hitDeduplicator.hash(hit);
+            if (chunkKeys.contains(key)) {
+                flush();
+            }
+            if (hitDeduplicator.isDuplicate(hit)) {
+                accepted++;
+                index++;
+                return;
+            }
+            chunkKeys.add(key);
+        }
+        chunk.add(hit);
+        chunkIndexes.add(index++);
+        if (chunk.size() >= chunkSize) {
+            flush();
+        }
+    }
+
+    public void reject(String reason) {
+        rejected.add(new RejectedHitDto(index++, reason));
+    }
+
+    public BulkHitResultDto finish() {
+        flush();
+        return new BulkHitResultDto(accepted, rejected);
+    }
+
+    private void flush() {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        int ingested = hitIngestor.ingestAll(chunk);
+        accepted += ingested;
+        if (hitDeduplicator != null) {
+            chunk.subList(0, ingested).forEach(hitDeduplicator::markSeen);
+        }
+        for (int i = ingested; i < chunk.size(); i++) {
+            rejected.add(new RejectedHitDto(chunkIndexes.get(i), "Hit queue is full, try again later"));
+        }
+        if (ingested < chunk.size()) {
+            rejected.sort(Comparator.comparingLong(RejectedHitDto::getIndex));
+        }
+        chunk.clear();
+        chunkIndexes.clear();
+        chunkKeys.clear();
+    }
+}
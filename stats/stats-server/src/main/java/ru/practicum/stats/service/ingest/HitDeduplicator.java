@@ -0,0 +1,134 @@
+package ru.practicum.stats.service.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.model.Granularity;
+import ru.practicum.stats.model.Hit;
+import ru.practicum.stats.model.RollupKey;
+import ru.practicum.stats.repository.SuppressedHitRepository;
+import ru.practicum.stats.service.dictionary.Dictionaries;
+import ru.practicum.stats.sketch.Hashing;
+import ru.practicum.stats.sketch.RotatingBloomFilter;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Drops hits of the same app, uri and ip that come less than the window apart, as crawlers and
+ * page refreshes send them. Hits are matched by their own timestamps in a {@link RotatingBloomFilter},
+ * so memory stays bounded and a few distinct hits may be dropped as well once the filter fills up.
+ * Dropped hits are counted per app, uri and hour, written out now and then, and can be added back
+ * to get raw totals. A hit is only recorded as seen once it has been ingested, so a hit refused by
+ * a full ingest queue is taken when it is sent again; the same hit arriving twice at the same moment
+ * may get through both times.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "stats.dedup.enabled", havingValue = "true")
+public class HitDeduplicator {
+    private final RotatingBloomFilter filter;
+    private final long bucketMillis;
+    private final SuppressedHitRepository suppressedHitRepository;
+    private final Dictionaries dictionaries;
+    private final Counter suppressedCounter;
+    private Map<SuppressedKey, Long> pending = new HashMap<>();
+
+    public HitDeduplicator(SuppressedHitRepository suppressedHitRepository,
+                           Dictionaries dictionaries,
+                           MeterRegistry meterRegistry,
+                           @Value("${stats.dedup.window-seconds:10}") long windowSeconds,
+                           @Value("${stats.dedup.slices:10}") int slices,
+                           @Value("${stats.dedup.bits-per-slice:1048576}") int bitsPerSlice) {
+        this.filter = new RotatingBloomFilter(slices, bitsPerSlice);
+        this.bucketMillis = Math.max(1, windowSeconds * 1000 / slices);
+        this.suppressedHitRepository = suppressedHitRepository;
+        this.dictionaries = dictionaries;
+        this.suppressedCounter = meterRegistry.counter("stats.ingest.hits", "result", "suppressed");
+        log.info("Dropping duplicate hits within {} s", windowSeconds);
+    }
+
+    /**
+     * Returns true if the hit repeats one seen within the window, counting it as suppressed. The hit
+     * itself is not recorded; pass it to {@link #markSeen(Hit)} once it has been ingested.
+     */
+    public boolean isDuplicate(Hit hit) {
+        if (!filter.mightContain(hash(hit), bucket(hit))) {
+            return false;
+        }
+        SuppressedKey key = new SuppressedKey(Granularity.HOUR.floor(hit.getTimestamp()), hit.getApp(), hit.getUri());
+        synchronized (this) {
+            pending.merge(key, 1L, Long::sum);
+        }
+        suppressedCounter.increment();
+        return true;
+    }
+
+    public void markSeen(Hit hit) {
+        filter.add(hash(hit), bucket(hit));
+    }
+
+    /**
+     * Hash of the app, uri and ip of the hit, the fields that make two hits the same.
+     */
+    public long hash(Hit hit) {
+        return Hashing.hash64((hit.getApp() + '\0' + hit.getUri() + '\0' + hit.getIp())
+                .getBytes(StandardCharsets.UTF_8));
+    }
+
+    private long bucket(Hit hit) {
+        return hit.getTimestamp().toInstant(ZoneOffset.UTC).toEpochMilli() / bucketMillis;
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${stats.dedup.flush-interval-ms:10000}")
+    public void flush() {
+        Map<SuppressedKey, Long> counts;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            counts = pending;
+            pending = new HashMap<>();
+        }
+        Map<String, Integer> appIds = dictionaries.apps().idsOf(distinct(counts, SuppressedKey::getApp));
+        Map<String, Integer> uriIds = dictionaries.uris().idsOf(distinct(counts, SuppressedKey::getUri));
+        Map<RollupKey, Long> rows = new HashMap<>();
+        counts.forEach((key, hits) -> rows.merge(
+                new RollupKey(key.getBucket(), appIds.get(key.getApp()), uriIds.get(key.getUri())), hits, Long::sum));
+        try {
+            suppressedHitRepository.increment(rows);
+        } catch (RuntimeException e) {
+            log.warn("Could not write suppressed hit counts, retrying later: {}", e.getMessage());
+            synchronized (this) {
+                counts.forEach((key, hits) -> pending.merge(key, hits, Long::sum));
+            }
+        }
+    }
+
+    private static Set<String> distinct(Map<SuppressedKey, Long> counts,
+                                        Function<SuppressedKey, String> field) {
+        return counts.keySet().stream().map(field).collect(Collectors.toSet());
+    }
+
+    @Data
+    @AllArgsConstructor
+    private static class SuppressedKey {
+        private LocalDateTime bucket;
+        private String app;
+        private String uri;
+    }
+}
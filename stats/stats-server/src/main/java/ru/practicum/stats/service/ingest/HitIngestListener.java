@@ -0,0 +1,22 @@
+package ru.practicum.stats.service.ingest;
+
+import ru.practicum.stats.model.Hit;
+
+import java.util.List;
+
+/**
+ * Receives every batch of hits once it has been stored, whichever storage engine is used.
+ */
+public interface HitIngestListener {
+    /**
+     * Called before a batch is written; followed by {@link #onIngest} once it is stored, or by
+     * {@link #onDiscard} if it could not be.
+     */
+    default void beforeWrite(List<Hit> hits) {
+    }
+
+    void onIngest(List<Hit> hits);
+
+    default void onDiscard(List<Hit> hits) {
+    }
+}
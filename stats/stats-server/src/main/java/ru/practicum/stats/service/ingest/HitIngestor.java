@@ -0,0 +1,16 @@
+package ru.practicum.stats.service.ingest;
+
+import ru.practicum.stats.model.Hit;
+
+import java.util.List;
+
+public interface HitIngestor {
+    void ingest(Hit hit);
+
+    /**
+     * Ingests hits in order and stops at the first one that cannot be accepted.
+     *
+     * @return number of leading hits that were accepted
+     */
+    int ingestAll(List<Hit> hits);
+}
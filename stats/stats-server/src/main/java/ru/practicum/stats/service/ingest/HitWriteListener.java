@@ -0,0 +1,12 @@
+package ru.practicum.stats.service.ingest;
+
+import ru.practicum.stats.model.Hit;
+
+import java.util.List;
+
+/**
+ * Receives every batch of hits inside the transaction that stores it.
+ */
+public interface HitWriteListener {
+    void onWrite(List<Hit> hits);
+}
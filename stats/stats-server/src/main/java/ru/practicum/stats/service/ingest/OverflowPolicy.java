@@ -0,0 +1,7 @@
+package ru.practicum.stats.service.ingest;
+
+public enum OverflowPolicy {
+    REJECT,
+    DROP_NEWEST,
+    DROP_OLDEST
+}
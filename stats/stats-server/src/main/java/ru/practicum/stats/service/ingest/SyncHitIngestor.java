@@ -0,0 +1,40 @@
+package ru.practicum.stats.service.ingest;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.model.Hit;
+import ru.practicum.stats.service.storage.HitStore;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Component
+@ConditionalOnProperty(name = "stats.ingest.async", havingValue = "false", matchIfMissing = true)
+public class SyncHitIngestor implements HitIngestor {
+    private final HitStore hitStore;
+    private final List<HitIngestListener> listeners;
+
+    public SyncHitIngestor(HitStore hitStore, ObjectProvider<HitIngestListener> listeners) {
+        this.hitStore = hitStore;
+        this.listeners = listeners.orderedStream().collect(Collectors.toList());
+    }
+
+    @Override
+    public void ingest(Hit hit) {
+        ingestAll(List.of(hit));
+    }
+
+    @Override
+    public int ingestAll(List<Hit> hits) {
+        listeners.forEach(listener -> listener.beforeWrite(hits));
+        try {
+            hitStore.write(hits);
+        } catch (RuntimeException e) {
+            listeners.forEach(listener -> listener.onDiscard(hits));
+            throw e;
+        }
+        listeners.forEach(listener -> listener.onIngest(hits));
+        return hits.size();
+    }
+}
@@ -0,0 +1,66 @@
+package ru.practicum.stats.service.job;
+
+import lombok.Getter;
+import ru.practicum.StatsDto;
+import ru.practicum.StatsJobDto;
+import ru.practicum.stats.controller.params.StatsParams;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+@Getter
+class StatsJob {
+    private final String id;
+    private final StatsParams params;
+    private final LocalDateTime submitted = LocalDateTime.now();
+    private final List<StatsDto> results = new ArrayList<>();
+    private volatile StatsJobDto.Status status = StatsJobDto.Status.QUEUED;
+    private volatile LocalDateTime finished;
+    private volatile String error;
+    private volatile Future<?> future;
+
+    StatsJob(String id, StatsParams params) {
+        this.id = id;
+        this.params = params;
+    }
+
+    void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    synchronized boolean start() {
+        if (status != StatsJobDto.Status.QUEUED) {
+            return false;
+        }
+        status = StatsJobDto.Status.RUNNING;
+        return true;
+    }
+
+    synchronized void finish(StatsJobDto.Status result, String message) {
+        if (status == StatsJobDto.Status.CANCELLED) {
+            results.clear();
+            return;
+        }
+        status = result;
+        error = message;
+        finished = LocalDateTime.now();
+    }
+
+    synchronized void cancel() {
+        if (finished != null) {
+            return;
+        }
+        status = StatsJobDto.Status.CANCELLED;
+        finished = LocalDateTime.now();
+        if (future != null) {
+            future.cancel(true);
+        }
+    }
+
+    StatsJobDto toDto() {
+        return new StatsJobDto(id, status, submitted, finished,
+                status == StatsJobDto.Status.DONE ? results.size() : 0, error);
+    }
+}
@@ -0,0 +1,132 @@
+package ru.practicum.stats.service.job;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.StatsDto;
+import ru.practicum.StatsJobDto;
+import ru.practicum.stats.controller.params.StatsParams;
+import ru.practicum.stats.exception.NotFoundException;
+import ru.practicum.stats.exception.TooManyJobsException;
+import ru.practicum.stats.exception.ValidationException;
+import ru.practicum.stats.service.StatsService;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs stats queries too large for a request in the background. Jobs run on a small pool of
+ * low priority threads with a bounded queue and each job reads on its own thread only, so reports
+ * can only take a few connections away from /hit and /stats. Results are kept in memory until the
+ * job expires.
+ */
+@Component
+@Slf4j
+public class StatsJobManager {
+    private final StatsService statsService;
+    private final ThreadPoolExecutor executor;
+    private final long ttlMinutes;
+    private final Map<String, StatsJob> jobs = new ConcurrentHashMap<>();
+
+    public StatsJobManager(StatsService statsService,
+                           @Value("${stats.jobs.threads:1}") int threads,
+                           @Value("${stats.jobs.queue-capacity:10}") int queueCapacity,
+                           @Value("${stats.jobs.ttl-minutes:60}") long ttlMinutes) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.statsService = statsService;
+        this.ttlMinutes = ttlMinutes;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> {
+                    Thread thread = new Thread(task, "stats-job-" + threadNumber.incrementAndGet());
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    public StatsJobDto submit(StatsParams params) {
+        statsService.checkStats(params);
+        StatsJob job = new StatsJob(UUID.randomUUID().toString(), params);
+        jobs.put(job.getId(), job);
+        try {
+            job.setFuture(executor.submit(() -> run(job)));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw new TooManyJobsException("Too many stats jobs are queued");
+        }
+        log.debug("Submitted stats job {}: {}", job.getId(), params);
+        return job.toDto();
+    }
+
+    public StatsJobDto get(String id) {
+        return find(id).toDto();
+    }
+
+    public List<StatsDto> getResults(String id, int from, int size) {
+        StatsJob job = find(id);
+        if (job.getStatus() != StatsJobDto.Status.DONE) {
+            throw new ValidationException("Job " + id + " is " + job.getStatus());
+        }
+        List<StatsDto> results = job.getResults();
+        return new ArrayList<>(results.subList(Math.min(from, results.size()), Math.min(from + size, results.size())));
+    }
+
+    public StatsJobDto cancel(String id) {
+        StatsJob job = find(id);
+        job.cancel();
+        return job.toDto();
+    }
+
+    @Scheduled(fixedDelayString = "${stats.jobs.cleanup-interval-ms:60000}")
+    public void removeExpired() {
+        LocalDateTime expiry = LocalDateTime.now().minusMinutes(ttlMinutes);
+        jobs.values().removeIf(job -> job.getFinished() != null && job.getFinished().isBefore(expiry));
+    }
+
+    private void run(StatsJob job) {
+        if (!job.start()) {
+            return;
+        }
+        try {
+            statsService.getReport(job.getParams(), stats -> {
+                if (job.getStatus() == StatsJobDto.Status.CANCELLED) {
+                    throw new CancellationException();
+                }
+                job.getResults().add(stats);
+            });
+            job.finish(StatsJobDto.Status.DONE, null);
+            log.debug("Stats job {} is done, {} rows", job.getId(), job.getResults().size());
+        } catch (CancellationException e) {
+            job.finish(StatsJobDto.Status.CANCELLED, null);
+            log.debug("Stats job {} is cancelled", job.getId());
+        } catch (RuntimeException e) {
+            log.warn("Stats job {} failed", job.getId(), e);
+            job.finish(StatsJobDto.Status.FAILED, e.getMessage());
+        }
+    }
+
+    private StatsJob find(String id) {
+        StatsJob job = jobs.get(id);
+        if (job == null) {
+            throw new NotFoundException("Job " + id + " was not found");
+        }
+        return job;
+    }
+}
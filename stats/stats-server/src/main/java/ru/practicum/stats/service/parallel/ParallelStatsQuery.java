@@ -0,0 +1,187 @@
+package ru.practicum.stats.service.parallel;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.practicum.StatsDto;
+import ru.practicum.stats.controller.params.StatsParams;
+import ru.practicum.stats.model.Granularity;
+import ru.practicum.stats.model.RangeSegment;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Splits stats queries over long ranges into day-aligned sub-ranges, runs them concurrently on
+ * a bounded pool and sums up their hits per app and uri. The number of sub-ranges grows with the
+ * length of the range, up to the size of the pool. Unique counts are not additive, so unique
+ * queries are not split here; instead the store reads the segments of their plan on the same pool
+ * through {@link #reduce} and merges the per-part sketches and bitmaps.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "stats.parallel.enabled", havingValue = "true")
+public class ParallelStatsQuery {
+    private final ThreadPoolExecutor executor;
+    private final int maxParts;
+    private final int minPartDays;
+
+    public ParallelStatsQuery(@Value("${stats.parallel.threads:4}") int threads,
+                              @Value("${stats.parallel.queue-capacity:100}") int queueCapacity,
+                              @Value("${stats.parallel.min-part-days:30}") int minPartDays) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> new Thread(task, "stats-query-" + threadNumber.incrementAndGet()),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.maxParts = threads;
+        this.minPartDays = minPartDays;
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    public void getStats(StatsParams params, Consumer<StatsDto> consumer,
+                         BiConsumer<StatsParams, Consumer<StatsDto>> source) {
+        List<StatsParams> parts = split(params);
+        if (parts.size() == 1) {
+            source.accept(params, consumer);
+            return;
+        }
+        log.debug("Splitting stats query from {} to {} into {} parts", params.getStart(), params.getEnd(),
+                parts.size());
+        List<Future<Map<String, Map<String, Long>>>> futures = new ArrayList<>();
+        for (StatsParams part : parts) {
+            futures.add(executor.submit(() -> {
+                Map<String, Map<String, Long>> counts = new HashMap<>();
+                source.accept(part, stats -> merge(counts, stats.getApp(), stats.getUri(), stats.getHits()));
+                return counts;
+            }));
+        }
+        Map<String, Map<String, Long>> totals = new HashMap<>();
+        for (Map<String, Map<String, Long>> counts : await(futures)) {
+            counts.forEach((app, byUri) -> byUri.forEach((uri, hits) -> merge(totals, app, uri, hits)));
+        }
+
+        List<StatsDto> stats = new ArrayList<>();
+        totals.forEach((app, byUri) -> byUri.forEach((uri, hits) -> stats.add(new StatsDto(app, uri, hits))));
+        stats.stream()
+                .sorted(Comparator.comparingLong(StatsDto::getHits).reversed())
+                .limit(params.getLimit() == null ? Long.MAX_VALUE : params.getLimit())
+                .forEach(consumer);
+    }
+
+    /**
+     * Reads the segments of a plan concurrently, one partial result each, and folds the results
+     * together in plan order. Rollup segments over long ranges are cut into day-aligned pieces the
+     * same way as ranges in {@link #getStats}.
+     */
+    public <T> Optional<T> reduce(List<RangeSegment> plan, Function<RangeSegment, T> reader,
+                                  BinaryOperator<T> combiner) {
+        List<RangeSegment> pieces = plan.stream().flatMap(segment -> split(segment).stream())
+                .collect(Collectors.toList());
+        if (pieces.size() < 2) {
+            return pieces.stream().map(reader).findFirst();
+        }
+        log.debug("Reading {} segments in {} parts", plan.size(), pieces.size());
+        List<Future<T>> futures = new ArrayList<>();
+        for (RangeSegment piece : pieces) {
+            futures.add(executor.submit(() -> reader.apply(piece)));
+        }
+        return await(futures).stream().reduce(combiner);
+    }
+
+    /**
+     * Cuts the closed range into parts of whole days, each one ending where the next one starts, with
+     * the end left out. Parts thus end on bucket boundaries, which matters once raw hits of old days
+     * are compacted. Limits are applied after merging, so the parts are unlimited.
+     */
+    List<StatsParams> split(StatsParams params) {
+        LocalDateTime start = params.getStart();
+        LocalDateTime end = params.getEnd();
+        long days = ChronoUnit.DAYS.between(start, end);
+        int partCount = (int) Math.min(maxParts, days / Math.max(1, minPartDays));
+        if (params.isUnique() || partCount < 2) {
+            return List.of(params);
+        }
+        long daysPerPart = (days + partCount - 1) / partCount;
+        List<StatsParams> parts = new ArrayList<>();
+        LocalDateTime from = start;
+        LocalDateTime firstDay = Granularity.DAY.floor(start);
+        for (int part = 1; part < partCount; part++) {
+            LocalDateTime boundary = firstDay.plusDays(part * daysPerPart);
+            if (!boundary.isAfter(from) || boundary.isAfter(end)) {
+                break;
+            }
+            parts.add(params.toBuilder().start(from).end(boundary).endExclusive(true).limit(null).build());
+            from = boundary;
+        }
+        parts.add(params.toBuilder().start(from).end(end).limit(null).build());
+        return parts;
+    }
+
+    /**
+     * Cuts a rollup segment of whole days into at most as many day-aligned pieces as the pool has threads.
+     */
+    List<RangeSegment> split(RangeSegment segment) {
+        long days = segment.isRaw() || segment.getGranularity() != Granularity.DAY ? 0
+                : ChronoUnit.DAYS.between(segment.getFrom(), segment.getTo());
+        int partCount = (int) Math.min(maxParts, days / Math.max(1, minPartDays));
+        if (partCount < 2) {
+            return List.of(segment);
+        }
+        long daysPerPart = (days + partCount - 1) / partCount;
+        List<RangeSegment> pieces = new ArrayList<>();
+        for (LocalDateTime from = segment.getFrom(); from.isBefore(segment.getTo()); from = from.plusDays(daysPerPart)) {
+            LocalDateTime to = from.plusDays(daysPerPart);
+            pieces.add(new RangeSegment(segment.getGranularity(), from,
+                    to.isBefore(segment.getTo()) ? to : segment.getTo(), false));
+        }
+        return pieces;
+    }
+
+    private <T> List<T> await(List<Future<T>> futures) {
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for stats", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Could not get stats", e.getCause());
+        }
+        return results;
+    }
+
+    private static void merge(Map<String, Map<String, Long>> counts, String app, String uri, long hits) {
+        counts.computeIfAbsent(app, name -> new HashMap<>()).merge(uri, hits, Long::sum);
+    }
+}
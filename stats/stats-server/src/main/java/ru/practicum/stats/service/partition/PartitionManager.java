@@ -0,0 +1,117 @@
+package ru.practicum.stats.service.partition;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.model.Partition;
+import ru.practicum.stats.model.PartitionInterval;
+import ru.practicum.stats.repository.BitmapRepository;
+import ru.practicum.stats.repository.PartitionRepository;
+import ru.practicum.stats.repository.RollupRepository;
+import ru.practicum.stats.repository.SketchRepository;
+import ru.practicum.stats.repository.SuppressedHitRepository;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Keeps the raw hits table partitioned by hit time: creates partitions a few intervals
+ * ahead and drops whole partitions that fell out of the retention period. Hits outside
+ * of every partition land in the default one. Rollups, sketches, bitmaps and suppressed
+ * counts are purged up to the oldest partition left, so no query finds aggregates of
+ * hits that are already gone.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "stats.partition.enabled", havingValue = "true")
+public class PartitionManager {
+    private final PartitionRepository partitionRepository;
+    private final RollupRepository rollupRepository;
+    private final SketchRepository sketchRepository;
+    private final BitmapRepository bitmapRepository;
+    private final SuppressedHitRepository suppressedHitRepository;
+
+    @Value("${stats.partition.interval:DAY}")
+    private PartitionInterval interval;
+
+    @Value("${stats.partition.premake:7}")
+    private int premake;
+
+    @Value("${stats.partition.retention-days:0}")
+    private int retentionDays;
+
+    @PostConstruct
+    public void init() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${stats.partition.cron:0 0 * * * *}")
+    public void maintain() {
+        LocalDate today = LocalDate.now();
+        List<Partition> partitions = partitionRepository.findPartitions();
+        createAhead(today, partitions);
+        if (retentionDays > 0) {
+            dropExpired(today.minusDays(retentionDays).atStartOfDay(), partitions);
+        }
+    }
+
+    private void createAhead(LocalDate today, List<Partition> partitions) {
+        LocalDate from = interval.floor(today);
+        for (int i = 0; i <= premake; i++) {
+            LocalDate to = interval.next(from);
+            Partition partition = new Partition(PartitionRepository.TABLE + "_p" + from.format(interval.getSuffix()),
+                    from.atStartOfDay(), to.atStartOfDay());
+            boolean covered = partitions.stream()
+                    .anyMatch(existing -> existing.overlaps(partition.getFrom(), partition.getTo()));
+            if (!covered) {
+                try {
+                    partitionRepository.create(partition);
+                    partitions.add(partition);
+                    log.info("Created partition {} for [{}, {})", partition.getName(), partition.getFrom(),
+                            partition.getTo());
+                } catch (DataAccessException e) {
+                    log.warn("Could not create partition {}: {}", partition.getName(), e.getMessage());
+                }
+            }
+            from = to;
+        }
+    }
+
+    private void dropExpired(LocalDateTime cutoff, List<Partition> partitions) {
+        for (Partition partition : partitions) {
+            if (!partition.getTo().isAfter(cutoff)) {
+                partitionRepository.drop(partition);
+                log.info("Dropped partition {} with hits before {}", partition.getName(), partition.getTo());
+            }
+        }
+        LocalDateTime before = partitions.stream()
+                .filter(partition -> partition.getTo().isAfter(cutoff))
+                .map(Partition::getFrom)
+                .min(Comparator.naturalOrder())
+                .filter(from -> from.isBefore(cutoff))
+                .orElse(cutoff);
+        purgeAggregates(before);
+    }
+
+    /**
+     * Runs on every maintenance, so aggregates left behind by a run cut short after dropping
+     * partitions are purged by the next one.
+     */
+    private void purgeAggregates(LocalDateTime before) {
+        int deleted = rollupRepository.deleteBefore(before)
+                + sketchRepository.deleteBefore(before)
+                + bitmapRepository.deleteBefore(before)
+                + suppressedHitRepository.deleteBefore(before);
+        if (deleted > 0) {
+            log.info("Purged {} aggregate rows before {}", deleted, before);
+        }
+    }
+}
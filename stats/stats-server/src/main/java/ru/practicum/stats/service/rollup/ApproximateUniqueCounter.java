@@ -0,0 +1,90 @@
+package ru.practicum.stats.service.rollup;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.model.HitCount;
+import ru.practicum.stats.model.RangeSegment;
+import ru.practicum.stats.model.RollupKey;
+import ru.practicum.stats.repository.HitJdbcRepository;
+import ru.practicum.stats.repository.SketchRepository;
+import ru.practicum.stats.service.parallel.ParallelStatsQuery;
+import ru.practicum.stats.sketch.HyperLogLog;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Estimates unique visitors by merging stored hour and day sketches; partial edges of
+ * the range are read from raw hits and added to the same sketches.
+ */
+@Component
+@RequiredArgsConstructor
+public class ApproximateUniqueCounter {
+    private final RollupPlanner rollupPlanner;
+    private final SketchRepository sketchRepository;
+    private final HitJdbcRepository hitJdbcRepository;
+    private final ObjectProvider<ParallelStatsQuery> parallelStatsQuery;
+
+    /**
+     * Reads the segments of the range on the parallel query pool, if there is one and parallel is set;
+     * end itself is left out unless closed.
+     */
+    public List<HitCount> count(LocalDateTime start, LocalDateTime end, boolean closed, Collection<Integer> uriIds,
+                                boolean parallel) {
+        return count(start, end, closed, uriIds, true, parallel);
+    }
+
+    /**
+     * Counts unique visitors of all the given uris together, per app; uri ids of the result are 0.
+     */
+    public List<HitCount> countTotals(LocalDateTime start, LocalDateTime end, boolean closed,
+                                      Collection<Integer> uriIds, boolean parallel) {
+        return count(start, end, closed, uriIds, false, parallel);
+    }
+
+    private List<HitCount> count(LocalDateTime start, LocalDateTime end, boolean closed, Collection<Integer> uriIds,
+                                 boolean perUri, boolean parallel) {
+        List<RangeSegment> plan = rollupPlanner.plan(start, end, closed, SketchMaintainer.LEVELS);
+        Function<RangeSegment, Map<RollupKey, HyperLogLog>> reader = segment -> read(segment, uriIds, perUri);
+        ParallelStatsQuery query = parallel ? parallelStatsQuery.getIfAvailable() : null;
+        Map<RollupKey, HyperLogLog> sketches = (query == null
+                ? plan.stream().map(reader).reduce(ApproximateUniqueCounter::merge)
+                : query.reduce(plan, reader, ApproximateUniqueCounter::merge))
+                .orElseGet(HashMap::new);
+        return sketches.entrySet().stream()
+                .map(entry -> new HitCount(entry.getKey().getAppId(), entry.getKey().getUriId(),
+                        entry.getValue().estimate()))
+                .sorted(Comparator.comparingLong(HitCount::getHits).reversed())
+                .collect(Collectors.toList());
+    }
+
+    private Map<RollupKey, HyperLogLog> read(RangeSegment segment, Collection<Integer> uriIds, boolean perUri) {
+        Map<RollupKey, HyperLogLog> sketches = new HashMap<>();
+        if (segment.isRaw()) {
+            hitJdbcRepository.forEachVisitor(segment, uriIds, hit ->
+                    sketches.computeIfAbsent(new RollupKey(null, hit.getAppId(), perUri ? hit.getUriId() : 0),
+                            key -> new HyperLogLog()).add(hit.getIpId()));
+        } else {
+            sketchRepository.forEachSketch(segment, uriIds, (key, sketch) ->
+                    sketches.computeIfAbsent(new RollupKey(null, key.getAppId(), perUri ? key.getUriId() : 0),
+                            k -> new HyperLogLog()).merge(sketch));
+        }
+        return sketches;
+    }
+
+    private static Map<RollupKey, HyperLogLog> merge(Map<RollupKey, HyperLogLog> into,
+                                                     Map<RollupKey, HyperLogLog> from) {
+        from.forEach((key, sketch) -> into.merge(key, sketch, (left, right) -> {
+            left.merge(right);
+            return left;
+        }));
+        return into;
+    }
+}
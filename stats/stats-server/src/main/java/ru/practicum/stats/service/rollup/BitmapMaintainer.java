@@ -0,0 +1,72 @@
+package ru.practicum.stats.service.rollup;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.bitmap.IntBitmap;
+import ru.practicum.stats.model.Granularity;
+import ru.practicum.stats.model.Hit;
+import ru.practicum.stats.model.RollupKey;
+import ru.practicum.stats.repository.BitmapRepository;
+import ru.practicum.stats.repository.HitJdbcRepository;
+import ru.practicum.stats.service.ingest.HitWriteListener;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps a bitmap of dictionary ids of visitor IPs per (app, uri) for every day.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "stats.bitmap.enabled", havingValue = "true", matchIfMissing = true)
+public class BitmapMaintainer implements HitWriteListener {
+    private static final int BACKFILL_CHUNK_SIZE = 10_000;
+    private final BitmapRepository bitmapRepository;
+    private final HitJdbcRepository hitJdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void backfill() {
+        if (!bitmapRepository.isEmpty()) {
+            return;
+        }
+        log.info("Bitmap table is empty, building it from raw hits");
+        transactionTemplate.executeWithoutResult(status ->
+                hitJdbcRepository.forEachHit(BACKFILL_CHUNK_SIZE, this::onWrite));
+    }
+
+    @Override
+    public void onWrite(List<Hit> hits) {
+        Map<LocalDateTime, Map<Integer, Map<Integer, IntBitmap>>> groups = new HashMap<>();
+        for (Hit hit : hits) {
+            groups.computeIfAbsent(Granularity.DAY.floor(hit.getTimestamp()), bucket -> new HashMap<>())
+                    .computeIfAbsent(hit.getAppId(), appId -> new HashMap<>())
+                    .computeIfAbsent(hit.getUriId(), uriId -> new IntBitmap())
+                    .add(hit.getIpId());
+        }
+        Map<RollupKey, IntBitmap> updated = new HashMap<>();
+        Map<RollupKey, IntBitmap> created = new HashMap<>();
+        groups.forEach((bucket, apps) -> apps.forEach((appId, uris) -> {
+            Map<Integer, IntBitmap> stored = bitmapRepository.findForUpdate(bucket, appId, uris.keySet());
+            uris.forEach((uriId, bitmap) -> {
+                RollupKey key = new RollupKey(bucket, appId, uriId);
+                IntBitmap existing = stored.get(uriId);
+                if (existing == null) {
+                    created.put(key, bitmap);
+                } else {
+                    existing.or(bitmap);
+                    updated.put(key, existing);
+                }
+            });
+        }));
+        bitmapRepository.update(updated);
+        bitmapRepository.insert(created);
+    }
+}
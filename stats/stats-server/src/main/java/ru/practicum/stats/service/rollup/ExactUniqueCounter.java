@@ -0,0 +1,91 @@
+package ru.practicum.stats.service.rollup;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.bitmap.IntBitmap;
+import ru.practicum.stats.model.Granularity;
+import ru.practicum.stats.model.HitCount;
+import ru.practicum.stats.model.RangeSegment;
+import ru.practicum.stats.model.RollupKey;
+import ru.practicum.stats.repository.BitmapRepository;
+import ru.practicum.stats.repository.HitJdbcRepository;
+import ru.practicum.stats.service.parallel.ParallelStatsQuery;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Counts unique visitors exactly as the cardinality of the union of daily IP bitmaps;
+ * IPs of the partial days at the range edges are read from raw hits.
+ */
+@Component
+@RequiredArgsConstructor
+public class ExactUniqueCounter {
+    private static final List<Granularity> LEVELS = List.of(Granularity.DAY);
+    private final RollupPlanner rollupPlanner;
+    private final BitmapRepository bitmapRepository;
+    private final HitJdbcRepository hitJdbcRepository;
+    private final ObjectProvider<ParallelStatsQuery> parallelStatsQuery;
+
+    /**
+     * Reads the segments of the range on the parallel query pool, if there is one and parallel is set;
+     * end itself is left out unless closed.
+     */
+    public List<HitCount> count(LocalDateTime start, LocalDateTime end, boolean closed, Collection<Integer> uriIds,
+                                boolean parallel) {
+        return count(start, end, closed, uriIds, true, parallel);
+    }
+
+    /**
+     * Counts unique visitors of all the given uris together, per app; uri ids of the result are 0.
+     */
+    public List<HitCount> countTotals(LocalDateTime start, LocalDateTime end, boolean closed,
+                                      Collection<Integer> uriIds, boolean parallel) {
+        return count(start, end, closed, uriIds, false, parallel);
+    }
+
+    private List<HitCount> count(LocalDateTime start, LocalDateTime end, boolean closed, Collection<Integer> uriIds,
+                                 boolean perUri, boolean parallel) {
+        List<RangeSegment> plan = rollupPlanner.plan(start, end, closed, LEVELS);
+        Function<RangeSegment, Map<RollupKey, IntBitmap>> reader = segment -> read(segment, uriIds, perUri);
+        ParallelStatsQuery query = parallel ? parallelStatsQuery.getIfAvailable() : null;
+        Map<RollupKey, IntBitmap> bitmaps = (query == null
+                ? plan.stream().map(reader).reduce(ExactUniqueCounter::merge)
+                : query.reduce(plan, reader, ExactUniqueCounter::merge))
+                .orElseGet(HashMap::new);
+        return bitmaps.entrySet().stream()
+                .map(entry -> new HitCount(entry.getKey().getAppId(), entry.getKey().getUriId(),
+                        entry.getValue().cardinality()))
+                .sorted(Comparator.comparingLong(HitCount::getHits).reversed())
+                .collect(Collectors.toList());
+    }
+
+    private Map<RollupKey, IntBitmap> read(RangeSegment segment, Collection<Integer> uriIds, boolean perUri) {
+        Map<RollupKey, IntBitmap> bitmaps = new HashMap<>();
+        if (segment.isRaw()) {
+            hitJdbcRepository.forEachVisitor(segment, uriIds, hit ->
+                    bitmaps.computeIfAbsent(new RollupKey(null, hit.getAppId(), perUri ? hit.getUriId() : 0),
+                            key -> new IntBitmap()).add(hit.getIpId()));
+        } else {
+            bitmapRepository.forEachBitmap(segment, uriIds, (key, bitmap) ->
+                    bitmaps.computeIfAbsent(new RollupKey(null, key.getAppId(), perUri ? key.getUriId() : 0),
+                            k -> new IntBitmap()).or(bitmap));
+        }
+        return bitmaps;
+    }
+
+    private static Map<RollupKey, IntBitmap> merge(Map<RollupKey, IntBitmap> into, Map<RollupKey, IntBitmap> from) {
+        from.forEach((key, bitmap) -> into.merge(key, bitmap, (left, right) -> {
+            left.or(right);
+            return left;
+        }));
+        return into;
+    }
+}
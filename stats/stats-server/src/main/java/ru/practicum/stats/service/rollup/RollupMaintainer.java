@@ -0,0 +1,51 @@
+package ru.practicum.stats.service.rollup;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.model.Granularity;
+import ru.practicum.stats.model.Hit;
+import ru.practicum.stats.model.RollupKey;
+import ru.practicum.stats.repository.RollupRepository;
+import ru.practicum.stats.service.ingest.HitWriteListener;
+
+import javax.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "stats.rollup.enabled", havingValue = "true", matchIfMissing = true)
+public class RollupMaintainer implements HitWriteListener {
+    private final RollupRepository rollupRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void backfill() {
+        if (!rollupRepository.isEmpty()) {
+            return;
+        }
+        log.info("Rollup tables are empty, building them from raw hits");
+        transactionTemplate.executeWithoutResult(status -> {
+            for (Granularity granularity : Granularity.values()) {
+                rollupRepository.rebuildFromRaw(granularity);
+            }
+        });
+    }
+
+    @Override
+    public void onWrite(List<Hit> hits) {
+        for (Granularity granularity : Granularity.values()) {
+            Map<RollupKey, Long> counts = new HashMap<>();
+            for (Hit hit : hits) {
+                RollupKey key = new RollupKey(granularity.floor(hit.getTimestamp()), hit.getAppId(), hit.getUriId());
+                counts.merge(key, 1L, Long::sum);
+            }
+            rollupRepository.increment(granularity, counts);
+        }
+    }
+}
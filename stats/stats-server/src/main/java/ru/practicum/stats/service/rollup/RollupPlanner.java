@@ -0,0 +1,66 @@
+package ru.practicum.stats.service.rollup;
+
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.model.Granularity;
+import ru.practicum.stats.model.RangeSegment;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+public class RollupPlanner {
+    private static final List<Granularity> ALL_LEVELS = List.of(Granularity.DAY, Granularity.HOUR, Granularity.MINUTE);
+
+    public List<RangeSegment> plan(LocalDateTime start, LocalDateTime end) {
+        return plan(start, end, ALL_LEVELS);
+    }
+
+    /**
+     * Same as {@link #plan(LocalDateTime, LocalDateTime)}, leaving end out of the range unless closed.
+     */
+    public List<RangeSegment> plan(LocalDateTime start, LocalDateTime end, boolean closed) {
+        List<RangeSegment> segments = new ArrayList<>();
+        split(start, end, closed, ALL_LEVELS, 0, segments);
+        return segments;
+    }
+
+    /**
+     * Splits the closed range [start, end] into the coarsest buckets of the given levels
+     * (ordered from coarsest to finest) that fit entirely inside it, and raw segments
+     * for the partial edges.
+     */
+    public List<RangeSegment> plan(LocalDateTime start, LocalDateTime end, List<Granularity> levels) {
+        return plan(start, end, true, levels);
+    }
+
+    /**
+     * Same as {@link #plan(LocalDateTime, LocalDateTime, List)}, leaving end out of the range unless closed.
+     */
+    public List<RangeSegment> plan(LocalDateTime start, LocalDateTime end, boolean closed, List<Granularity> levels) {
+        List<RangeSegment> segments = new ArrayList<>();
+        split(start, end, closed, levels, 0, segments);
+        return segments;
+    }
+
+    private void split(LocalDateTime from, LocalDateTime to, boolean closed,
+                       List<Granularity> levels, int level, List<RangeSegment> segments) {
+        if (from.isAfter(to) || (!closed && from.equals(to))) {
+            return;
+        }
+        if (level == levels.size()) {
+            segments.add(new RangeSegment(null, from, to, closed));
+            return;
+        }
+        Granularity granularity = levels.get(level);
+        LocalDateTime alignedFrom = granularity.ceil(from);
+        LocalDateTime alignedTo = granularity.floor(to);
+        if (!alignedFrom.isBefore(alignedTo)) {
+            split(from, to, closed, levels, level + 1, segments);
+            return;
+        }
+        split(from, alignedFrom, false, levels, level + 1, segments);
+        segments.add(new RangeSegment(granularity, alignedFrom, alignedTo, false));
+        split(alignedTo, to, closed, levels, level + 1, segments);
+    }
+}
@@ -0,0 +1,75 @@
+package ru.practicum.stats.service.rollup;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.model.Granularity;
+import ru.practicum.stats.model.Hit;
+import ru.practicum.stats.model.RollupKey;
+import ru.practicum.stats.repository.HitJdbcRepository;
+import ru.practicum.stats.repository.SketchRepository;
+import ru.practicum.stats.service.ingest.HitWriteListener;
+import ru.practicum.stats.sketch.HyperLogLog;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps a HyperLogLog sketch of visitor IPs per (app, uri) for every hour and day.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "stats.sketch.enabled", havingValue = "true", matchIfMissing = true)
+public class SketchMaintainer implements HitWriteListener {
+    public static final List<Granularity> LEVELS = List.of(Granularity.DAY, Granularity.HOUR);
+    private static final int BACKFILL_CHUNK_SIZE = 10_000;
+    private final SketchRepository sketchRepository;
+    private final HitJdbcRepository hitJdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void backfill() {
+        if (!sketchRepository.isEmpty()) {
+            return;
+        }
+        log.info("Sketch tables are empty, building them from raw hits");
+        transactionTemplate.executeWithoutResult(status ->
+                hitJdbcRepository.forEachHit(BACKFILL_CHUNK_SIZE, this::onWrite));
+    }
+
+    @Override
+    public void onWrite(List<Hit> hits) {
+        for (Granularity granularity : LEVELS) {
+            Map<LocalDateTime, Map<Integer, Map<Integer, HyperLogLog>>> groups = new HashMap<>();
+            for (Hit hit : hits) {
+                groups.computeIfAbsent(granularity.floor(hit.getTimestamp()), bucket -> new HashMap<>())
+                        .computeIfAbsent(hit.getAppId(), appId -> new HashMap<>())
+                        .computeIfAbsent(hit.getUriId(), uriId -> new HyperLogLog())
+                        .add(hit.getIpId());
+            }
+            Map<RollupKey, HyperLogLog> updated = new HashMap<>();
+            Map<RollupKey, HyperLogLog> created = new HashMap<>();
+            groups.forEach((bucket, apps) -> apps.forEach((appId, uris) -> {
+                Map<Integer, HyperLogLog> stored = sketchRepository.findForUpdate(granularity, bucket, appId, uris.keySet());
+                uris.forEach((uriId, sketch) -> {
+                    RollupKey key = new RollupKey(bucket, appId, uriId);
+                    HyperLogLog existing = stored.get(uriId);
+                    if (existing == null) {
+                        created.put(key, sketch);
+                    } else {
+                        existing.merge(sketch);
+                        updated.put(key, existing);
+                    }
+                });
+            }));
+            sketchRepository.update(granularity, updated);
+            sketchRepository.insert(granularity, created);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package ru.practicum.stats.service.storage;
+
+import ru.practicum.StatsDto;
+import ru.practicum.TimeSeriesDto;
+import ru.practicum.stats.controller.params.StatsParams;
+import ru.practicum.stats.controller.params.TimeSeriesParams;
+import ru.practicum.stats.model.Hit;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Storage engine for hits, selected with the stats.storage property.
+ */
+public interface HitStore {
+    void write(List<Hit> hits);
+
+    /**
+     * Passes stats to the consumer busiest first, at most params.limit of them when it is set.
+     */
+    void getStats(StatsParams params, Consumer<StatsDto> consumer);
+
+    /**
+     * Passes one dense series of per-bucket hits for every app and uri with hits in the range,
+     * busiest first.
+     */
+    void getTimeSeries(TimeSeriesParams params, Consumer<TimeSeriesDto> consumer);
+}
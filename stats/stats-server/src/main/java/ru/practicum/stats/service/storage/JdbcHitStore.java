@@ -0,0 +1,295 @@
+package ru.practicum.stats.service.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.StatsDto;
+import ru.practicum.TimeSeriesDto;
+import ru.practicum.stats.controller.params.StatsParams;
+import ru.practicum.stats.controller.params.TimeSeriesParams;
+import ru.practicum.stats.model.BucketCount;
+import ru.practicum.stats.model.Granularity;
+import ru.practicum.stats.model.Hit;
+import ru.practicum.stats.model.HitCount;
+import ru.practicum.stats.model.RangeSegment;
+import ru.practicum.stats.model.StatsMapper;
+import ru.practicum.stats.model.UriPattern;
+import ru.practicum.stats.repository.BitmapRepository;
+import ru.practicum.stats.repository.HitJdbcRepository;
+import ru.practicum.stats.repository.RollupRepository;
+import ru.practicum.stats.repository.StatsRepository;
+import ru.practicum.stats.service.dictionary.Dictionaries;
+import ru.practicum.stats.service.ingest.HitWriteListener;
+import ru.practicum.stats.service.rollup.ApproximateUniqueCounter;
+import ru.practicum.stats.service.rollup.ExactUniqueCounter;
+import ru.practicum.stats.service.rollup.RollupPlanner;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "stats.storage", havingValue = "jdbc", matchIfMissing = true)
+public class JdbcHitStore implements HitStore {
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int MAPPING_CHUNK_SIZE = 1000;
+    private final HitJdbcRepository hitJdbcRepository;
+    private final StatsRepository statsRepository;
+    private final RollupRepository rollupRepository;
+    private final RollupPlanner rollupPlanner;
+    private final ApproximateUniqueCounter approximateUniqueCounter;
+    private final ExactUniqueCounter exactUniqueCounter;
+    private final BitmapRepository bitmapRepository;
+    private final Dictionaries dictionaries;
+    private final StatsMapper statsMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final List<HitWriteListener> listeners;
+
+    @Value("${stats.rollup.enabled:true}")
+    private boolean rollupEnabled;
+
+    @Value("${stats.sketch.enabled:true}")
+    private boolean sketchEnabled;
+
+    @Value("${stats.bitmap.enabled:true}")
+    private boolean bitmapEnabled;
+
+    public JdbcHitStore(HitJdbcRepository hitJdbcRepository,
+                        StatsRepository statsRepository,
+                        RollupRepository rollupRepository,
+                        RollupPlanner rollupPlanner,
+                        ApproximateUniqueCounter approximateUniqueCounter,
+                        ExactUniqueCounter exactUniqueCounter,
+                        BitmapRepository bitmapRepository,
+                        Dictionaries dictionaries,
+                        StatsMapper statsMapper,
+                        TransactionTemplate transactionTemplate,
+                        ObjectProvider<HitWriteListener> listeners) {
+        this.hitJdbcRepository = hitJdbcRepository;
+        this.statsRepository = statsRepository;
+        this.rollupRepository = rollupRepository;
+        this.rollupPlanner = rollupPlanner;
+        this.approximateUniqueCounter = approximateUniqueCounter;
+        this.exactUniqueCounter = exactUniqueCounter;
+        this.bitmapRepository = bitmapRepository;
+        this.dictionaries = dictionaries;
+        this.statsMapper = statsMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readOnlyTransaction.setReadOnly(true);
+        this.listeners = listeners.orderedStream().collect(Collectors.toList());
+    }
+
+    @Override
+    public void write(List<Hit> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        dictionaries.encode(hits);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    hitJdbcRepository.saveAll(hits);
+                    listeners.forEach(listener -> listener.onWrite(hits));
+                });
+                return;
+            } catch (DuplicateKeyException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+                log.debug("Concurrent aggregate update, retrying write of {} hits", hits.size());
+            }
+        }
+    }
+
+    @Override
+    public void getStats(StatsParams params, Consumer<StatsDto> consumer) {
+        if (params.isAggregate()) {
+            getTotals(params, consumer);
+            return;
+        }
+        Collection<Integer> uriIds = null;
+        if (params.getUris() != null) {
+            uriIds = dictionaries.findUriIds(Arrays.asList(params.getUris()));
+            if (uriIds.isEmpty()) {
+                return;
+            }
+        }
+        List<HitCount> chunk = new ArrayList<>();
+        Consumer<HitCount> mapping = count -> {
+            chunk.add(count);
+            if (chunk.size() == MAPPING_CHUNK_SIZE) {
+                statsMapper.toStatsDto(chunk).forEach(consumer);
+                chunk.clear();
+            }
+        };
+        countHits(params, uriIds, mapping);
+        if (!chunk.isEmpty()) {
+            statsMapper.toStatsDto(chunk).forEach(consumer);
+        }
+    }
+
+    /**
+     * Fills dense per-bucket arrays in one pass. Hits are read from the rollups of the step and finer
+     * levels, which are added up into step buckets, and counted from raw hits only at edges inside a
+     * minute. Unique hits per day are read from daily
+     * bitmaps in the same way; finer unique hits are always counted from raw hits, since distinct
+     * ips of several buckets cannot be added up.
+     */
+    @Override
+    public void getTimeSeries(TimeSeriesParams params, Consumer<TimeSeriesDto> consumer) {
+        Collection<Integer> uriIds = null;
+        if (params.getUris() != null) {
+            uriIds = dictionaries.findUriIds(Arrays.asList(params.getUris()));
+            if (uriIds.isEmpty()) {
+                return;
+            }
+        }
+        boolean dailyBitmaps = params.isUnique() && params.getStep() == Granularity.DAY && bitmapEnabled;
+        boolean closed = !params.isEndExclusive();
+        List<RangeSegment> plan = !params.isUnique() && rollupEnabled
+                ? rollupPlanner.plan(params.getStart(), params.getEnd(), closed, levelsUpTo(params.getStep()))
+                : dailyBitmaps
+                ? rollupPlanner.plan(params.getStart(), params.getEnd(), closed, List.of(Granularity.DAY))
+                : List.of(new RangeSegment(null, params.getStart(), params.getEnd(), closed));
+        int bucketCount = params.getBucketCount();
+        Map<Long, long[]> series = new HashMap<>();
+        Consumer<BucketCount> adding = count -> series.computeIfAbsent(
+                ((long) count.getAppId() << 32) | count.getUriId(),
+                key -> new long[bucketCount])[params.bucketIndex(count.getBucket())] += count.getHits();
+        Collection<Integer> filter = uriIds;
+        readOnlyTransaction.executeWithoutResult(status -> {
+            if (!dailyBitmaps) {
+                rollupRepository.findTimeSeries(plan, params.getStep(), filter, params.isUnique(), adding);
+                return;
+            }
+            List<RangeSegment> raw = plan.stream().filter(RangeSegment::isRaw).collect(Collectors.toList());
+            if (!raw.isEmpty()) {
+                rollupRepository.findTimeSeries(raw, params.getStep(), filter, true, adding);
+            }
+            plan.stream().filter(segment -> !segment.isRaw()).forEach(segment ->
+                    bitmapRepository.forEachBitmap(segment, filter, (key, bitmap) -> adding.accept(
+                            new BucketCount(key.getBucket(), key.getAppId(), key.getUriId(), bitmap.cardinality()))));
+        });
+
+        Map<Integer, String> apps = dictionaries.apps().namesOf(series.keySet().stream()
+                .map(key -> (int) (key >>> 32))
+                .collect(Collectors.toSet()));
+        Map<Integer, String> uris = dictionaries.uris().namesOf(series.keySet().stream()
+                .map(Long::intValue)
+                .collect(Collectors.toSet()));
+        series.entrySet().stream()
+                .map(entry -> new TimeSeriesDto(apps.get((int) (entry.getKey() >>> 32)),
+                        uris.get(entry.getKey().intValue()), params.getFirstBucket(),
+                        params.getStep().name().toLowerCase(), entry.getValue()))
+                .sorted(Comparator.comparingLong((TimeSeriesDto dto) -> Arrays.stream(dto.getHits()).sum()).reversed())
+                .forEach(consumer);
+    }
+
+    /**
+     * Returns the rollup levels from the given one down to minutes, coarsest first.
+     */
+    private static List<Granularity> levelsUpTo(Granularity step) {
+        return Arrays.stream(Granularity.values())
+                .filter(level -> level.compareTo(step) <= 0)
+                .sorted(Comparator.reverseOrder())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Rolls stats of every uri pattern up into one row per app, with the pattern as the uri.
+     */
+    private void getTotals(StatsParams params, Consumer<StatsDto> consumer) {
+        List<String> patterns = params.getUris() == null ? List.of(UriPattern.ANY) : Arrays.asList(params.getUris());
+        List<StatsDto> totals = new ArrayList<>();
+        for (String pattern : new LinkedHashSet<>(patterns)) {
+            Set<Integer> uriIds = dictionaries.findUriIds(List.of(pattern));
+            if (uriIds.isEmpty()) {
+                continue;
+            }
+            Map<Integer, Long> hitsByApp = new HashMap<>();
+            Consumer<HitCount> summing = count -> hitsByApp.merge(count.getAppId(), count.getHits(), Long::sum);
+            if (params.isUnique()) {
+                countUniqueTotals(params, uriIds, summing);
+            } else {
+                countHits(params.toBuilder().limit(null).build(), uriIds, summing);
+            }
+            Map<Integer, String> apps = dictionaries.apps().namesOf(hitsByApp.keySet());
+            hitsByApp.forEach((appId, hits) -> totals.add(new StatsDto(apps.get(appId), pattern, hits)));
+        }
+        totals.stream()
+                .sorted(Comparator.comparingLong(StatsDto::getHits).reversed())
+                .limit(params.getLimit() == null ? Long.MAX_VALUE : params.getLimit())
+                .forEach(consumer);
+    }
+
+    private void countUniqueTotals(StatsParams params, Collection<Integer> uriIds, Consumer<HitCount> consumer) {
+        if (params.isApproximate() && sketchEnabled) {
+            approximateUniqueCounter.countTotals(params.getStart(), params.getEnd(), !params.isEndExclusive(),
+                    uriIds, !params.isSerial()).forEach(consumer);
+        } else if (bitmapEnabled) {
+            exactUniqueCounter.countTotals(params.getStart(), params.getEnd(), !params.isEndExclusive(),
+                    uriIds, !params.isSerial()).forEach(consumer);
+        } else {
+            LocalDateTime end = params.isEndExclusive() ? params.getEnd().minusNanos(1) : params.getEnd();
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<HitCount> counts = statsRepository.findUniqueTotalsForUris(params.getStart(),
+                        end, uriIds)) {
+                    counts.forEach(consumer);
+                }
+            });
+        }
+    }
+
+    private void countHits(StatsParams params, Collection<Integer> uriIds, Consumer<HitCount> consumer) {
+        Integer limit = params.getLimit();
+        if (params.isUnique() && params.isApproximate() && sketchEnabled) {
+            limited(approximateUniqueCounter.count(params.getStart(), params.getEnd(), !params.isEndExclusive(),
+                    uriIds, !params.isSerial()), limit).forEach(consumer);
+            return;
+        }
+        if (params.isUnique() && bitmapEnabled) {
+            limited(exactUniqueCounter.count(params.getStart(), params.getEnd(), !params.isEndExclusive(),
+                    uriIds, !params.isSerial()), limit).forEach(consumer);
+            return;
+        }
+        readOnlyTransaction.executeWithoutResult(status -> {
+            if (!params.isUnique() && rollupEnabled) {
+                rollupRepository.findStats(
+                        rollupPlanner.plan(params.getStart(), params.getEnd(), !params.isEndExclusive()),
+                        uriIds, limit, consumer);
+                return;
+            }
+            Pageable page = limit == null ? Pageable.unpaged() : PageRequest.of(0, limit);
+            LocalDateTime end = params.isEndExclusive() ? params.getEnd().minusNanos(1) : params.getEnd();
+            try (Stream<HitCount> counts = uriIds == null
+                    ? statsRepository.findStats(params.getStart(), end, params.isUnique(), page)
+                    : statsRepository.findStatsForUris(params.getStart(), end, params.isUnique(),
+                    uriIds, page)) {
+                counts.forEach(consumer);
+            }
+        });
+    }
+
+    private static List<HitCount> limited(List<HitCount> counts, Integer limit) {
+        return limit == null || counts.size() <= limit ? counts : counts.subList(0, limit);
+    }
+}
@@ -0,0 +1,475 @@
+package ru.practicum.stats.service.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.StatsDto;
+import ru.practicum.TimeSeriesDto;
+import ru.practicum.stats.controller.params.StatsParams;
+import ru.practicum.stats.controller.params.TimeSeriesParams;
+import ru.practicum.stats.model.Hit;
+import ru.practicum.stats.model.UriPattern;
+import ru.practicum.stats.segment.HitLog;
+import ru.practicum.stats.segment.Segment;
+import ru.practicum.stats.segment.SegmentWriter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps hits in immutable columnar segment files instead of the database. New hits are appended to
+ * a write-ahead {@link HitLog} and forced to disk before a write returns, then buffered in memory and
+ * written out as a segment once the buffer is full, on a timer and on shutdown. The log is named after
+ * the segment its hits go to, so on open a log whose segment exists is dropped and any other is
+ * written out as its segment. Small segments are merged together in the background once there are
+ * enough of them. A merged segment records the ids of the segments it replaces, and those are deleted
+ * on open if the process died before it got to them, so hits are never counted twice.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "stats.storage", havingValue = "segment")
+public class SegmentHitStore implements HitStore {
+    private static final String EXTENSION = ".seg";
+    private static final String LOG_EXTENSION = ".wal";
+    private final Path directory;
+    private final int flushRows;
+    private final int mergeFactor;
+    private final List<Segment> segments = new ArrayList<>();
+    private final Object mergeLock = new Object();
+    private HitBuffer buffer = new HitBuffer();
+    private HitLog hitLog;
+    private long bufferSegmentId;
+    private long nextSegmentId;
+
+    public SegmentHitStore(@Value("${stats.segment.dir:data/segments}") String directory,
+                           @Value("${stats.segment.flush-rows:50000}") int flushRows,
+                           @Value("${stats.segment.merge-factor:10}") int mergeFactor) {
+        this.directory = Paths.get(directory);
+        this.flushRows = flushRows;
+        this.mergeFactor = mergeFactor;
+    }
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        Files.createDirectories(directory);
+        Set<Long> superseded = new HashSet<>();
+        List<Path> logs = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.sorted().collect(Collectors.toList())) {
+                String name = path.getFileName().toString();
+                if (name.endsWith(EXTENSION)) {
+                    Segment segment = Segment.open(path);
+                    segments.add(segment);
+                    Arrays.stream(segment.getSources()).forEach(superseded::add);
+                    nextSegmentId = Math.max(nextSegmentId, id(path, EXTENSION) + 1);
+                } else if (name.endsWith(LOG_EXTENSION)) {
+                    logs.add(path);
+                    nextSegmentId = Math.max(nextSegmentId, id(path, LOG_EXTENSION) + 1);
+                } else if (name.endsWith(".tmp")) {
+                    Files.delete(path);
+                }
+            }
+        }
+        List<Segment> leftovers = segments.stream()
+                .filter(segment -> superseded.contains(id(segment.getPath(), EXTENSION)))
+                .collect(Collectors.toList());
+        segments.removeAll(leftovers);
+        for (Segment segment : leftovers) {
+            Files.deleteIfExists(segment.getPath());
+        }
+        if (!leftovers.isEmpty()) {
+            log.info("Deleted {} segments left over from an interrupted merge", leftovers.size());
+        }
+        for (Path path : logs) {
+            long id = id(path, LOG_EXTENSION);
+            List<Hit> hits = Files.exists(segmentPath(id)) || superseded.contains(id) ? List.of() : HitLog.read(path);
+            if (!hits.isEmpty()) {
+                segments.add(writeSegment(id, hits));
+                log.info("Recovered {} hits from {}", hits.size(), path.getFileName());
+            }
+            Files.delete(path);
+        }
+        startBuffer();
+        log.info("Opened {} segments in {}", segments.size(), directory.toAbsolutePath());
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        flush();
+        hitLog.close();
+    }
+
+    /**
+     * Returns once the hits are in the write-ahead log on disk.
+     */
+    @Override
+    public synchronized void write(List<Hit> hits) {
+        try {
+            hitLog.append(hits);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not log hits", e);
+        }
+        hits.forEach(buffer::add);
+        if (buffer.size() >= flushRows) {
+            flush();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${stats.segment.flush-interval-ms:10000}")
+    public synchronized void flush() {
+        if (buffer.size() == 0) {
+            return;
+        }
+        try {
+            segments.add(writeSegment(bufferSegmentId, buffer.snapshot()));
+            hitLog.close();
+            Files.delete(logPath(bufferSegmentId));
+            buffer = new HitBuffer();
+            startBuffer();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write segment", e);
+        }
+    }
+
+    private void startBuffer() throws IOException {
+        bufferSegmentId = nextSegmentId++;
+        hitLog = HitLog.create(logPath(bufferSegmentId));
+    }
+
+    @Override
+    public void getStats(StatsParams params, Consumer<StatsDto> consumer) {
+        List<Segment> segmentsSnapshot;
+        List<Hit> bufferSnapshot;
+        synchronized (this) {
+            segmentsSnapshot = new ArrayList<>(segments);
+            bufferSnapshot = buffer.snapshot();
+        }
+        long from = toEpochSecond(params.getStart());
+        long to = toEpochSecond(params.getEnd()) - (params.isEndExclusive() ? 1 : 0);
+        boolean aggregate = params.isAggregate();
+        List<String> patterns = params.getUris() == null
+                ? aggregate ? List.of(UriPattern.ANY) : null
+                : new ArrayList<>(new LinkedHashSet<>(Arrays.asList(params.getUris())));
+        Map<String, Map<String, Tally>> tallies = new HashMap<>();
+
+        for (Segment segment : segmentsSnapshot) {
+            if (segment.overlaps(from, to)) {
+                scan(segment, from, to, patterns, aggregate, params.isUnique(), tallies);
+            }
+        }
+        for (Hit hit : bufferSnapshot) {
+            long time = toEpochSecond(hit.getTimestamp());
+            if (time < from || time > to) {
+                continue;
+            }
+            String ip = params.isUnique() ? hit.getIp() : null;
+            if (patterns == null) {
+                tally(tallies, hit.getApp(), hit.getUri()).add(ip);
+            } else if (aggregate) {
+                patterns.stream()
+                        .filter(pattern -> UriPattern.matches(pattern, hit.getUri()))
+                        .forEach(pattern -> tally(tallies, hit.getApp(), pattern).add(ip));
+            } else if (patterns.stream().anyMatch(pattern -> UriPattern.matches(pattern, hit.getUri()))) {
+                tally(tallies, hit.getApp(), hit.getUri()).add(ip);
+            }
+        }
+
+        List<StatsDto> stats = new ArrayList<>();
+        tallies.forEach((app, byUri) -> byUri.forEach((uri, tally) ->
+                stats.add(new StatsDto(app, uri, params.isUnique() ? tally.ips.size() : tally.hits))));
+        stats.stream()
+                .sorted(Comparator.comparingLong(StatsDto::getHits).reversed())
+                .limit(params.getLimit() == null ? Long.MAX_VALUE : params.getLimit())
+                .forEach(consumer);
+    }
+
+    @Override
+    public void getTimeSeries(TimeSeriesParams params, Consumer<TimeSeriesDto> consumer) {
+        List<Segment> segmentsSnapshot;
+        List<Hit> bufferSnapshot;
+        synchronized (this) {
+            segmentsSnapshot = new ArrayList<>(segments);
+            bufferSnapshot = buffer.snapshot();
+        }
+        long from = toEpochSecond(params.getStart());
+        long to = toEpochSecond(params.getEnd()) - (params.isEndExclusive() ? 1 : 0);
+        long firstBucket = toEpochSecond(params.getFirstBucket());
+        long step = params.getStepSeconds();
+        int bucketCount = params.getBucketCount();
+        boolean unique = params.isUnique();
+        List<String> patterns = params.getUris() == null ? null : Arrays.asList(params.getUris());
+        Map<String, Map<String, Series>> series = new HashMap<>();
+
+        for (Segment segment : segmentsSnapshot) {
+            if (!segment.overlaps(from, to)) {
+                continue;
+            }
+            boolean[] uriFilter = null;
+            if (patterns != null) {
+                uriFilter = new boolean[segment.uriCount()];
+                boolean any = false;
+                for (String pattern : patterns) {
+                    int[] codes = segment.uriCodes(pattern);
+                    for (int code = codes[0]; code < codes[1]; code++) {
+                        uriFilter[code] = true;
+                        any = true;
+                    }
+                }
+                if (!any) {
+                    continue;
+                }
+            }
+            Map<Long, Series> local = new HashMap<>();
+            segment.scan(from, to, uriFilter, unique, (time, app, uri, ip) ->
+                    local.computeIfAbsent(((long) app << 32) | uri, key -> new Series(bucketCount))
+                            .add((int) ((time - firstBucket) / step), unique ? segment.ip(ip) : null));
+            local.forEach((key, values) -> series(series, segment.app((int) (key >>> 32)),
+                    segment.uri(key.intValue()), bucketCount).merge(values));
+        }
+        for (Hit hit : bufferSnapshot) {
+            long time = toEpochSecond(hit.getTimestamp());
+            if (time < from || time > to || patterns != null
+                    && patterns.stream().noneMatch(pattern -> UriPattern.matches(pattern, hit.getUri()))) {
+                continue;
+            }
+            series(series, hit.getApp(), hit.getUri(), bucketCount)
+                    .add((int) ((time - firstBucket) / step), unique ? hit.getIp() : null);
+        }
+
+        List<TimeSeriesDto> result = new ArrayList<>();
+        series.forEach((app, byUri) -> byUri.forEach((uri, values) -> result.add(new TimeSeriesDto(app, uri,
+                params.getFirstBucket(), params.getStep().name().toLowerCase(), values.counts(unique)))));
+        result.stream()
+                .sorted(Comparator.comparingLong((TimeSeriesDto dto) -> Arrays.stream(dto.getHits()).sum()).reversed())
+                .forEach(consumer);
+    }
+
+    /**
+     * Adds rows of the segment to the tallies, keyed by app and either uri or, when aggregating,
+     * every pattern the uri matches.
+     */
+    private void scan(Segment segment, long from, long to, List<String> patterns, boolean aggregate, boolean unique,
+                      Map<String, Map<String, Tally>> tallies) {
+        boolean[] uriFilter = null;
+        int[][] patternsByUri = null;
+        if (patterns != null) {
+            uriFilter = new boolean[segment.uriCount()];
+            patternsByUri = new int[segment.uriCount()][];
+            boolean any = false;
+            for (int index = 0; index < patterns.size(); index++) {
+                int[] codes = segment.uriCodes(patterns.get(index));
+                for (int code = codes[0]; code < codes[1]; code++) {
+                    uriFilter[code] = true;
+                    int[] matched = patternsByUri[code] == null ? new int[0] : patternsByUri[code];
+                    patternsByUri[code] = Arrays.copyOf(matched, matched.length + 1);
+                    patternsByUri[code][matched.length] = index;
+                    any = true;
+                }
+            }
+            if (!any) {
+                return;
+            }
+        }
+        int[][] labels = patternsByUri;
+        Map<Long, Tally> local = new HashMap<>();
+        segment.scan(from, to, uriFilter, unique, (time, app, uri, ip) -> {
+            String ipValue = unique ? segment.ip(ip) : null;
+            if (aggregate) {
+                for (int index : labels[uri]) {
+                    local.computeIfAbsent(((long) app << 32) | index, key -> new Tally()).add(ipValue);
+                }
+            } else {
+                local.computeIfAbsent(((long) app << 32) | uri, key -> new Tally()).add(ipValue);
+            }
+        });
+        local.forEach((key, tally) -> {
+            int label = key.intValue();
+            tally(tallies, segment.app((int) (key >>> 32)), aggregate ? patterns.get(label) : segment.uri(label))
+                    .merge(tally);
+        });
+    }
+
+    private static Tally tally(Map<String, Map<String, Tally>> tallies, String app, String uri) {
+        return tallies.computeIfAbsent(app, name -> new HashMap<>()).computeIfAbsent(uri, name -> new Tally());
+    }
+
+    private static Series series(Map<String, Map<String, Series>> series, String app, String uri, int bucketCount) {
+        return series.computeIfAbsent(app, name -> new HashMap<>())
+                .computeIfAbsent(uri, name -> new Series(bucketCount));
+    }
+
+    /**
+     * Merges small segments into one once there are enough of them. Rows are read and written
+     * outside the store lock, so ingestion and queries carry on meanwhile; the merged segment only
+     * replaces its sources in the list once it is on disk.
+     */
+    @Scheduled(fixedDelayString = "${stats.segment.merge-interval-ms:60000}")
+    public void merge() {
+        synchronized (mergeLock) {
+            List<Segment> small;
+            long id;
+            synchronized (this) {
+                small = segments.stream()
+                        .filter(segment -> segment.getRowCount() < flushRows)
+                        .collect(Collectors.toList());
+                if (small.size() < mergeFactor) {
+                    return;
+                }
+                id = nextSegmentId++;
+            }
+            try {
+                Set<Long> sources = new HashSet<>();
+                for (Segment segment : small) {
+                    sources.add(id(segment.getPath(), EXTENSION));
+                    Arrays.stream(segment.getSources()).forEach(sources::add);
+                }
+                Path path = segmentPath(id);
+                SegmentWriter.merge(path, small, sources.stream().mapToLong(Long::longValue).sorted().toArray());
+                Segment merged = Segment.open(path);
+                synchronized (this) {
+                    segments.removeAll(small);
+                    segments.add(merged);
+                }
+                for (Segment segment : small) {
+                    Files.deleteIfExists(segment.getPath());
+                }
+                log.debug("Merged {} segments into {}", small.size(), merged.getPath().getFileName());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not merge segments", e);
+            }
+        }
+    }
+
+    private Segment writeSegment(long id, List<Hit> hits) throws IOException {
+        Path path = segmentPath(id);
+        SegmentWriter.write(path, hits);
+        return Segment.open(path);
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("%019d%s", id, EXTENSION));
+    }
+
+    private Path logPath(long id) {
+        return directory.resolve(String.format("%019d%s", id, LOG_EXTENSION));
+    }
+
+    private static long id(Path path, String extension) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - extension.length()));
+    }
+
+    private static long toEpochSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * Append-only list of hits in fixed-size chunks. Hits already added are never moved, so a snapshot
+     * taken under the store lock only copies the chunk references and stays valid while more hits are
+     * added; a flush starts a new buffer instead of clearing this one.
+     */
+    private static class HitBuffer {
+        private static final int CHUNK = 1024;
+        private final List<Hit[]> chunks = new ArrayList<>();
+        private int size;
+
+        void add(Hit hit) {
+            if (size % CHUNK == 0) {
+                chunks.add(new Hit[CHUNK]);
+            }
+            chunks.get(size / CHUNK)[size % CHUNK] = hit;
+            size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        List<Hit> snapshot() {
+            Hit[][] snapshot = chunks.toArray(Hit[][]::new);
+            int count = size;
+            return new AbstractList<>() {
+                @Override
+                public Hit get(int index) {
+                    return snapshot[index / CHUNK][index % CHUNK];
+                }
+
+                @Override
+                public int size() {
+                    return count;
+                }
+            };
+        }
+    }
+
+    private static class Tally {
+        private long hits;
+        private Set<String> ips = new HashSet<>();
+
+        void add(String ip) {
+            hits++;
+            if (ip != null) {
+                ips.add(ip);
+            }
+        }
+
+        void merge(Tally other) {
+            hits += other.hits;
+            ips.addAll(other.ips);
+        }
+    }
+
+    private static class Series {
+        private final long[] hits;
+        private final Map<Integer, Set<String>> ips = new HashMap<>();
+
+        Series(int bucketCount) {
+            hits = new long[bucketCount];
+        }
+
+        void add(int bucket, String ip) {
+            hits[bucket]++;
+            if (ip != null) {
+                ips.computeIfAbsent(bucket, index -> new HashSet<>()).add(ip);
+            }
+        }
+
+        void merge(Series other) {
+            for (int bucket = 0; bucket < hits.length; bucket++) {
+                hits[bucket] += other.hits[bucket];
+            }
+            other.ips.forEach((bucket, values) -> ips.computeIfAbsent(bucket, index -> new HashSet<>()).addAll(values));
+        }
+
+        long[] counts(boolean unique) {
+            if (!unique) {
+                return hits;
+            }
+            long[] counts = new long[hits.length];
+            ips.forEach((bucket, values) -> counts[bucket] = values.size());
+            return counts;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package ru.practicum.stats.service.trending;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.practicum.StatsDto;
+import ru.practicum.stats.model.Hit;
+import ru.practicum.stats.model.TrendWindow;
+import ru.practicum.stats.service.ingest.HitIngestListener;
+import ru.practicum.stats.sketch.SlidingTopK;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the most hit uris of every app over the last 5 minutes, hour and day in memory.
+ * Counts are approximate and start from zero after a restart.
+ */
+@Component
+@ConditionalOnProperty(name = "stats.trending.enabled", havingValue = "true", matchIfMissing = true)
+public class TrendTracker implements HitIngestListener {
+    private final Map<String, Map<TrendWindow, SlidingTopK>> windowsByApp = new ConcurrentHashMap<>();
+
+    @Value("${stats.trending.capacity:1000}")
+    private int capacity;
+
+    @Override
+    public void onIngest(List<Hit> hits) {
+        long now = epochSecond(LocalDateTime.now());
+        for (Hit hit : hits) {
+            long time = epochSecond(hit.getTimestamp());
+            windows(hit.getApp()).values().forEach(window -> window.add(hit.getUri(), time, now));
+        }
+    }
+
+    /**
+     * Returns the leading uris of the app, or of all apps when it is null.
+     */
+    public List<StatsDto> top(String app, TrendWindow window, int limit) {
+        long now = epochSecond(LocalDateTime.now());
+        List<StatsDto> leaders = new ArrayList<>();
+        windowsByApp.forEach((name, windows) -> {
+            if (app == null || app.equals(name)) {
+                windows.get(window).top(now, limit).forEach(entry ->
+                        leaders.add(new StatsDto(name, entry.getKey(), entry.getValue())));
+            }
+        });
+        return leaders.stream()
+                .sorted(Comparator.comparingLong(StatsDto::getHits).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    private Map<TrendWindow, SlidingTopK> windows(String app) {
+        return windowsByApp.computeIfAbsent(app, name -> {
+            Map<TrendWindow, SlidingTopK> windows = new EnumMap<>(TrendWindow.class);
+            for (TrendWindow window : TrendWindow.values()) {
+                windows.put(window, new SlidingTopK(window.getLength().toSeconds(), window.getSlices(), capacity));
+            }
+            return windows;
+        });
+    }
+
+    private static long epochSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,40 @@
+package ru.practicum.stats.sketch;
+
+public final class Hashing {
+    private Hashing() {
+    }
+
+    /**
+     * MurmurHash3 64-bit finalizer: spreads every input bit over every output bit.
+     */
+    public static long mix64(long value) {
+        long hash = value;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Hashes bytes eight at a time through {@link #mix64}, seeded with the length so that
+     * trailing zero bytes still change the hash.
+     */
+    public static long hash64(byte[] bytes) {
+        long hash = mix64(bytes.length * 0x9e3779b97f4a7c15L);
+        int offset = 0;
+        for (; offset + Long.BYTES <= bytes.length; offset += Long.BYTES) {
+            hash = mix64(hash ^ word(bytes, offset, Long.BYTES)) * 0x9e3779b97f4a7c15L;
+        }
+        return mix64(hash ^ word(bytes, offset, bytes.length - offset));
+    }
+
+    private static long word(byte[] bytes, int offset, int length) {
+        long word = 0;
+        for (int i = 0; i < length; i++) {
+            word |= (bytes[offset + i] & 0xffL) << (i * Byte.SIZE);
+        }
+        return word;
+    }
+}
@@ -0,0 +1,108 @@
+package ru.practicum.stats.sketch;
+
+import java.util.Arrays;
+
+/**
+ * Bloom filter over a sliding window of time, made of one slice per bucket of the window. A key is
+ * looked up in every slice still inside the window and added to the slice of its own bucket; the
+ * slice of the oldest bucket is cleared and reused once time moves past it. Memory stays fixed
+ * however many keys arrive, at the price of false positives once a slice fills up.
+ * <p>
+ * Buckets are plain numbers, e.g. seconds divided by the bucket length, so the caller decides
+ * which clock to follow.
+ */
+public class RotatingBloomFilter {
+    private static final int HASHES = 4;
+    private final long[][] slices;
+    private final long[] sliceBuckets;
+    private final int mask;
+    private long newestBucket = Long.MIN_VALUE;
+
+    /**
+     * The number of bits per slice is rounded up to a power of two.
+     */
+    public RotatingBloomFilter(int sliceCount, int bitsPerSlice) {
+        if (sliceCount < 1) {
+            throw new IllegalArgumentException("A rotating Bloom filter needs at least one slice");
+        }
+        int bits = Integer.highestOneBit(Math.max(bitsPerSlice - 1, Long.SIZE - 1)) << 1;
+        this.slices = new long[sliceCount][bits / Long.SIZE];
+        this.sliceBuckets = new long[sliceCount];
+        this.mask = bits - 1;
+        Arrays.fill(sliceBuckets, Long.MIN_VALUE);
+    }
+
+    /**
+     * Adds the key hash to the slice of the bucket, returning false if it was already seen less than
+     * the window away from that bucket. Keys of buckets older than the window have no slice left to
+     * go to, so they are rejected: let through as unseen without being recorded.
+     */
+    public synchronized boolean addIfAbsent(long hash, long bucket) {
+        if (mightContain(hash, bucket)) {
+            return false;
+        }
+        add(hash, bucket);
+        return true;
+    }
+
+    /**
+     * Returns true if the key hash was seen less than the window away from the bucket, without
+     * recording it.
+     */
+    public synchronized boolean mightContain(long hash, long bucket) {
+        if (bucket > newestBucket) {
+            advance(bucket);
+        }
+        if (sliceBuckets[Math.floorMod(bucket, slices.length)] != bucket) {
+            return false;
+        }
+        long second = Hashing.mix64(hash) | 1;
+        for (int i = 0; i < slices.length; i++) {
+            if (sliceBuckets[i] > bucket - slices.length && contains(slices[i], hash, second)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records the key hash in the slice of the bucket; keys older than the window are not recorded.
+     */
+    public synchronized void add(long hash, long bucket) {
+        if (bucket > newestBucket) {
+            advance(bucket);
+        }
+        int index = Math.floorMod(bucket, slices.length);
+        if (sliceBuckets[index] != bucket) {
+            return;
+        }
+        long second = Hashing.mix64(hash) | 1;
+        long[] slice = slices[index];
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (int) (hash + i * second) & mask;
+            slice[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private boolean contains(long[] slice, long hash, long second) {
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (int) (hash + i * second) & mask;
+            if ((slice[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void advance(long bucket) {
+        long from = newestBucket == Long.MIN_VALUE
+                ? bucket - slices.length + 1
+                : Math.max(newestBucket + 1, bucket - slices.length + 1);
+        for (long next = from; next <= bucket; next++) {
+            int index = Math.floorMod(next, slices.length);
+            Arrays.fill(slices[index], 0);
+            sliceBuckets[index] = next;
+        }
+        newestBucket = bucket;
+    }
+}
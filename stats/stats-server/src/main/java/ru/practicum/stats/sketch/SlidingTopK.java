@@ -0,0 +1,61 @@
+package ru.practicum.stats.sketch;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Heavy hitters over a sliding time window. The window is split into slices, each with its own
+ * {@link SpaceSaving} summary kept in a ring; a slice is reset when time moves past it, and a
+ * query sums the summaries of the slices that are still inside the window.
+ */
+public class SlidingTopK {
+    private final long sliceSeconds;
+    private final SpaceSaving[] summaries;
+    private final long[] sliceIndexes;
+
+    public SlidingTopK(long windowSeconds, int slices, int capacity) {
+        this.sliceSeconds = Math.max(1, windowSeconds / slices);
+        this.summaries = new SpaceSaving[slices];
+        this.sliceIndexes = new long[slices];
+        for (int i = 0; i < slices; i++) {
+            summaries[i] = new SpaceSaving(capacity);
+            sliceIndexes[i] = Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Counts the item at the given epoch second; items that are already out of the window are ignored.
+     */
+    public synchronized void add(String item, long epochSecond, long nowEpochSecond) {
+        long index = Math.floorDiv(epochSecond, sliceSeconds);
+        long nowIndex = Math.floorDiv(nowEpochSecond, sliceSeconds);
+        if (index <= nowIndex - summaries.length || index > nowIndex) {
+            return;
+        }
+        int slot = (int) Math.floorMod(index, (long) summaries.length);
+        if (sliceIndexes[slot] != index) {
+            if (sliceIndexes[slot] > index) {
+                return;
+            }
+            summaries[slot].clear();
+            sliceIndexes[slot] = index;
+        }
+        summaries[slot].add(item);
+    }
+
+    public synchronized List<Map.Entry<String, Long>> top(long nowEpochSecond, int limit) {
+        long nowIndex = Math.floorDiv(nowEpochSecond, sliceSeconds);
+        Map<String, Long> totals = new HashMap<>();
+        for (int slot = 0; slot < summaries.length; slot++) {
+            if (sliceIndexes[slot] > nowIndex - summaries.length && sliceIndexes[slot] <= nowIndex) {
+                summaries[slot].sumInto(totals);
+            }
+        }
+        return totals.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,64 @@
+package ru.practicum.stats.sketch;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Space-Saving heavy hitters summary with a fixed number of counters. When a new item arrives
+ * and all counters are taken, the item replaces the one with the smallest count and inherits
+ * that count, so counts may be overestimated by at most the smallest count, but any item that
+ * occurs more often than total / capacity times is guaranteed to be kept.
+ */
+public class SpaceSaving {
+    private final int capacity;
+    private final Map<String, Long> counts = new HashMap<>();
+    private final TreeMap<Long, Set<String>> itemsByCount = new TreeMap<>();
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    public void add(String item) {
+        Long count = counts.get(item);
+        if (count == null) {
+            count = 0L;
+            if (counts.size() == capacity) {
+                Map.Entry<Long, Set<String>> smallest = itemsByCount.firstEntry();
+                String evicted = smallest.getValue().iterator().next();
+                unlink(evicted, smallest.getKey());
+                counts.remove(evicted);
+                count = smallest.getKey();
+            }
+        } else {
+            unlink(item, count);
+        }
+        counts.put(item, count + 1);
+        itemsByCount.computeIfAbsent(count + 1, key -> new LinkedHashSet<>()).add(item);
+    }
+
+    /**
+     * Adds counts of this summary to the given totals.
+     */
+    public void sumInto(Map<String, Long> totals) {
+        counts.forEach((item, count) -> totals.merge(item, count, Long::sum));
+    }
+
+    public void clear() {
+        counts.clear();
+        itemsByCount.clear();
+    }
+
+    private void unlink(String item, long count) {
+        Set<String> items = itemsByCount.get(count);
+        items.remove(item);
+        if (items.isEmpty()) {
+            itemsByCount.remove(count);
+        }
+    }
+}
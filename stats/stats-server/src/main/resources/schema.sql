@@ -1,8 +0,0 @@
-CREATE TABLE IF NOT EXISTS stats (
-    id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
-    app VARCHAR NOT NULL,
-    uri VARCHAR NOT NULL,
-    ip VARCHAR NOT NULL,
-    hit_time TIMESTAMP NOT NULL,
-    CONSTRAINT pk_stats PRIMARY KEY (id)
-);
\ No newline at end of file
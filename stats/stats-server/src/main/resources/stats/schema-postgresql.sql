@@ -0,0 +1,12 @@
+CREATE SEQUENCE IF NOT EXISTS stats_id_seq;
+
+CREATE TABLE IF NOT EXISTS stats (
+    id BIGINT NOT NULL DEFAULT nextval('stats_id_seq'),
+    app_id INTEGER NOT NULL,
+    uri_id INTEGER NOT NULL,
+    ip_id INTEGER NOT NULL,
+    hit_time TIMESTAMP NOT NULL,
+    CONSTRAINT pk_stats PRIMARY KEY (id, hit_time)
+) PARTITION BY RANGE (hit_time);
+
+CREATE TABLE IF NOT EXISTS stats_default PARTITION OF stats DEFAULT;
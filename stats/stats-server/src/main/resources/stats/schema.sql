@@ -0,0 +1,96 @@
+CREATE TABLE IF NOT EXISTS dict_app (
+    id INTEGER GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    name VARCHAR NOT NULL,
+    CONSTRAINT pk_dict_app PRIMARY KEY (id),
+    CONSTRAINT uq_dict_app_name UNIQUE (name)
+);
+
+CREATE TABLE IF NOT EXISTS dict_uri (
+    id INTEGER GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    name VARCHAR NOT NULL,
+    CONSTRAINT pk_dict_uri PRIMARY KEY (id),
+    CONSTRAINT uq_dict_uri_name UNIQUE (name)
+);
+
+CREATE TABLE IF NOT EXISTS dict_ip (
+    id INTEGER GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    name VARCHAR NOT NULL,
+    CONSTRAINT pk_dict_ip PRIMARY KEY (id),
+    CONSTRAINT uq_dict_ip_name UNIQUE (name)
+);
+
+CREATE TABLE IF NOT EXISTS stats (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    app_id INTEGER NOT NULL,
+    uri_id INTEGER NOT NULL,
+    ip_id INTEGER NOT NULL,
+    hit_time TIMESTAMP NOT NULL,
+    CONSTRAINT pk_stats PRIMARY KEY (id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_stats_hit_time ON stats (hit_time);
+
+CREATE TABLE IF NOT EXISTS stats_rollup_minute (
+    bucket TIMESTAMP NOT NULL,
+    app_id INTEGER NOT NULL,
+    uri_id INTEGER NOT NULL,
+    hits BIGINT NOT NULL,
+    CONSTRAINT pk_stats_rollup_minute PRIMARY KEY (bucket, app_id, uri_id)
+);
+
+CREATE TABLE IF NOT EXISTS stats_rollup_hour (
+    bucket TIMESTAMP NOT NULL,
+    app_id INTEGER NOT NULL,
+    uri_id INTEGER NOT NULL,
+    hits BIGINT NOT NULL,
+    CONSTRAINT pk_stats_rollup_hour PRIMARY KEY (bucket, app_id, uri_id)
+);
+
+CREATE TABLE IF NOT EXISTS stats_rollup_day (
+    bucket TIMESTAMP NOT NULL,
+    app_id INTEGER NOT NULL,
+    uri_id INTEGER NOT NULL,
+    hits BIGINT NOT NULL,
+    CONSTRAINT pk_stats_rollup_day PRIMARY KEY (bucket, app_id, uri_id)
+);
+
+CREATE TABLE IF NOT EXISTS stats_hll_hour (
+    bucket TIMESTAMP NOT NULL,
+    app_id INTEGER NOT NULL,
+    uri_id INTEGER NOT NULL,
+    sketch BYTEA NOT NULL,
+    CONSTRAINT pk_stats_hll_hour PRIMARY KEY (bucket, app_id, uri_id)
+);
+
+CREATE TABLE IF NOT EXISTS stats_hll_day (
+    bucket TIMESTAMP NOT NULL,
+    app_id INTEGER NOT NULL,
+    uri_id INTEGER NOT NULL,
+    sketch BYTEA NOT NULL,
+    CONSTRAINT pk_stats_hll_day PRIMARY KEY (bucket, app_id, uri_id)
+);
+
+CREATE TABLE IF NOT EXISTS stats_bitmap_day (
+    bucket TIMESTAMP NOT NULL,
+    app_id INTEGER NOT NULL,
+    uri_id INTEGER NOT NULL,
+    bitmap BYTEA NOT NULL,
+    CONSTRAINT pk_stats_bitmap_day PRIMARY KEY (bucket, app_id, uri_id)
+);
+
+CREATE TABLE IF NOT EXISTS stats_suppressed_hour (
+    bucket TIMESTAMP NOT NULL,
+    app_id INTEGER NOT NULL,
+    uri_id INTEGER NOT NULL,
+    hits BIGINT NOT NULL,
+    CONSTRAINT pk_stats_suppressed_hour PRIMARY KEY (bucket, app_id, uri_id)
+);
+
+CREATE TABLE IF NOT EXISTS stats_compaction (
+    id INTEGER NOT NULL,
+    compacted_before TIMESTAMP,
+    current_day TIMESTAMP,
+    rows_deleted BIGINT NOT NULL,
+    updated_at TIMESTAMP,
+    CONSTRAINT pk_stats_compaction PRIMARY KEY (id)
+);
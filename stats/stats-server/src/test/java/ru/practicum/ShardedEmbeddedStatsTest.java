@@ -0,0 +1,93 @@
+package ru.practicum;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import ru.practicum.stats.embedded.EmbeddedStatsTransport;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Rebalancing of {@link ShardedStatsTransport} over stats servers running embedded, each on a database of its own.
+ */
+class ShardedEmbeddedStatsTest {
+    private static final LocalDateTime DAY = LocalDateTime.of(2024, 3, 1, 0, 0);
+    private static final List<String> NAMES = List.of("stats-a", "stats-b", "stats-c", "stats-d");
+    private static final String[] URIS = IntStream.range(0, 100).mapToObj(i -> "/events/" + i)
+            .toArray(String[]::new);
+    private static List<EmbeddedStatsTransport> nodes;
+
+    @BeforeAll
+    static void start() {
+        nodes = IntStream.range(0, NAMES.size())
+                .mapToObj(i -> EmbeddedStatsTransport.start(Map.of(
+                        "spring.datasource.url", "jdbc:h2:mem:shard-" + i,
+                        "stats.cache.enabled", "false")))
+                .collect(Collectors.toList());
+    }
+
+    @AfterAll
+    static void stop() {
+        nodes.forEach(EmbeddedStatsTransport::close);
+    }
+
+    @Test
+    void keepsCountsOfUrisMovedToAddedServerWithScatterReads() throws InterruptedException {
+        ShardedStatsTransport before = sharded(3, false);
+        before.hits(hits("10.0.0.1")).join();
+        before.hits(hits("10.0.0.2")).join();
+        ShardedStatsTransport after = sharded(4, false);
+        ShardedStatsTransport scattered = sharded(4, true);
+        after.hits(hits("10.0.0.1")).join();
+
+        Map<String, Long> owned = counts(after.getStats(request(false)).join());
+        long moved = owned.values().stream().filter(hits -> hits == 1).count();
+        assertTrue(moved > 10 && moved < 40, moved + " of 100 uris moved");
+        assertEquals(URIS.length - moved, owned.values().stream().filter(hits -> hits == 3).count());
+        assertEquals(Arrays.stream(URIS).collect(Collectors.toMap(Function.identity(), uri -> 3L)),
+                counts(scattered.getStats(request(false)).join()));
+        // 10.0.0.1 was seen by the old and the new owner of a moved uri, so it is counted on both
+        Map<String, Long> unique = counts(scattered.getStats(request(true)).join());
+        owned.forEach((uri, hits) -> assertEquals(hits == 1 ? 3L : 2L, unique.get(uri), uri));
+
+        StatsJobDto job = scattered.submitJob(request(false));
+        while (scattered.getJob(job.getId()).getStatus() != StatsJobDto.Status.DONE) {
+            Thread.sleep(10);
+        }
+        List<StatsDto> pages = new ArrayList<>();
+        for (int from = 0; from < URIS.length; from += 30) {
+            pages.addAll(Arrays.asList(scattered.getJobResults(job.getId(), from, 30)));
+        }
+        assertEquals(counts(scattered.getStats(request(false)).join()), counts(pages.toArray(StatsDto[]::new)));
+    }
+
+    private static ShardedStatsTransport sharded(int nodeCount, boolean scatterReads) {
+        return new ShardedStatsTransport(NAMES.subList(0, nodeCount), nodes.subList(0, nodeCount),
+                StatsClientSettings.builder().scatterReads(scatterReads).build());
+    }
+
+    private static List<HitDto> hits(String ip) {
+        return Arrays.stream(URIS)
+                .map(uri -> HitDto.builder().app("ewm").uri(uri).ip(ip).timestamp(DAY.plusHours(1)).build())
+                .collect(Collectors.toList());
+    }
+
+    private static StatsRequestDto request(boolean unique) {
+        return StatsRequestDto.builder().start(DAY).end(DAY.plusDays(1)).uris(URIS).unique(unique).build();
+    }
+
+    private static Map<String, Long> counts(StatsDto[] rows) {
+        assertEquals(rows.length, Arrays.stream(rows).map(StatsDto::getUri).distinct().count());
+        return Arrays.stream(rows).collect(Collectors.toMap(StatsDto::getUri, StatsDto::getHits));
+    }
+}
@@ -0,0 +1,62 @@
+package ru.practicum.stats.embedded;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.HttpClientErrorException;
+import ru.practicum.BulkHitResultDto;
+import ru.practicum.HitDto;
+import ru.practicum.StatsRequestDto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EmbeddedStatsTransportTest {
+    private static final LocalDateTime TIME = LocalDateTime.of(2024, 3, 1, 12, 0);
+    private static EmbeddedStatsTransport transport;
+
+    @BeforeAll
+    static void start() {
+        transport = EmbeddedStatsTransport.start(Map.of(
+                "spring.datasource.url", "jdbc:h2:mem:embedded-transport-test",
+                "stats.cache.enabled", "false"));
+    }
+
+    @AfterAll
+    static void stop() {
+        transport.close();
+    }
+
+    @Test
+    void rethrowsConsumerErrorsUnchanged() {
+        transport.hit(new HitDto("ewm", "/events/1", "10.0.0.1", TIME)).join();
+        IllegalStateException error = new IllegalStateException("consumer failed");
+
+        assertSame(error, assertThrows(IllegalStateException.class,
+                () -> transport.streamStats(request(null), stats -> {
+                    throw error;
+                })));
+        assertThrows(HttpClientErrorException.BadRequest.class,
+                () -> transport.streamStats(request(0), stats -> {
+                }));
+    }
+
+    @Test
+    void rejectsInvalidHitsOfBulkOneByOne() {
+        BulkHitResultDto result = transport.hits(List.of(
+                new HitDto("ewm", "/events/2", "10.0.0.1", TIME),
+                new HitDto("ewm", null, "10.0.0.1", TIME))).join();
+
+        assertEquals(1, result.getAccepted());
+        assertEquals(1, result.getRejected().size());
+    }
+
+    private static StatsRequestDto request(Integer limit) {
+        return StatsRequestDto.builder().start(TIME.minusDays(1)).end(TIME.plusDays(1)).limit(limit).build();
+    }
+}
@@ -0,0 +1,53 @@
+package ru.practicum.stats.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UriTrieTest {
+    private UriTrie trie;
+
+    @BeforeEach
+    void setUp() {
+        trie = new UriTrie();
+        trie.add("/events", 1);
+        trie.add("/events/1", 2);
+        trie.add("/events/12", 3);
+        trie.add("/events/2", 4);
+        trie.add("/compilations/1", 5);
+    }
+
+    @Test
+    void findsAllUrisUnderPrefix() {
+        assertEquals(Set.of(1, 2, 3, 4), Set.copyOf(trie.findByPrefix("/events")));
+        assertEquals(Set.of(2, 3, 4), Set.copyOf(trie.findByPrefix("/events/")));
+        assertEquals(Set.of(2, 3), Set.copyOf(trie.findByPrefix("/events/1")));
+        assertEquals(Set.of(1, 2, 3, 4, 5), Set.copyOf(trie.findByPrefix("")));
+    }
+
+    @Test
+    void matchesPrefixEndingInsideEdge() {
+        assertEquals(Set.of(1, 2, 3, 4), Set.copyOf(trie.findByPrefix("/ev")));
+        assertEquals(Set.of(5), Set.copyOf(trie.findByPrefix("/comp")));
+    }
+
+    @Test
+    void returnsNothingForUnknownPrefix() {
+        assertTrue(trie.findByPrefix("/users").isEmpty());
+        assertTrue(trie.findByPrefix("/events/3").isEmpty());
+        assertTrue(trie.findByPrefix("/events/123").isEmpty());
+    }
+
+    @Test
+    void countsEachUriOnceAndKeepsLatestId() {
+        trie.add("/events/1", 7);
+
+        assertEquals(5, trie.size());
+        assertEquals(List.of(7), trie.findByPrefix("/events/1").stream().filter(id -> id != 3).toList());
+    }
+}
@@ -0,0 +1,70 @@
+package ru.practicum.stats.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.practicum.HitDto;
+import ru.practicum.StatsDto;
+import ru.practicum.stats.EwmStats;
+import ru.practicum.stats.controller.params.StatsParams;
+import ru.practicum.stats.service.StatsService;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(classes = EwmStats.class, webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        EwmStats.CONFIG_NAME,
+        "spring.datasource.url=" + LegacyStatsMigrationTest.URL,
+        "stats.cache.enabled=false"
+})
+class LegacyStatsMigrationTest {
+    static final String URL = "jdbc:h2:mem:legacy-test;DB_CLOSE_DELAY=-1";
+    private static final LocalDateTime START = LocalDateTime.of(2024, 3, 1, 0, 0);
+
+    static {
+        try (Connection connection = DriverManager.getConnection(URL, "stats", "stats");
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE stats (id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL, " +
+                    "app VARCHAR NOT NULL, uri VARCHAR NOT NULL, ip VARCHAR NOT NULL, " +
+                    "hit_time TIMESTAMP NOT NULL, CONSTRAINT pk_stats PRIMARY KEY (id))");
+            statement.execute("INSERT INTO stats (app, uri, ip, hit_time) VALUES " +
+                    "('ewm', '/events/1', '10.0.0.1', '2024-03-01 10:00:00'), " +
+                    "('ewm', '/events/1', '10.0.0.1', '2024-03-02 11:30:00'), " +
+                    "('ewm', '/events/1', '10.0.0.2', '2024-03-02 12:00:00'), " +
+                    "('ewm', '/events/2', '10.0.0.2', '2024-03-03 09:15:00')");
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Autowired
+    private StatsService statsService;
+
+    @Test
+    void keepsHitsOfOldLayoutAndAcceptsNewOnes() {
+        statsService.addHit(new HitDto("ewm", "/events/2", "10.0.0.3", START.plusDays(3).plusHours(1)));
+
+        for (boolean approximate : List.of(false, true)) {
+            assertEquals(List.of(new StatsDto("ewm", "/events/1", 3), new StatsDto("ewm", "/events/2", 2)),
+                    getStats(false, approximate));
+            assertEquals(List.of(new StatsDto("ewm", "/events/1", 2), new StatsDto("ewm", "/events/2", 2)),
+                    getStats(true, approximate));
+        }
+    }
+
+    private List<StatsDto> getStats(boolean unique, boolean approximate) {
+        List<StatsDto> stats = new ArrayList<>();
+        statsService.getStats(StatsParams.builder().start(START).end(START.plusDays(5)).unique(unique)
+                .approximate(approximate).build(), stats::add);
+        stats.sort(Comparator.comparing(StatsDto::getUri));
+        return stats;
+    }
+}
@@ -0,0 +1,192 @@
+package ru.practicum.stats.service.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import ru.practicum.StatsDto;
+import ru.practicum.TimeSeriesDto;
+import ru.practicum.stats.controller.params.StatsParams;
+import ru.practicum.stats.controller.params.TimeSeriesParams;
+import ru.practicum.stats.model.Granularity;
+import ru.practicum.stats.model.Hit;
+import ru.practicum.stats.service.ingest.HitIngestListener;
+import ru.practicum.stats.service.ingest.SyncHitIngestor;
+import ru.practicum.stats.service.storage.HitStore;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatsCacheTest {
+    private static final LocalDateTime DAY = LocalDateTime.of(2026, 1, 10, 0, 0);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final StatsCache cache = new StatsCache(meterRegistry, Granularity.MINUTE, 100, 1000, 300);
+    private final ListHitStore store = new ListHitStore();
+
+    @Test
+    void doesNotCountHitsTwiceWhenQueryReadsThemBeforeTheyArePassedOn() {
+        StatsParams params = params(null);
+        List<Hit> batch = List.of(hit("/events/1"), hit("/events/1"));
+
+        cache.beforeWrite(batch);
+        store.write(batch);
+        assertEquals(List.of(stats("/events/1", 2)), getStats(params));
+        cache.onIngest(batch);
+
+        assertEquals(List.of(stats("/events/1", 2)), getStats(params));
+        assertEquals(List.of(stats("/events/1", 2)), getStats(params));
+        assertEquals(1.0, meterRegistry.counter("stats.cache.requests", "result", "hit").count());
+    }
+
+    @Test
+    void doesNotCacheResultMissingHitsWrittenMeanwhile() {
+        StatsParams params = params(null);
+        List<Hit> batch = List.of(hit("/events/1"));
+
+        List<StatsDto> result = new ArrayList<>();
+        cache.getStats(params, result::add, (query, consumer) -> {
+            store.getStats(query, consumer);
+            cache.beforeWrite(batch);
+            store.write(batch);
+            cache.onIngest(batch);
+        });
+
+        assertEquals(List.of(), result);
+        assertEquals(List.of(stats("/events/1", 1)), getStats(params));
+    }
+
+    @Test
+    void cachesResultWhileOtherUrisAreWritten() {
+        StatsParams params = params(new String[]{"/events/1"});
+        List<Hit> other = List.of(hit("/events/2"));
+        store.write(List.of(hit("/events/1")));
+
+        cache.beforeWrite(other);
+        getStats(params);
+        store.write(other);
+        cache.onIngest(other);
+        getStats(params);
+
+        assertEquals(1.0, meterRegistry.counter("stats.cache.requests", "result", "hit").count());
+    }
+
+    @Test
+    void matchesStoreUnderConcurrentIngest() throws Exception {
+        SyncHitIngestor ingestor = new SyncHitIngestor(store, listeners());
+        List<StatsParams> queries = List.of(params(null), params(new String[]{"/events/1"}),
+                params(new String[]{"/events/*"}).toBuilder().aggregate(true).build());
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int writer = 0; writer < 3; writer++) {
+                int seed = writer;
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        ingestor.ingestAll(List.of(hit("/events/" + (i + seed) % 3), hit("/events/1")));
+                    }
+                }));
+            }
+            List<Future<?>> readers = new ArrayList<>();
+            for (int reader = 0; reader < 3; reader++) {
+                readers.add(executor.submit(() -> {
+                    while (writing.get()) {
+                        queries.forEach(this::getStats);
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+            writing.set(false);
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (StatsParams query : queries) {
+            List<StatsDto> expected = new ArrayList<>();
+            store.getStats(query, expected::add);
+            expected.sort(Comparator.comparing(StatsDto::getUri));
+            assertEquals(expected, getStats(query));
+        }
+        assertTrue(meterRegistry.counter("stats.cache.requests", "result", "hit").count() > 0);
+    }
+
+    private ObjectProvider<HitIngestListener> listeners() {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("statsCache", cache);
+        return beanFactory.getBeanProvider(HitIngestListener.class);
+    }
+
+    private List<StatsDto> getStats(StatsParams params) {
+        List<StatsDto> stats = new ArrayList<>();
+        cache.getStats(params, stats::add, store::getStats);
+        stats.sort(Comparator.comparing(StatsDto::getUri));
+        return stats;
+    }
+
+    private static StatsParams params(String[] uris) {
+        return StatsParams.builder().start(DAY).end(DAY.plusDays(1)).uris(uris).build();
+    }
+
+    private static Hit hit(String uri) {
+        return Hit.builder().app("ewm").uri(uri).ip("10.0.0.1").timestamp(DAY.plusHours(1)).build();
+    }
+
+    private static StatsDto stats(String uri, long hits) {
+        return new StatsDto("ewm", uri, hits);
+    }
+
+    /**
+     * Counts plain hits of exact uris, or of one prefix pattern per row when aggregated.
+     */
+    private static class ListHitStore implements HitStore {
+        private final List<Hit> hits = new ArrayList<>();
+
+        @Override
+        public synchronized void write(List<Hit> batch) {
+            hits.addAll(batch);
+        }
+
+        @Override
+        public synchronized void getStats(StatsParams params, Consumer<StatsDto> consumer) {
+            Map<String, Long> counts = new TreeMap<>();
+            for (Hit hit : hits) {
+                if (hit.getTimestamp().isBefore(params.getStart()) || hit.getTimestamp().isAfter(params.getEnd())) {
+                    continue;
+                }
+                if (params.getUris() == null) {
+                    counts.merge(hit.getUri(), 1L, Long::sum);
+                    continue;
+                }
+                for (String uri : params.getUris()) {
+                    boolean prefix = uri.endsWith("*");
+                    if (prefix ? hit.getUri().startsWith(uri.substring(0, uri.length() - 1)) : hit.getUri().equals(uri)) {
+                        counts.merge(params.isAggregate() ? uri : hit.getUri(), 1L, Long::sum);
+                    }
+                }
+            }
+            counts.forEach((uri, count) -> consumer.accept(new StatsDto("ewm", uri, count)));
+        }
+
+        @Override
+        public void getTimeSeries(TimeSeriesParams params, Consumer<TimeSeriesDto> consumer) {
+        }
+    }
+}
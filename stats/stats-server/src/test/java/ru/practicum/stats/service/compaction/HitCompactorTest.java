@@ -0,0 +1,178 @@
+package ru.practicum.stats.service.compaction;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.mockito.InOrder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.HitDto;
+import ru.practicum.StatsDto;
+import ru.practicum.TimeSeriesDto;
+import ru.practicum.stats.EwmStats;
+import ru.practicum.stats.controller.params.StatsParams;
+import ru.practicum.stats.controller.params.TimeSeriesParams;
+import ru.practicum.stats.exception.ValidationException;
+import ru.practicum.stats.model.CompactionProgress;
+import ru.practicum.stats.model.Granularity;
+import ru.practicum.stats.repository.CompactionRepository;
+import ru.practicum.stats.service.StatsService;
+import ru.practicum.stats.service.ingest.BulkHitSink;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(classes = EwmStats.class, webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        EwmStats.CONFIG_NAME,
+        "spring.datasource.url=jdbc:h2:mem:compaction-test",
+        "stats.compaction.enabled=true",
+        "stats.compaction.cron=-",
+        "stats.compaction.age-days=30",
+        "stats.compaction.batch-size=100",
+        "stats.cache.enabled=false",
+        "stats.parallel.min-part-days=5"
+})
+class HitCompactorTest {
+    @Autowired
+    private StatsService statsService;
+
+    @Autowired
+    private HitCompactor hitCompactor;
+
+    @Test
+    void answersAlignedQueriesTheSameAfterCompaction() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDate today = now.toLocalDate();
+        addHits(now);
+        LocalDateTime created = today.minusDays(45).atTime(13, 47, 12);
+        StatsParams nonAligned = params(created, now, true, false, null);
+        Map<StatsParams, List<StatsDto>> queries = new LinkedHashMap<>();
+        for (boolean unique : List.of(false, true)) {
+            for (boolean approximate : List.of(false, true)) {
+                queries.put(params(today.minusDays(60).atStartOfDay(), now, unique, approximate, null), null);
+                queries.put(params(today.minusDays(45).atStartOfDay(), today.minusDays(35).atTime(23, 59, 59),
+                        unique, approximate, null), null);
+                queries.put(params(today.minusDays(50).atStartOfDay(), today.minusDays(10).atStartOfDay(),
+                        unique, approximate, new String[]{"/events/1", "/events/2"}), null);
+                queries.put(params(today.minusDays(60).atStartOfDay(), now, unique, approximate,
+                        new String[]{"/events/*"}).toBuilder().aggregate(true).build(), null);
+            }
+        }
+        queries.put(params(today.minusDays(45).atTime(13, 0), today.minusDays(32).atTime(8, 59, 59), true, true,
+                null), null);
+        queries.put(params(today.minusDays(45).atTime(13, 47), today.minusDays(32).atTime(8, 15, 59), false, false,
+                null), null);
+        for (boolean approximate : List.of(false, true)) {
+            queries.put(params(today.minusDays(45).atStartOfDay(), today.minusDays(31).atTime(23, 59, 59), true,
+                    approximate, null), null);
+        }
+        queries.replaceAll((params, stats) -> getStats(params));
+        Map<TimeSeriesParams, List<TimeSeriesDto>> series = new LinkedHashMap<>();
+        series.put(series(today.minusDays(45).atTime(13, 47), today.minusDays(32).atTime(8, 15, 59), false,
+                Granularity.HOUR), null);
+        series.put(series(today.minusDays(60).atStartOfDay(), today.minusDays(31).atTime(23, 59, 59), false,
+                Granularity.DAY), null);
+        series.put(series(today.minusDays(60).atStartOfDay(), today.minusDays(31).atTime(23, 59, 59), true,
+                Granularity.DAY), null);
+        series.replaceAll((params, rows) -> getTimeSeries(params));
+        TimeSeriesParams nonAlignedSeries = series(created, now, false, Granularity.DAY);
+        assertDoesNotThrow(() -> statsService.checkStats(nonAligned));
+
+        hitCompactor.compact();
+
+        assertEquals(today.minusDays(30).atStartOfDay(), hitCompactor.getCompactedBefore());
+        queries.forEach((params, stats) -> {
+            assertDoesNotThrow(() -> statsService.checkStats(params), params::toString);
+            assertEquals(stats, getStats(params), params::toString);
+        });
+        series.forEach((params, rows) -> {
+            assertDoesNotThrow(() -> statsService.checkTimeSeries(params), params::toString);
+            assertEquals(rows, getTimeSeries(params), params::toString);
+        });
+        assertThrows(ValidationException.class, () -> statsService.checkStats(nonAligned));
+        assertThrows(ValidationException.class, () -> statsService.checkTimeSeries(nonAlignedSeries));
+        assertThrows(ValidationException.class, () -> statsService.checkTimeSeries(
+                series(today.minusDays(45).atTime(13, 0), now, true, Granularity.DAY)));
+        assertThrows(ValidationException.class, () -> statsService.checkStats(
+                params(today.minusDays(45).atStartOfDay(), today.minusDays(40).atTime(8, 15), false, false, null)));
+    }
+
+    @Test
+    void marksDayCompactedBeforeDeletingItsHits() {
+        CompactionRepository repository = mock(CompactionRepository.class);
+        LocalDateTime day = LocalDate.now().minusDays(40).atStartOfDay();
+        when(repository.findProgress()).thenReturn(new CompactionProgress(null, null, 0, null));
+        when(repository.findOldestHitBefore(any())).thenReturn(Optional.of(day.plusHours(5)), Optional.empty());
+        when(repository.deleteHits(any(), any(), anyInt())).thenReturn(0);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        HitCompactor compactor = new HitCompactor(repository, transactionTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(compactor, "ageDays", 30);
+        ReflectionTestUtils.setField(compactor, "batchSize", 100);
+
+        compactor.compact();
+
+        InOrder order = inOrder(repository);
+        order.verify(repository).markCompactedBefore(day.plusDays(1));
+        order.verify(repository).deleteHits(eq(day), eq(day.plusDays(1)), anyInt());
+    }
+
+    private void addHits(LocalDateTime now) {
+        Random random = new Random(1);
+        BulkHitSink sink = statsService.openBulk();
+        LocalDateTime midnight = now.toLocalDate().minusDays(30).atStartOfDay();
+        sink.accept(new HitDto("ewm-main-service", "/events/1", "10.0.1.1", midnight));
+        for (int i = 0; i < 5000; i++) {
+            sink.accept(new HitDto("ewm-main-service", "/events/" + (1 + random.nextInt(10)),
+                    "10.0.0." + random.nextInt(200), now.minusSeconds(random.nextInt(60 * 86400))));
+        }
+        sink.finish();
+    }
+
+    private List<StatsDto> getStats(StatsParams params) {
+        List<StatsDto> stats = new ArrayList<>();
+        statsService.getStats(params, stats::add);
+        stats.sort(Comparator.comparing(StatsDto::getUri).thenComparing(StatsDto::getApp));
+        assertTrue(!stats.isEmpty(), params::toString);
+        return stats;
+    }
+
+    private List<TimeSeriesDto> getTimeSeries(TimeSeriesParams params) {
+        List<TimeSeriesDto> series = new ArrayList<>();
+        statsService.getTimeSeries(params, series::add);
+        series.sort(Comparator.comparing(TimeSeriesDto::getUri).thenComparing(TimeSeriesDto::getApp));
+        assertTrue(!series.isEmpty(), params::toString);
+        return series;
+    }
+
+    private static TimeSeriesParams series(LocalDateTime start, LocalDateTime end, boolean unique,
+                                           Granularity step) {
+        return TimeSeriesParams.builder().start(start).end(end).unique(unique).step(step).build();
+    }
+
+    private static StatsParams params(LocalDateTime start, LocalDateTime end, boolean unique, boolean approximate,
+                                      String[] uris) {
+        return StatsParams.builder().start(start).end(end).unique(unique).approximate(approximate).uris(uris).build();
+    }
+}
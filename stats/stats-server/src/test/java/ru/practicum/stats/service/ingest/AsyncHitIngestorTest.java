@@ -0,0 +1,91 @@
+package ru.practicum.stats.service.ingest;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+import ru.practicum.StatsDto;
+import ru.practicum.TimeSeriesDto;
+import ru.practicum.stats.controller.params.StatsParams;
+import ru.practicum.stats.controller.params.TimeSeriesParams;
+import ru.practicum.stats.model.Hit;
+import ru.practicum.stats.service.storage.HitStore;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AsyncHitIngestorTest {
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void retriesBatchAfterTransientFailure() throws InterruptedException {
+        FlakyHitStore store = new FlakyHitStore(2);
+        AsyncHitIngestor ingestor = ingestor(store, 5);
+        ingestor.start();
+        ingestor.ingestAll(List.of(hit("/events/1"), hit("/events/2")));
+        ingestor.stop();
+
+        assertEquals(2, store.written.size());
+        assertEquals(3, store.attempts.get());
+        assertEquals(2.0, counter("flushed"));
+        assertEquals(0.0, counter("failed"));
+    }
+
+    @Test
+    void countsBatchAsFailedAfterLastAttempt() throws InterruptedException {
+        FlakyHitStore store = new FlakyHitStore(Integer.MAX_VALUE);
+        AsyncHitIngestor ingestor = ingestor(store, 3);
+        ingestor.start();
+        ingestor.ingest(hit("/events/1"));
+        ingestor.stop();
+
+        assertEquals(0, store.written.size());
+        assertEquals(3, store.attempts.get());
+        assertEquals(1.0, counter("failed"));
+    }
+
+    private AsyncHitIngestor ingestor(HitStore store, int attempts) {
+        return new AsyncHitIngestor(store, new StaticListableBeanFactory().getBeanProvider(HitIngestListener.class),
+                meterRegistry, 100, 10, 10, OverflowPolicy.REJECT, attempts, 1);
+    }
+
+    private double counter(String result) {
+        return meterRegistry.counter("stats.ingest.hits", "result", result).count();
+    }
+
+    private static Hit hit(String uri) {
+        return Hit.builder().app("ewm").uri(uri).ip("10.0.0.1").timestamp(LocalDateTime.now()).build();
+    }
+
+    private static class FlakyHitStore implements HitStore {
+        private final int failures;
+        private final AtomicInteger attempts = new AtomicInteger();
+        private final List<Hit> written = new CopyOnWriteArrayList<>();
+
+        FlakyHitStore(int failures) {
+            this.failures = failures;
+        }
+
+        @Override
+        public void write(List<Hit> hits) {
+            if (attempts.incrementAndGet() <= failures) {
+                throw new DataAccessResourceFailureException("Connection refused");
+            }
+            written.addAll(hits);
+        }
+
+        @Override
+        public void getStats(StatsParams params, Consumer<StatsDto> consumer) {
+        }
+
+        @Override
+        public void getTimeSeries(TimeSeriesParams params, Consumer<TimeSeriesDto> consumer) {
+        }
+    }
+}
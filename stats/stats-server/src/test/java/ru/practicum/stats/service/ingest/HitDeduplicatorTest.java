@@ -0,0 +1,87 @@
+package ru.practicum.stats.service.ingest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.BulkHitResultDto;
+import ru.practicum.HitDto;
+import ru.practicum.RejectedHitDto;
+import ru.practicum.stats.model.Hit;
+import ru.practicum.stats.model.HitMapper;
+import ru.practicum.stats.repository.SuppressedHitRepository;
+import ru.practicum.stats.service.dictionary.Dictionaries;
+
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+class HitDeduplicatorTest {
+    private static final LocalDateTime TIME = LocalDateTime.of(2026, 1, 10, 12, 0);
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+    private final HitDeduplicator deduplicator = new HitDeduplicator(mock(SuppressedHitRepository.class),
+            mock(Dictionaries.class), new SimpleMeterRegistry(), 10, 10, 1 << 16);
+    private final LimitedHitIngestor ingestor = new LimitedHitIngestor();
+
+    @Test
+    void takesRetryOfHitRefusedByFullQueue() {
+        ingestor.capacity = 1;
+        BulkHitResultDto first = send(hit("/events/1", 0), hit("/events/2", 0));
+
+        assertEquals(List.of(new RejectedHitDto(1, "Hit queue is full, try again later")), first.getRejected());
+
+        ingestor.capacity = Integer.MAX_VALUE;
+        BulkHitResultDto retry = send(hit("/events/2", 1));
+
+        assertEquals(List.of(), retry.getRejected());
+        assertEquals(List.of("/events/1", "/events/2"), ingestor.uris());
+    }
+
+    @Test
+    void dropsRepeatWithinTheSameChunk() {
+        BulkHitResultDto result = send(hit("/events/1", 0), hit("/events/2", 0), hit("/events/1", 2));
+
+        assertEquals(3, result.getAccepted());
+        assertEquals(List.of("/events/1", "/events/2"), ingestor.uris());
+
+        assertEquals(1, send(hit("/events/1", 5)).getAccepted());
+        assertEquals(List.of("/events/1", "/events/2"), ingestor.uris());
+    }
+
+    private BulkHitResultDto send(HitDto... hits) {
+        BulkHitSink sink = new BulkHitSink(ingestor, new HitMapper(), validator, deduplicator, 100);
+        for (HitDto hit : hits) {
+            sink.accept(hit);
+        }
+        return sink.finish();
+    }
+
+    private static HitDto hit(String uri, int seconds) {
+        return new HitDto("ewm", uri, "10.0.0.1", TIME.plusSeconds(seconds));
+    }
+
+    private static class LimitedHitIngestor implements HitIngestor {
+        private final List<Hit> hits = new ArrayList<>();
+        private int capacity = Integer.MAX_VALUE;
+
+        @Override
+        public void ingest(Hit hit) {
+            ingestAll(List.of(hit));
+        }
+
+        @Override
+        public int ingestAll(List<Hit> batch) {
+            int accepted = Math.min(capacity, batch.size());
+            hits.addAll(batch.subList(0, accepted));
+            return accepted;
+        }
+
+        List<String> uris() {
+            return hits.stream().map(Hit::getUri).collect(Collectors.toList());
+        }
+    }
+}
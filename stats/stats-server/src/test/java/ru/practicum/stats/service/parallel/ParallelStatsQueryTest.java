@@ -0,0 +1,83 @@
+package ru.practicum.stats.service.parallel;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.stats.model.Granularity;
+import ru.practicum.stats.model.RangeSegment;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelStatsQueryTest {
+    private final ParallelStatsQuery query = new ParallelStatsQuery(4, 100, 30);
+
+    @AfterEach
+    void tearDown() {
+        query.stop();
+    }
+
+    @Test
+    void cutsLongDaySegmentIntoAdjacentDayAlignedPieces() {
+        RangeSegment segment = new RangeSegment(Granularity.DAY, time("2026-01-01T00:00"), time("2026-07-01T00:00"),
+                false);
+
+        List<RangeSegment> pieces = query.split(segment);
+
+        assertEquals(4, pieces.size());
+        assertEquals(segment.getFrom(), pieces.get(0).getFrom());
+        assertEquals(segment.getTo(), pieces.get(pieces.size() - 1).getTo());
+        for (int i = 1; i < pieces.size(); i++) {
+            assertEquals(pieces.get(i - 1).getTo(), pieces.get(i).getFrom());
+            assertEquals(Granularity.DAY.floor(pieces.get(i).getFrom()), pieces.get(i).getFrom());
+        }
+    }
+
+    @Test
+    void keepsRawAndShortSegmentsWhole() {
+        RangeSegment raw = new RangeSegment(null, time("2026-01-01T10:15"), time("2026-01-02T00:00"), false);
+        RangeSegment hours = new RangeSegment(Granularity.HOUR, time("2026-01-01T11:00"), time("2026-01-02T00:00"),
+                false);
+        RangeSegment days = new RangeSegment(Granularity.DAY, time("2026-01-01T00:00"), time("2026-01-20T00:00"),
+                false);
+
+        assertEquals(List.of(raw), query.split(raw));
+        assertEquals(List.of(hours), query.split(hours));
+        assertEquals(List.of(days), query.split(days));
+    }
+
+    @Test
+    void reducesPiecesReadOnPool() {
+        List<RangeSegment> plan = List.of(
+                new RangeSegment(null, time("2025-12-31T12:00"), time("2026-01-01T00:00"), false),
+                new RangeSegment(Granularity.DAY, time("2026-01-01T00:00"), time("2026-12-31T00:00"), false),
+                new RangeSegment(null, time("2026-12-31T00:00"), time("2026-12-31T06:00"), true));
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+
+        Set<LocalDateTime> days = query.reduce(plan, segment -> {
+            threads.add(Thread.currentThread().getName());
+            Set<LocalDateTime> read = new HashSet<>();
+            for (LocalDateTime day = Granularity.DAY.floor(segment.getFrom()); day.isBefore(segment.getTo());
+                 day = day.plusDays(1)) {
+                read.add(day);
+            }
+            return read;
+        }, (left, right) -> {
+            left.addAll(right);
+            return left;
+        }).orElseThrow();
+
+        assertEquals(ChronoUnit.DAYS.between(time("2025-12-31T00:00"), time("2026-12-31T00:00")) + 1, days.size());
+        assertTrue(threads.stream().allMatch(name -> name.startsWith("stats-query-")));
+    }
+
+    private static LocalDateTime time(String value) {
+        return LocalDateTime.parse(value);
+    }
+}
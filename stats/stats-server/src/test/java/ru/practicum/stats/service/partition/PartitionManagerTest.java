@@ -0,0 +1,74 @@
+package ru.practicum.stats.service.partition;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.practicum.stats.model.Partition;
+import ru.practicum.stats.model.PartitionInterval;
+import ru.practicum.stats.repository.BitmapRepository;
+import ru.practicum.stats.repository.PartitionRepository;
+import ru.practicum.stats.repository.RollupRepository;
+import ru.practicum.stats.repository.SketchRepository;
+import ru.practicum.stats.repository.SuppressedHitRepository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PartitionManagerTest {
+    private final PartitionRepository partitionRepository = mock(PartitionRepository.class);
+    private final RollupRepository rollupRepository = mock(RollupRepository.class);
+    private final SketchRepository sketchRepository = mock(SketchRepository.class);
+    private final BitmapRepository bitmapRepository = mock(BitmapRepository.class);
+    private final SuppressedHitRepository suppressedHitRepository = mock(SuppressedHitRepository.class);
+    private final PartitionManager manager = new PartitionManager(partitionRepository, rollupRepository,
+            sketchRepository, bitmapRepository, suppressedHitRepository);
+    private final LocalDate today = LocalDate.now();
+
+    @Test
+    void purgesAggregatesOfDroppedPartitions() {
+        Partition expired = partition(PartitionInterval.DAY, today.minusDays(10));
+        Partition kept = partition(PartitionInterval.DAY, today.minusDays(7));
+        setUp(PartitionInterval.DAY, 7, expired, kept);
+
+        manager.maintain();
+
+        LocalDateTime cutoff = today.minusDays(7).atStartOfDay();
+        verify(partitionRepository).drop(expired);
+        verify(partitionRepository, never()).drop(kept);
+        verify(rollupRepository).deleteBefore(cutoff);
+        verify(sketchRepository).deleteBefore(cutoff);
+        verify(bitmapRepository).deleteBefore(cutoff);
+        verify(suppressedHitRepository).deleteBefore(cutoff);
+    }
+
+    @Test
+    void keepsAggregatesOfHitsLeftInPartlyExpiredPartition() {
+        LocalDate month = PartitionInterval.MONTH.floor(today.minusDays(3));
+        setUp(PartitionInterval.MONTH, 2, partition(PartitionInterval.MONTH, month));
+
+        manager.maintain();
+
+        verify(partitionRepository, never()).drop(any());
+        verify(rollupRepository).deleteBefore(month.atStartOfDay());
+        verify(bitmapRepository).deleteBefore(month.atStartOfDay());
+    }
+
+    private void setUp(PartitionInterval interval, int retentionDays, Partition... partitions) {
+        ReflectionTestUtils.setField(manager, "interval", interval);
+        ReflectionTestUtils.setField(manager, "premake", 0);
+        ReflectionTestUtils.setField(manager, "retentionDays", retentionDays);
+        when(partitionRepository.findPartitions()).thenReturn(new ArrayList<>(List.of(partitions)));
+    }
+
+    private static Partition partition(PartitionInterval interval, LocalDate from) {
+        return new Partition(PartitionRepository.TABLE + "_p" + from.format(interval.getSuffix()),
+                from.atStartOfDay(), interval.next(from).atStartOfDay());
+    }
+}
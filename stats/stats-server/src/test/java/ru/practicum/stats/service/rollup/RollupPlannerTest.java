@@ -0,0 +1,68 @@
+package ru.practicum.stats.service.rollup;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.stats.model.Granularity;
+import ru.practicum.stats.model.RangeSegment;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RollupPlannerTest {
+    private final RollupPlanner planner = new RollupPlanner();
+
+    @Test
+    void splitsRangeIntoCoarsestBucketsAndRawEdges() {
+        List<RangeSegment> plan = planner.plan(time("2026-09-01T10:15:30"), time("2026-09-03T11:20:10"));
+
+        assertEquals(List.of(
+                new RangeSegment(null, time("2026-09-01T10:15:30"), time("2026-09-01T10:16"), false),
+                new RangeSegment(Granularity.MINUTE, time("2026-09-01T10:16"), time("2026-09-01T11:00"), false),
+                new RangeSegment(Granularity.HOUR, time("2026-09-01T11:00"), time("2026-09-02T00:00"), false),
+                new RangeSegment(Granularity.DAY, time("2026-09-02T00:00"), time("2026-09-03T00:00"), false),
+                new RangeSegment(Granularity.HOUR, time("2026-09-03T00:00"), time("2026-09-03T11:00"), false),
+                new RangeSegment(Granularity.MINUTE, time("2026-09-03T11:00"), time("2026-09-03T11:20"), false),
+                new RangeSegment(null, time("2026-09-03T11:20"), time("2026-09-03T11:20:10"), true)), plan);
+    }
+
+    @Test
+    void keepsClosedEndAsRawPointOnAlignedRange() {
+        List<RangeSegment> plan = planner.plan(time("2026-09-01T00:00"), time("2026-09-03T00:00"));
+
+        assertEquals(List.of(
+                new RangeSegment(Granularity.DAY, time("2026-09-01T00:00"), time("2026-09-03T00:00"), false),
+                new RangeSegment(null, time("2026-09-03T00:00"), time("2026-09-03T00:00"), true)), plan);
+    }
+
+    @Test
+    void leavesOutEndOfOpenRange() {
+        List<RangeSegment> plan = planner.plan(time("2026-09-01T00:00"), time("2026-09-03T00:00"), false);
+
+        assertEquals(List.of(
+                new RangeSegment(Granularity.DAY, time("2026-09-01T00:00"), time("2026-09-03T00:00"), false)), plan);
+    }
+
+    @Test
+    void usesOnlyGivenLevels() {
+        List<RangeSegment> plan = planner.plan(time("2026-09-01T10:15"), time("2026-09-03T11:20"),
+                List.of(Granularity.DAY));
+
+        assertEquals(List.of(
+                new RangeSegment(null, time("2026-09-01T10:15"), time("2026-09-02T00:00"), false),
+                new RangeSegment(Granularity.DAY, time("2026-09-02T00:00"), time("2026-09-03T00:00"), false),
+                new RangeSegment(null, time("2026-09-03T00:00"), time("2026-09-03T11:20"), true)), plan);
+    }
+
+    @Test
+    void readsShortRangeFromRawHits() {
+        List<RangeSegment> plan = planner.plan(time("2026-09-01T10:15:10"), time("2026-09-01T10:15:50"));
+
+        assertEquals(List.of(
+                new RangeSegment(null, time("2026-09-01T10:15:10"), time("2026-09-01T10:15:50"), true)), plan);
+    }
+
+    private static LocalDateTime time(String value) {
+        return LocalDateTime.parse(value);
+    }
+}
@@ -0,0 +1,141 @@
+package ru.practicum.stats.service.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.StatsDto;
+import ru.practicum.stats.controller.params.StatsParams;
+import ru.practicum.stats.model.Hit;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SegmentHitStoreTest {
+    private static final LocalDateTime DAY = LocalDateTime.of(2026, 1, 10, 0, 0);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void mergesSmallSegmentsOutsideFlush() throws IOException {
+        SegmentHitStore store = open();
+        writeSegments(store, 3);
+        assertEquals(3, segmentFiles().size());
+
+        store.merge();
+
+        assertEquals(1, segmentFiles().size());
+        assertEquals(Map.of("/events/0", 1L, "/events/1", 1L, "/events/2", 1L), getStats(store));
+    }
+
+    @Test
+    void dropsSourcesLeftOverFromInterruptedMerge() throws IOException {
+        SegmentHitStore store = open();
+        writeSegments(store, 3);
+        Map<Path, byte[]> sources = new TreeMap<>();
+        for (Path path : segmentFiles()) {
+            sources.put(path, Files.readAllBytes(path));
+        }
+        store.merge();
+        for (Map.Entry<Path, byte[]> source : sources.entrySet()) {
+            Files.write(source.getKey(), source.getValue());
+        }
+
+        SegmentHitStore reopened = open();
+
+        assertEquals(Map.of("/events/0", 1L, "/events/1", 1L, "/events/2", 1L), getStats(reopened));
+        assertEquals(1, segmentFiles().size());
+    }
+
+    @Test
+    void mergesPreviouslyMergedSegmentsWithoutLosingTheirSources() throws IOException {
+        SegmentHitStore store = open();
+        writeSegments(store, 3);
+        List<Path> first = segmentFiles();
+        Map<Path, byte[]> sources = new TreeMap<>();
+        for (Path path : first) {
+            sources.put(path, Files.readAllBytes(path));
+        }
+        store.merge();
+        writeSegments(store, 2);
+        store.merge();
+        for (Map.Entry<Path, byte[]> source : sources.entrySet()) {
+            Files.write(source.getKey(), source.getValue());
+        }
+
+        SegmentHitStore reopened = open();
+
+        assertEquals(Map.of("/events/0", 2L, "/events/1", 2L, "/events/2", 1L), getStats(reopened));
+        assertEquals(1, segmentFiles().size());
+    }
+
+    @Test
+    void recoversAcknowledgedHitsNotYetInSegment() throws IOException {
+        SegmentHitStore store = open();
+        writeSegments(store, 1);
+        store.write(List.of(hit("/events/5", 5)));
+        store.write(List.of(hit("/events/5", 6), hit("/events/6", 7)));
+        assertEquals(Map.of("/events/0", 1L, "/events/5", 2L, "/events/6", 1L), getStats(store));
+
+        SegmentHitStore reopened = open();
+
+        assertEquals(Map.of("/events/0", 1L, "/events/5", 2L, "/events/6", 1L), getStats(reopened));
+        assertEquals(2, segmentFiles().size());
+    }
+
+    @Test
+    void ignoresRecordCutShortInLog() throws IOException {
+        SegmentHitStore store = open();
+        store.write(List.of(hit("/events/1", 1)));
+        store.write(List.of(hit("/events/2", 2)));
+        Path log;
+        try (Stream<Path> files = Files.list(directory)) {
+            log = files.filter(path -> path.toString().endsWith(".wal")).findFirst().orElseThrow();
+        }
+        byte[] bytes = Files.readAllBytes(log);
+        Files.write(log, Arrays.copyOf(bytes, bytes.length - 3));
+
+        SegmentHitStore reopened = open();
+
+        assertEquals(Map.of("/events/1", 1L), getStats(reopened));
+    }
+
+    private SegmentHitStore open() throws IOException {
+        SegmentHitStore store = new SegmentHitStore(directory.toString(), 10, 3);
+        store.open();
+        return store;
+    }
+
+    private static void writeSegments(SegmentHitStore store, int count) {
+        for (int i = 0; i < count; i++) {
+            store.write(List.of(hit("/events/" + i, i * 60)));
+            store.flush();
+        }
+    }
+
+    private static Hit hit(String uri, int seconds) {
+        return Hit.builder().app("ewm").uri(uri).ip("10.0.0.1").timestamp(DAY.plusSeconds(seconds)).build();
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".seg")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static Map<String, Long> getStats(SegmentHitStore store) {
+        List<StatsDto> stats = new ArrayList<>();
+        store.getStats(StatsParams.builder().start(DAY).end(DAY.plusDays(1)).build(), stats::add);
+        return stats.stream().collect(Collectors.toMap(StatsDto::getUri, StatsDto::getHits));
+    }
+}
@@ -0,0 +1,53 @@
+package ru.practicum.stats.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RotatingBloomFilterTest {
+    private final RotatingBloomFilter filter = new RotatingBloomFilter(10, 1 << 16);
+
+    @Test
+    void dropsRepeatWithinWindowOnly() {
+        long key = hash("ewm|/events/1|10.0.0.1");
+
+        assertTrue(filter.addIfAbsent(key, 100));
+        assertFalse(filter.addIfAbsent(key, 105));
+        assertFalse(filter.addIfAbsent(key, 109));
+        assertTrue(filter.addIfAbsent(key, 110));
+    }
+
+    @Test
+    void recordsLateKeyInsideWindow() {
+        long key = hash("ewm|/events/1|10.0.0.1");
+        filter.addIfAbsent(hash("ewm|/events/2|10.0.0.1"), 100);
+
+        assertTrue(filter.addIfAbsent(key, 95));
+        assertFalse(filter.addIfAbsent(key, 96));
+        assertFalse(filter.addIfAbsent(key, 100));
+    }
+
+    @Test
+    void rejectsKeyOlderThanWindow() {
+        long key = hash("ewm|/events/1|10.0.0.1");
+        filter.addIfAbsent(hash("ewm|/events/2|10.0.0.1"), 100);
+
+        assertTrue(filter.addIfAbsent(key, 90));
+        assertTrue(filter.addIfAbsent(key, 90));
+        assertTrue(filter.addIfAbsent(key, 100));
+    }
+
+    @Test
+    void hashesDifferOnFieldBoundaries() {
+        assertNotEquals(hash("ewm\0/a\0" + "1"), hash("ewm\0/a1\0"));
+        assertNotEquals(hash("ab"), hash("ab\0"));
+    }
+
+    private static long hash(String key) {
+        return Hashing.hash64(key.getBytes(StandardCharsets.UTF_8));
+    }
+}